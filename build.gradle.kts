@@ -119,8 +119,22 @@ tasks.named("build") {
 }
 
 // testタスクの前にコード品質チェックを実行
-tasks.named("test") {
+tasks.named<Test>("test") {
     dependsOn("ktlintCheck")
+    exclude("**/*Benchmark.class")
+}
+
+// カスタムタスク: パーサーと表示処理のベンチマーク (通常のテストからは除外)
+tasks.register<Test>("benchmark") {
+    description = "Run XML parser and console renderer benchmarks on synthetic reports"
+    group = "verification"
+
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    include("**/*Benchmark.class")
+    maxHeapSize = "6g"
+    testLogging.showStandardStreams = true
+    outputs.upToDateWhen { false }
 }
 
 // Plugin Portal公開用の追加設定
@@ -0,0 +1,280 @@
+package io.github.mas0061.jacoco
+
+/**
+ * Fixed ordinals of the JaCoCo counter types used to index the counter columns
+ */
+internal object CounterType {
+    const val INSTRUCTION = 0
+    const val BRANCH = 1
+
+    val NAMES = arrayOf("INSTRUCTION", "BRANCH", "LINE", "COMPLEXITY", "METHOD", "CLASS")
+    val COUNT = NAMES.size
+
+    /** Returns the ordinal of a counter type, or -1 for types outside the JaCoCo set */
+    fun indexOf(type: String): Int {
+        return when (type) {
+            "INSTRUCTION" -> INSTRUCTION
+            "BRANCH" -> BRANCH
+            "LINE" -> 2
+            "COMPLEXITY" -> 3
+            "METHOD" -> 4
+            "CLASS" -> 5
+            else -> -1
+        }
+    }
+}
+
+/**
+ * Growable table of counters with one `missed` and one `covered` int column per counter type
+ *
+ * Each row holds the counters of one class, package or report. A presence bit per type keeps track of
+ * which counters the XML element actually had, so that views behave exactly like the former maps.
+ */
+internal class CounterColumns(initialCapacity: Int = 16) {
+    private var capacity = maxOf(initialCapacity, 1)
+    private var presence = IntArray(capacity)
+    private val missed = Array(CounterType.COUNT) { IntArray(capacity) }
+    private val covered = Array(CounterType.COUNT) { IntArray(capacity) }
+    private var extraCounters: MutableMap<Int, MutableMap<String, CoverageCounter>>? = null
+
+    var size = 0
+        private set
+
+    fun addRow(): Int {
+        if (size == capacity) {
+            grow()
+        }
+        return size++
+    }
+
+    /**
+     * Drops all rows from [newSize] on so that they can be reused
+     */
+    fun truncate(newSize: Int) {
+        for (row in newSize until size) {
+            presence[row] = 0
+            for (type in 0 until CounterType.COUNT) {
+                missed[type][row] = 0
+                covered[type][row] = 0
+            }
+            extraCounters?.remove(row)
+        }
+        size = newSize
+    }
+
+    fun set(
+        row: Int,
+        type: String,
+        missedCount: Int,
+        coveredCount: Int,
+    ) {
+        val typeIndex = CounterType.indexOf(type)
+        if (typeIndex < 0) {
+            val extras = extraCounters ?: HashMap<Int, MutableMap<String, CoverageCounter>>()
+            extras.getOrPut(row) { linkedMapOf() }[type] = CoverageCounter(type, missedCount, coveredCount)
+            extraCounters = extras
+            return
+        }
+        presence[row] = presence[row] or (1 shl typeIndex)
+        missed[typeIndex][row] = missedCount
+        covered[typeIndex][row] = coveredCount
+    }
+
+    /**
+     * Adds the counters of [sourceRow] in [source] to [row] of this table
+     */
+    fun addRow(
+        row: Int,
+        source: CounterColumns,
+        sourceRow: Int,
+    ) {
+        presence[row] = presence[row] or source.presence[sourceRow]
+        for (type in 0 until CounterType.COUNT) {
+            missed[type][row] += source.missed[type][sourceRow]
+            covered[type][row] += source.covered[type][sourceRow]
+        }
+        source.extraCounters?.get(sourceRow)?.values?.forEach { counter ->
+            val current = extraCounters?.get(row)?.get(counter.type)
+            set(row, counter.type, counter.missed + (current?.missed ?: 0), counter.covered + (current?.covered ?: 0))
+        }
+    }
+
+    fun has(
+        row: Int,
+        typeIndex: Int,
+    ): Boolean = presence[row] and (1 shl typeIndex) != 0
+
+    fun missed(
+        row: Int,
+        typeIndex: Int,
+    ): Int = missed[typeIndex][row]
+
+    fun covered(
+        row: Int,
+        typeIndex: Int,
+    ): Int = covered[typeIndex][row]
+
+    fun presentTypeCount(row: Int): Int = Integer.bitCount(presence[row])
+
+    fun extraCounters(row: Int): Map<String, CoverageCounter> = extraCounters?.get(row) ?: emptyMap()
+
+    fun coveragePercentage(
+        row: Int,
+        typeIndex: Int,
+    ): Double {
+        val coveredCount = covered[typeIndex][row]
+        val total = missed[typeIndex][row] + coveredCount
+        return if (total == 0) 0.0 else (coveredCount.toDouble() / total) * 100
+    }
+
+    /**
+     * Releases the unused capacity once the table is complete
+     */
+    fun trimToSize() {
+        resize(maxOf(size, 1))
+    }
+
+    private fun grow() {
+        resize(capacity * 2)
+    }
+
+    private fun resize(newCapacity: Int) {
+        presence = presence.copyOf(newCapacity)
+        for (type in 0 until CounterType.COUNT) {
+            missed[type] = missed[type].copyOf(newCapacity)
+            covered[type] = covered[type].copyOf(newCapacity)
+        }
+        capacity = newCapacity
+    }
+}
+
+/**
+ * Read-only map view of one row of a [CounterColumns] table
+ *
+ * Lookups go straight to the int columns; [CoverageCounter] instances are only created when requested.
+ */
+internal class CounterRowMap(
+    private val columns: CounterColumns,
+    private val row: Int,
+) : AbstractMap<String, CoverageCounter>() {
+    override val size: Int get() = columns.presentTypeCount(row) + columns.extraCounters(row).size
+
+    override fun get(key: String): CoverageCounter? {
+        val typeIndex = CounterType.indexOf(key)
+        if (typeIndex < 0) {
+            return columns.extraCounters(row)[key]
+        }
+        return if (columns.has(row, typeIndex)) counter(typeIndex) else null
+    }
+
+    override fun containsKey(key: String): Boolean = get(key) != null
+
+    override val entries: Set<Map.Entry<String, CoverageCounter>>
+        get() {
+            val result = LinkedHashMap<String, CoverageCounter>()
+            for (typeIndex in 0 until CounterType.COUNT) {
+                if (columns.has(row, typeIndex)) {
+                    result[CounterType.NAMES[typeIndex]] = counter(typeIndex)
+                }
+            }
+            result.putAll(columns.extraCounters(row))
+            return result.entries
+        }
+
+    /**
+     * Coverage percentage of a counter type without creating a [CoverageCounter]
+     */
+    fun coveragePercentage(typeIndex: Int): Double {
+        return if (columns.has(row, typeIndex)) columns.coveragePercentage(row, typeIndex) else 0.0
+    }
+
+    fun missed(typeIndex: Int): Int = if (columns.has(row, typeIndex)) columns.missed(row, typeIndex) else 0
+
+    fun covered(typeIndex: Int): Int = if (columns.has(row, typeIndex)) columns.covered(row, typeIndex) else 0
+
+    private fun counter(typeIndex: Int): CoverageCounter {
+        return CoverageCounter(
+            type = CounterType.NAMES[typeIndex],
+            missed = columns.missed(row, typeIndex),
+            covered = columns.covered(row, typeIndex),
+        )
+    }
+}
+
+/**
+ * Compact columnar representation of a parsed report
+ *
+ * Classes are stored in document order; the classes of package `i` are the rows from
+ * `packageClassOffsets[i]` up to `packageClassOffsets[i + 1]`. Package names are interned, package
+ * display names are computed while parsing and class display names once on first use.
+ * [toCoverageReport] exposes the data through the regular model classes, which are created on demand
+ * as lightweight views.
+ */
+internal class CompactCoverageReport(
+    val name: String,
+    private val packageNames: Array<String>,
+    private val packageDisplayNames: Array<String>,
+    private val packageClassOffsets: IntArray,
+    private val packageCounters: CounterColumns,
+    private val classNames: Array<String>,
+    private val classSourceFilenames: Array<String?>,
+    private val classCounters: CounterColumns,
+    private val reportCounters: CounterColumns,
+) {
+    private val classFullNames = arrayOfNulls<String>(classNames.size)
+
+    val packageCount: Int get() = packageNames.size
+    val classCount: Int get() = classNames.size
+
+    fun toCoverageReport(): CoverageReport {
+        return CoverageReport(
+            name = name,
+            packages = PackageListView(),
+            counters = CounterRowMap(reportCounters, 0),
+        )
+    }
+
+    private fun packageView(packageIndex: Int): CoveragePackage {
+        val view =
+            CoveragePackage(
+                name = packageNames[packageIndex],
+                classes = ClassListView(packageClassOffsets[packageIndex], packageClassOffsets[packageIndex + 1]),
+                counters = CounterRowMap(packageCounters, packageIndex),
+            )
+        view.cachedDisplayName = packageDisplayNames[packageIndex]
+        return view
+    }
+
+    private fun classView(classIndex: Int): CoverageClass {
+        val view =
+            CoverageClass(
+                name = classNames[classIndex],
+                sourceFilename = classSourceFilenames[classIndex],
+                counters = CounterRowMap(classCounters, classIndex),
+            )
+        view.cachedFullName = classFullNames[classIndex] ?: view.fullName.also {
+            classFullNames[classIndex] = it
+        }
+        return view
+    }
+
+    private inner class PackageListView : AbstractList<CoveragePackage>(), RandomAccess {
+        override val size: Int get() = packageNames.size
+
+        override fun get(index: Int): CoveragePackage = packageView(index)
+    }
+
+    private inner class ClassListView(
+        private val fromIndex: Int,
+        private val toIndex: Int,
+    ) : AbstractList<CoverageClass>(), RandomAccess {
+        override val size: Int get() = toIndex - fromIndex
+
+        override fun get(index: Int): CoverageClass {
+            if (index < 0 || index >= size) {
+                throw IndexOutOfBoundsException("Index: $index, Size: $size")
+            }
+            return classView(fromIndex + index)
+        }
+    }
+}
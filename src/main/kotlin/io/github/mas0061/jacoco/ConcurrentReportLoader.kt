@@ -0,0 +1,36 @@
+package io.github.mas0061.jacoco
+
+import java.io.File
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Loads several report files concurrently on a fork-join pool
+ *
+ * The results keep the order of the files. A single file is loaded on the calling thread.
+ */
+internal object ConcurrentReportLoader {
+    fun <T> load(
+        files: List<File>,
+        load: (File) -> T,
+    ): List<T> {
+        if (files.size <= 1) {
+            return files.map(load)
+        }
+
+        val pool = ForkJoinPool(minOf(files.size, Runtime.getRuntime().availableProcessors()))
+        try {
+            val futures = files.map { file -> pool.submit(Callable { load(file) }) }
+            return futures.map { future ->
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause as? IllegalArgumentException ?: IllegalStateException("Failed to load reports", e)
+                }
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.mas0061.jacoco
+
+import java.io.PrintStream
+import java.util.Locale
+
+/**
+ * カバレッジテーブルを1つの再利用バッファに書き込み、まとめて出力するクラス
+ *
+ * 行ごとに String.format と println を呼ぶ代わりに、列の詰め物とカバレッジ率の固定小数点表記を
+ * バッファへ直接書き込む。Gradleは標準出力を書き込みごとに中継するため、バッファが一定の大きさに
+ * なった時点と [flush] の呼び出し時にだけ出力する。
+ * 列の幅と書式は `%-50s %15s %15s` および `%.2f` と同じになる。
+ */
+internal class ConsoleTableWriter(private val out: PrintStream) {
+    companion object {
+        const val TABLE_WIDTH = 82 // 50 + 1 + 15 + 1 + 15 = 82
+        private const val CLASS_COLUMN_WIDTH = 50
+        private const val COVERAGE_COLUMN_WIDTH = 15
+        private const val BLOCK_SIZE = 64 * 1024
+        private const val PERCENT_SCALE = 100L * 100
+        private val LINE_SEPARATOR: String = System.lineSeparator()
+    }
+
+    private val buffer = StringBuilder(BLOCK_SIZE + TABLE_WIDTH * 2)
+    private val digits = CharArray(COVERAGE_COLUMN_WIDTH)
+    private var rowStart = -1
+
+    fun blankLine() {
+        endLine()
+    }
+
+    fun line(text: String) {
+        buffer.append(text)
+        endLine()
+    }
+
+    /** 表の幅いっぱいに [char] を並べた区切り線を書き込む */
+    fun rule(char: Char) {
+        repeat(TABLE_WIDTH) { buffer.append(char) }
+        endLine()
+    }
+
+    /** 見出し行を書き込む。[firstColumn] は1列目の見出し */
+    fun tableHeader(firstColumn: String = "Class/Package") {
+        name(firstColumn)
+        endName()
+        padLeft("Instruction (%)")
+        padLeft("Branch (%)")
+        endLine()
+    }
+
+    /**
+     * クラス列に [text] を追記する。1行のクラス列は複数回に分けて書き込める
+     */
+    fun name(text: String): ConsoleTableWriter {
+        if (rowStart < 0) {
+            rowStart = buffer.length
+        }
+        buffer.append(text)
+        return this
+    }
+
+    /**
+     * クラス列を閉じ、命令とブランチのカバレッジ率を書き込んで行を終える
+     */
+    fun coverage(
+        instructionMissed: Int,
+        instructionCovered: Int,
+        branchMissed: Int,
+        branchCovered: Int,
+    ) {
+        endName()
+        appendPercentage(instructionMissed, instructionCovered)
+        appendPercentage(branchMissed, branchCovered)
+        endLine()
+    }
+
+    /**
+     * バッファに残っている内容を出力する
+     */
+    fun flush() {
+        writeBlock()
+        out.flush()
+    }
+
+    private fun endName() {
+        val start = if (rowStart < 0) buffer.length else rowStart
+        repeat(CLASS_COLUMN_WIDTH - (buffer.length - start)) { buffer.append(' ') }
+        rowStart = -1
+    }
+
+    private fun padLeft(text: String) {
+        buffer.append(' ')
+        repeat(COVERAGE_COLUMN_WIDTH - text.length) { buffer.append(' ') }
+        buffer.append(text)
+    }
+
+    /**
+     * カバレッジ率を小数点以下2桁に四捨五入 (HALF_UP) して右詰めで書き込む。整数演算のみで計算する
+     */
+    private fun appendPercentage(
+        missed: Int,
+        covered: Int,
+    ) {
+        if (missed < 0 || covered < 0) {
+            // 負の値は想定外の入力のため、従来の浮動小数点での書式に任せる
+            val total = missed + covered
+            padLeft(String.format(Locale.US, "%.2f", if (total == 0) 0.0 else covered.toDouble() / total * 100))
+            return
+        }
+        val total = missed.toLong() + covered
+        var hundredths = if (total == 0L) 0L else (covered * PERCENT_SCALE * 2 + total) / (total * 2)
+
+        var position = digits.size
+        repeat(2) {
+            digits[--position] = '0' + (hundredths % 10).toInt()
+            hundredths /= 10
+        }
+        digits[--position] = '.'
+        do {
+            digits[--position] = '0' + (hundredths % 10).toInt()
+            hundredths /= 10
+        } while (hundredths > 0)
+
+        buffer.append(' ')
+        repeat(position) { buffer.append(' ') }
+        buffer.append(digits, position, digits.size - position)
+    }
+
+    private fun endLine() {
+        buffer.append(LINE_SEPARATOR)
+        if (buffer.length >= BLOCK_SIZE) {
+            writeBlock()
+        }
+    }
+
+    private fun writeBlock() {
+        if (buffer.isNotEmpty()) {
+            out.append(buffer)
+            buffer.setLength(0)
+        }
+    }
+}
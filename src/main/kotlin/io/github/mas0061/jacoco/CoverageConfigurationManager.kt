@@ -1,15 +1,119 @@
 package io.github.mas0061.jacoco
 
 import org.gradle.api.Project
+import org.gradle.api.file.RegularFile
+import org.gradle.api.provider.Provider
+import org.gradle.testing.jacoco.tasks.JacocoReport
 import java.io.File
 
 /**
  * プラグインの設定とオプションを管理するクラス
+ *
+ * 構成時にのみ使用する。タスクには解決済みの値をプロパティとして渡し、タスクの実行時には
+ * [project] を参照しない
  */
 class CoverageConfigurationManager(
     private val project: Project,
     private val extension: JacocoCoverageExtension,
 ) {
+    /**
+     * タスクの入力となるプロパティに、オプション・プロジェクトプロパティ・エクステンションから決まる値を設定する
+     *
+     * コマンドラインオプションはタスクの構成後に設定されるため、値は遅延評価する。
+     * 構成キャッシュを使う場合は、キャッシュに保存する時点で評価される
+     */
+    fun configure(task: JacocoCoverageTask) {
+        val xmlFiles = project.provider { determineXmlFiles(task.xmlPathOption) }
+        task.xmlReportNames.set(xmlFiles.map { it.keys.toList() })
+        task.xmlReportFiles.set(xmlFiles.map { it.values.toList() })
+        task.csvReportFile.set(project.provider { determineCsvFile(task.csvPathOption) })
+        task.reportFormat.set(
+            project.provider { if (shouldUseXmlReport(task.xmlPathOption, task.csvPathOption)) "xml" else "csv" },
+        )
+        task.targetClassPatterns.set(project.provider { determineTargetClasses(task.classesOption) })
+        task.showTotal.set(extension.showTotal)
+        task.showPackageSummary.set(extension.showPackageSummary)
+        task.showClassDetails.set(extension.showClassDetails)
+        task.topClasses.set(project.provider { determineTopClasses(task.topOption) })
+        task.sortOrder.set(project.provider { determineSortOrder(task.sortOption) })
+        task.streamOutput.set(project.provider { shouldStreamOutput(task.streamOption) })
+        task.xmlParser.set(project.provider { determineXmlParser(task.xmlParserOption) })
+        task.reportCache.set(project.provider { shouldUseReportCache() })
+        task.reportCacheDirectory.set(project.provider { determineReportCacheDirectory() })
+        task.parserMaxHeapSize.set(project.provider { determineParserMaxHeapSize(task.parserHeapOption) })
+        task.mergeReports.set(project.provider { shouldMergeReports(task.mergeOption) })
+        task.showLineCoverage.set(project.provider { shouldShowLineCoverage(task.linesOption) })
+        task.showMissedLines.set(project.provider { shouldShowMissedLines(task.missedLinesOption) })
+        task.lineStorage.set(project.provider { determineLineStorage(task.lineStorageOption) })
+        // レポートを生成するタスクと同じビルドで実行する場合は、生成後に表示する
+        task.mustRunAfter(project.tasks.withType(JacocoReport::class.java))
+        task.summaryFile.set(determineSummaryFile(task.name))
+    }
+
+    /**
+     * 集約タスクの入力となるプロパティを設定する
+     */
+    fun configureAggregate(task: JacocoCoverageAggregateTask) {
+        task.moduleReports.set(project.provider { determineModuleReports() })
+        task.targetClassPatterns.set(project.provider { determineTargetClasses(task.classesOption) })
+        task.xmlParser.set(project.provider { determineXmlParser("") })
+        task.reportCache.set(project.provider { shouldUseReportCache() })
+        task.reportCacheDirectory.set(project.provider { determineReportCacheDirectory() })
+        task.summaryFile.set(determineSummaryFile(task.name))
+    }
+
+    /**
+     * サブプロジェクトごとのXMLレポートファイルを決定する
+     * サブプロジェクトにこのプラグインが適用され、xmlReportPath が設定されていればそのファイルを、
+     * それ以外はデフォルトパスを使用する
+     */
+    fun determineModuleReports(): Map<String, File> {
+        return project.subprojects.associate { subproject ->
+            val moduleExtension = subproject.extensions.findByType(JacocoCoverageExtension::class.java)
+            val reportFile =
+                moduleExtension?.xmlReportPath?.orNull?.asFile ?: subproject.file(DEFAULT_XML_REPORT_PATH)
+            subproject.path to reportFile
+        }
+    }
+
+    /**
+     * XMLレポートを使用するかどうかを決定する
+     * CSVレポートが明示的に指定され、XMLレポートが指定されていない場合のみCSVレポートを使用する
+     */
+    fun shouldUseXmlReport(
+        xmlPathOption: String,
+        csvPathOption: String,
+    ): Boolean {
+        val csvExplicitlySpecified =
+            csvPathOption.isNotEmpty() ||
+                project.hasProperty("jacocoCsvPath") ||
+                extension.csvReportPath.isPresent
+
+        return xmlPathOption.isNotEmpty() ||
+            project.hasProperty("jacocoXmlPath") ||
+            !csvExplicitlySpecified
+    }
+
+    /**
+     * 表示するXMLレポートをレポート名とファイルの組で決定する
+     * XMLファイルのパスが指定されていない場合は、プロジェクトのすべての JacocoReport タスクが出力する
+     * XMLレポートを対象とする。JacocoReport タスクがない場合は [determineXmlFile] のファイルを使用する
+     */
+    fun determineXmlFiles(xmlPathOption: String): Map<String, File> {
+        val xmlPathSpecified =
+            xmlPathOption.isNotEmpty() ||
+                project.hasProperty("jacocoXmlPath") ||
+                extension.xmlReportPath.isPresent
+        if (!xmlPathSpecified) {
+            val discovered = JacocoReportOutputs.xmlReports(project)
+            if (discovered.isNotEmpty()) {
+                return discovered
+            }
+        }
+        val xmlFile = determineXmlFile(xmlPathOption)
+        return mapOf(xmlFile.nameWithoutExtension to xmlFile)
+    }
+
     /**
      * XMLファイルのパスを決定する
      * 優先順位: 1. コマンドラインオプション 2. プロジェクトプロパティ 3. エクステンション設定 4. デフォルトパス
@@ -21,9 +125,9 @@ class CoverageConfigurationManager(
             // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
             project.hasProperty("jacocoXmlPath") -> project.file(project.property("jacocoXmlPath").toString())
             // 3. エクステンション設定
-            extension.xmlReportPath != null -> extension.xmlReportPath!!
+            extension.xmlReportPath.isPresent -> extension.xmlReportPath.get().asFile
             // 4. デフォルトパス
-            else -> project.file("build/reports/jacoco/test/jacocoTestReport.xml")
+            else -> project.file(DEFAULT_XML_REPORT_PATH)
         }
     }
 
@@ -39,7 +143,7 @@ class CoverageConfigurationManager(
             // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
             project.hasProperty("jacocoCsvPath") -> project.file(project.property("jacocoCsvPath").toString())
             // 3. エクステンション設定
-            extension.csvReportPath != null -> extension.csvReportPath!!
+            extension.csvReportPath.isPresent -> extension.csvReportPath.get().asFile
             // 4. デフォルトパス
             else -> project.file("build/reports/jacoco/test/jacocoTestReport.csv")
         }
@@ -67,15 +171,184 @@ class CoverageConfigurationManager(
             }
 
         // 3. エクステンション設定
-        val fromExtension = extension.targetClasses
+        val fromExtension = extension.targetClasses.get()
 
         return fromOption.ifEmpty { fromProperty.ifEmpty { fromExtension } }
     }
 
     /**
-     * 全体カバレッジの表示設定を取得する
+     * XMLパーサーの実装を決定する。値の検証はタスクの実行時に [XmlParserBackend.fromOptionValue] で行う
+     * 優先順位: 1. コマンドラインオプション 2. プロジェクトプロパティ 3. エクステンション設定
+     */
+    fun determineXmlParser(xmlParserOption: String): String {
+        return when {
+            // 1. コマンドラインオプション (Gradle 5+)
+            xmlParserOption.isNotEmpty() -> xmlParserOption
+            // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
+            project.hasProperty("jacocoXmlParser") -> project.property("jacocoXmlParser").toString()
+            // 3. エクステンション設定
+            else -> extension.xmlParser.get()
+        }
+    }
+
+    /**
+     * 複数のXMLレポートを1つのテーブルにまとめるかどうかを決定する
+     * 優先順位: 1. コマンドラインオプション 2. プロジェクトプロパティ 3. エクステンション設定
+     */
+    fun shouldMergeReports(mergeOption: Boolean): Boolean {
+        return when {
+            // 1. コマンドラインオプション (Gradle 5+)
+            mergeOption -> true
+            // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
+            project.hasProperty("jacocoMerge") -> project.property("jacocoMerge").toString().toBoolean()
+            // 3. エクステンション設定
+            else -> extension.mergeReports.get()
+        }
+    }
+
+    /**
+     * 行レベルのカバレッジを表示するかどうかを決定する
+     * 優先順位: 1. コマンドラインオプション 2. プロジェクトプロパティ 3. エクステンション設定
+     */
+    fun shouldShowLineCoverage(linesOption: Boolean): Boolean {
+        return when {
+            // 1. コマンドラインオプション (Gradle 5+)
+            linesOption -> true
+            // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
+            project.hasProperty("jacocoLines") -> project.property("jacocoLines").toString().toBoolean()
+            // 3. エクステンション設定
+            else -> extension.showLineCoverage.get()
+        }
+    }
+
+    /**
+     * 選択したクラスのカバーされていない行を表示するかどうかを決定する
+     * 優先順位: 1. コマンドラインオプション 2. プロジェクトプロパティ 3. エクステンション設定
      */
-    fun shouldShowTotal(): Boolean {
-        return extension.showTotal
+    fun shouldShowMissedLines(missedLinesOption: Boolean): Boolean {
+        return when {
+            // 1. コマンドラインオプション (Gradle 5+)
+            missedLinesOption -> true
+            // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
+            project.hasProperty("jacocoMissedLines") -> project.property("jacocoMissedLines").toString().toBoolean()
+            // 3. エクステンション設定
+            else -> extension.showMissedLines.get()
+        }
+    }
+
+    /**
+     * 行レベルのデータの保存先を決定する。値の検証はタスクの実行時に行う
+     * 優先順位: 1. コマンドラインオプション 2. プロジェクトプロパティ 3. エクステンション設定
+     */
+    fun determineLineStorage(lineStorageOption: String): String {
+        return when {
+            // 1. コマンドラインオプション (Gradle 5+)
+            lineStorageOption.isNotEmpty() -> lineStorageOption
+            // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
+            project.hasProperty("jacocoLineStorage") -> project.property("jacocoLineStorage").toString()
+            // 3. エクステンション設定
+            else -> extension.lineStorage.get()
+        }
+    }
+
+    /**
+     * XMLレポートをパースするワーカープロセスの最大ヒープサイズを決定する。空の場合はデーモン内でパースする
+     * 優先順位: 1. コマンドラインオプション 2. プロジェクトプロパティ 3. エクステンション設定
+     */
+    fun determineParserMaxHeapSize(parserHeapOption: String): String {
+        return when {
+            // 1. コマンドラインオプション (Gradle 5+)
+            parserHeapOption.isNotEmpty() -> parserHeapOption
+            // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
+            project.hasProperty("jacocoParserHeap") -> project.property("jacocoParserHeap").toString()
+            // 3. エクステンション設定
+            else -> extension.parserMaxHeapSize.get()
+        }
+    }
+
+    /**
+     * カバレッジの悪い順に表示するクラス数を決定する。値の検証はタスクの実行時に [parseTopClasses] で行う
+     * 優先順位: 1. コマンドラインオプション 2. プロジェクトプロパティ 3. エクステンション設定
+     */
+    fun determineTopClasses(topOption: String): String {
+        return when {
+            // 1. コマンドラインオプション (Gradle 5+)
+            topOption.isNotEmpty() -> topOption
+            // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
+            project.hasProperty("jacocoTop") -> project.property("jacocoTop").toString()
+            // 3. エクステンション設定
+            else -> extension.topClasses.get().toString()
+        }
+    }
+
+    /**
+     * カバレッジの悪いクラスを選ぶ際の並び順を決定する。値の検証はタスクの実行時に
+     * [CoverageSortOrder.fromOptionValue] で行う
+     * 優先順位: 1. コマンドラインオプション 2. プロジェクトプロパティ 3. エクステンション設定
+     */
+    fun determineSortOrder(sortOption: String): String {
+        return when {
+            // 1. コマンドラインオプション (Gradle 5+)
+            sortOption.isNotEmpty() -> sortOption
+            // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
+            project.hasProperty("jacocoSort") -> project.property("jacocoSort").toString()
+            // 3. エクステンション設定
+            else -> extension.sortBy.get()
+        }
+    }
+
+    /**
+     * パースと並行してクラスの行を表示するかどうかを決定する
+     * 優先順位: 1. コマンドラインオプション 2. プロジェクトプロパティ 3. エクステンション設定
+     */
+    fun shouldStreamOutput(streamOption: Boolean): Boolean {
+        return when {
+            // 1. コマンドラインオプション (Gradle 5+)
+            streamOption -> true
+            // 2. プロジェクトプロパティ (Gradle 4との互換性のため)
+            project.hasProperty("jacocoStream") -> project.property("jacocoStream").toString().toBoolean()
+            // 3. エクステンション設定
+            else -> extension.streamOutput.get()
+        }
+    }
+
+    /**
+     * パース済みレポートのキャッシュを使用するかどうかを決定する
+     * 優先順位: 1. プロジェクトプロパティ 2. エクステンション設定
+     */
+    fun shouldUseReportCache(): Boolean {
+        return if (project.hasProperty("jacocoReportCache")) {
+            project.property("jacocoReportCache").toString().toBoolean()
+        } else {
+            extension.reportCache.get()
+        }
+    }
+
+    /**
+     * パース済みレポートのスナップショットを保存するディレクトリ
+     */
+    fun determineReportCacheDirectory(): File {
+        return File(project.layout.buildDirectory.get().asFile, "jacoco-coverage-console/cache")
+    }
+
+    /**
+     * タスクが表示したカバレッジテーブルを記録するファイル
+     */
+    fun determineSummaryFile(taskName: String): Provider<RegularFile> {
+        return project.layout.buildDirectory.file("jacoco-coverage-console/summary/$taskName.txt")
+    }
+
+    companion object {
+        private const val DEFAULT_XML_REPORT_PATH = "build/reports/jacoco/test/jacocoTestReport.xml"
+
+        /**
+         * カバレッジの悪い順に表示するクラス数の設定値を検証して数値に変換する
+         */
+        fun parseTopClasses(value: String): Int {
+            val topClasses =
+                value.trim().toIntOrNull() ?: throw IllegalArgumentException("Invalid top class count '$value'")
+            require(topClasses >= 0) { "Top class count must not be negative: $topClasses" }
+            return topClasses
+        }
     }
 }
@@ -25,28 +25,9 @@ class CoverageDataFilter {
                 data
             }
             else -> {
-                data.filter { row -> matchesTargetClasses(row, targetClasses) }
-            }
-        }
-    }
-
-    /**
-     * 行が指定されたターゲットクラス/パッケージにマッチするかを判定する
-     */
-    private fun matchesTargetClasses(
-        row: CoverageRow,
-        targetClasses: List<String>,
-    ): Boolean {
-        return targetClasses.any { target ->
-            when {
-                // パッケージ指定（末尾に*がある場合）
-                target.endsWith("*") -> {
-                    val packagePrefix = target.dropLast(1)
-                    row.fullClassName.startsWith(packagePrefix) ||
-                        row.packageName.startsWith(packagePrefix)
-                }
-                // 完全一致
-                else -> row.fullClassName == target || row.packageName == target
+                // パターンは一度だけコンパイルし、全ての行で共有する
+                val matcher = TargetClassMatcher(targetClasses)
+                data.filter { row -> matcher.matches(row.fullClassName, row.packageName) }
             }
         }
     }
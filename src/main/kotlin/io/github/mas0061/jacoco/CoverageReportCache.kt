@@ -0,0 +1,190 @@
+package io.github.mas0061.jacoco
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.security.MessageDigest
+import java.util.Locale
+
+/**
+ * Identifies a report file by its location, size and modification time
+ */
+internal data class ReportFingerprint(
+    val path: String,
+    val size: Long,
+    val lastModified: Long,
+) {
+    companion object {
+        fun of(file: File): ReportFingerprint {
+            return ReportFingerprint(file.canonicalPath, file.length(), file.lastModified())
+        }
+
+        /**
+         * SHA-256 of the file content
+         */
+        fun contentHash(file: File): ByteArray {
+            val digest = MessageDigest.getInstance("SHA-256")
+            file.inputStream().use { input ->
+                val buffer = ByteArray(64 * 1024)
+                while (true) {
+                    val read = input.read(buffer)
+                    if (read < 0) {
+                        break
+                    }
+                    digest.update(buffer, 0, read)
+                }
+            }
+            return digest.digest()
+        }
+    }
+
+    /**
+     * Short hash of the report path, used to name files that belong to the report
+     */
+    fun pathHash(): String {
+        return MessageDigest.getInstance("SHA-256")
+            .digest(path.toByteArray(Charsets.UTF_8))
+            .take(8)
+            .joinToString("") { String.format(Locale.ROOT, "%02x", it) }
+    }
+}
+
+/**
+ * Cache of parsed reports stored as binary snapshots in a directory below `build/`
+ *
+ * Each snapshot records the path, size, modification time and SHA-256 of the report it was created from.
+ * When the size and modification time still match, the snapshot is used as is. Otherwise the content hash
+ * decides, so a report that was regenerated with identical content is not parsed again, while any
+ * change to the content invalidates the snapshot. Snapshots hold the complete report; target class
+ * filters are applied to the loaded report.
+ */
+internal class CoverageReportCache(private val cacheDirectory: File) {
+    private class SnapshotHeader(
+        val fingerprint: ReportFingerprint,
+        val contentHash: ByteArray,
+    )
+
+    /**
+     * Returns the cached report for [xmlFile], or parses it with [parse] and stores a new snapshot
+     */
+    fun load(
+        xmlFile: File,
+        parse: (File) -> CoverageReport,
+    ): CoverageReport {
+        CoverageReportParser.validateFileAccess(xmlFile)
+
+        val fingerprint = ReportFingerprint.of(xmlFile)
+        val snapshotFile = snapshotFile(fingerprint)
+        var contentHash: ByteArray? = null
+
+        val cached =
+            readSnapshot(snapshotFile) { header ->
+                when {
+                    header.fingerprint == fingerprint -> true
+                    header.fingerprint.size != fingerprint.size -> false
+                    else -> {
+                        contentHash = ReportFingerprint.contentHash(xmlFile)
+                        header.contentHash.contentEquals(contentHash)
+                    }
+                }
+            }
+        if (cached != null && cached.fingerprint == fingerprint) {
+            return cached.report
+        }
+
+        val report = cached?.report ?: parse(xmlFile)
+        writeSnapshot(snapshotFile, fingerprint, contentHash ?: ReportFingerprint.contentHash(xmlFile), report)
+        return report
+    }
+
+    /**
+     * Whether the snapshot of [xmlFile] was created from its current size and modification time, so that [load]
+     * returns it without parsing or hashing the report. Only the snapshot header is read.
+     */
+    fun isCurrent(xmlFile: File): Boolean {
+        if (!xmlFile.isFile) {
+            return false
+        }
+        val fingerprint = ReportFingerprint.of(xmlFile)
+        val snapshotFile = snapshotFile(fingerprint)
+        if (!snapshotFile.isFile) {
+            return false
+        }
+        return try {
+            DataInputStream(snapshotFile.inputStream().buffered()).use { readHeader(it).fingerprint == fingerprint }
+        } catch (ignored: IOException) {
+            false
+        }
+    }
+
+    private class CachedReport(
+        val fingerprint: ReportFingerprint,
+        val report: CoverageReport,
+    )
+
+    /**
+     * Reads the snapshot when [isValid] accepts its header. Unreadable snapshots are treated as missing.
+     */
+    private fun readSnapshot(
+        snapshotFile: File,
+        isValid: (SnapshotHeader) -> Boolean,
+    ): CachedReport? {
+        if (!snapshotFile.isFile) {
+            return null
+        }
+        return try {
+            DataInputStream(snapshotFile.inputStream().buffered()).use { input ->
+                val header = readHeader(input)
+                if (isValid(header)) CachedReport(header.fingerprint, CoverageReportSnapshot.read(input)) else null
+            }
+        } catch (ignored: IOException) {
+            null
+        }
+    }
+
+    private fun readHeader(input: DataInputStream): SnapshotHeader {
+        val fingerprint = ReportFingerprint(input.readUTF(), input.readLong(), input.readLong())
+        val contentHash = ByteArray(input.readUnsignedByte())
+        input.readFully(contentHash)
+        return SnapshotHeader(fingerprint, contentHash)
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first so that concurrent readers never see a partial file.
+     * The cache is an optimization only, so failures to write it are ignored.
+     */
+    private fun writeSnapshot(
+        snapshotFile: File,
+        fingerprint: ReportFingerprint,
+        contentHash: ByteArray,
+        report: CoverageReport,
+    ) {
+        var temporaryFile: File? = null
+        try {
+            cacheDirectory.mkdirs()
+            temporaryFile = File.createTempFile(snapshotFile.name, ".tmp", cacheDirectory)
+            DataOutputStream(temporaryFile.outputStream().buffered()).use { output ->
+                output.writeUTF(fingerprint.path)
+                output.writeLong(fingerprint.size)
+                output.writeLong(fingerprint.lastModified)
+                output.writeByte(contentHash.size)
+                output.write(contentHash)
+                CoverageReportSnapshot.write(report, output)
+            }
+            if (!temporaryFile.renameTo(snapshotFile)) {
+                // File.renameTo does not replace an existing file on every platform
+                snapshotFile.delete()
+                temporaryFile.renameTo(snapshotFile)
+            }
+        } catch (ignored: IOException) {
+            // Ignored: the report is still displayed, only the next run has to parse it again
+        } finally {
+            temporaryFile?.delete()
+        }
+    }
+
+    private fun snapshotFile(fingerprint: ReportFingerprint): File {
+        return File(cacheDirectory, "report-${fingerprint.pathHash()}.bin")
+    }
+}
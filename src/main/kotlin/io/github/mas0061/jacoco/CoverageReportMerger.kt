@@ -0,0 +1,88 @@
+package io.github.mas0061.jacoco
+
+/**
+ * Merges several coverage reports into one report
+ *
+ * Packages keep the order in which they are first seen. [merge] combines reports of different modules;
+ * [mergeOverlapping] combines reports of the same classes.
+ */
+internal object CoverageReportMerger {
+    /**
+     * Merges the reports of several modules. A package that appears in more than one module
+     * (a split package) becomes one package holding the classes of all modules, with summed counters.
+     */
+    fun merge(
+        name: String,
+        reports: List<CoverageReport>,
+    ): CoverageReport {
+        val packagesByName = LinkedHashMap<String, MutableList<CoveragePackage>>()
+        for (report in reports) {
+            for (pkg in report.packages) {
+                packagesByName.getOrPut(pkg.name) { mutableListOf() }.add(pkg)
+            }
+        }
+
+        val packages =
+            packagesByName.map { (packageName, parts) ->
+                if (parts.size == 1) {
+                    parts[0]
+                } else {
+                    CoveragePackage(
+                        name = packageName,
+                        classes = parts.flatMap { it.classes },
+                        counters = CoverageCounter.aggregate(parts.map { it.counters }),
+                    )
+                }
+            }
+        return CoverageReport(name, packages, CoverageCounter.aggregate(reports.map { it.counters }))
+    }
+
+    /**
+     * Merges reports of the same classes created by different test tasks of one project
+     *
+     * A class that appears in several reports keeps, per counter type, the counter with the most covered
+     * items. The counters do not tell which items were covered, so the result is a lower bound of the
+     * combined coverage; only merging the execution data in one JacocoReport task gives the exact value.
+     * Package and report counters are recalculated from the merged classes.
+     */
+    fun mergeOverlapping(
+        name: String,
+        reports: List<CoverageReport>,
+    ): CoverageReport {
+        val classesByPackage = LinkedHashMap<String, LinkedHashMap<String, CoverageClass>>()
+        for (report in reports) {
+            for (pkg in report.packages) {
+                val classes = classesByPackage.getOrPut(pkg.name) { LinkedHashMap() }
+                for (clazz in pkg.classes) {
+                    val existing = classes[clazz.name]
+                    classes[clazz.name] =
+                        if (existing == null) clazz else existing.copy(counters = mostCovered(existing, clazz))
+                }
+            }
+        }
+
+        val packages =
+            classesByPackage.map { (packageName, classes) ->
+                CoveragePackage(
+                    name = packageName,
+                    classes = classes.values.toList(),
+                    counters = CoverageCounter.aggregate(classes.values.map { it.counters }),
+                )
+            }
+        return CoverageReport(name, packages, CoverageCounter.aggregate(packages.map { it.counters }))
+    }
+
+    private fun mostCovered(
+        first: CoverageClass,
+        second: CoverageClass,
+    ): Map<String, CoverageCounter> {
+        val counters = LinkedHashMap<String, CoverageCounter>(first.counters)
+        for ((type, counter) in second.counters) {
+            val current = counters[type]
+            if (current == null || counter.covered > current.covered) {
+                counters[type] = counter
+            }
+        }
+        return counters
+    }
+}
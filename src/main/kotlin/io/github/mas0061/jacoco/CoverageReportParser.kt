@@ -0,0 +1,177 @@
+package io.github.mas0061.jacoco
+
+import java.io.File
+
+/**
+ * Common interface of the JaCoCo XML report parser backends
+ */
+interface CoverageReportParser {
+    /**
+     * Parses the report. When a [matcher] is given, packages and classes that cannot match are skipped
+     * without building model objects, and the package and report counters are recalculated from the
+     * classes that were kept.
+     */
+    fun parse(
+        xmlFile: File,
+        matcher: TargetClassMatcher? = null,
+    ): CoverageReport
+
+    companion object {
+        internal fun validateFileAccess(xmlFile: File) {
+            require(xmlFile.exists()) { "XML file not found: ${xmlFile.absolutePath}" }
+            require(xmlFile.canRead()) { "XML file is not readable: ${xmlFile.absolutePath}" }
+            require(xmlFile.extension.lowercase() == "xml") {
+                "Expected XML file, got: ${xmlFile.name}"
+            }
+        }
+    }
+}
+
+/**
+ * Collects packages and classes reported by a parser backend and applies the target class filter
+ *
+ * Counters are written straight into the columns of a [CompactCoverageReport], so no per-class maps or
+ * counter objects are retained.
+ *
+ * When a [classListener] is given, every selected class is handed to it as soon as the next class or the end
+ * of its package is reached, and is not retained; the built report then holds the packages and the report
+ * counters only.
+ */
+internal class CoverageReportBuilder(
+    matcher: TargetClassMatcher?,
+    private val classListener: ((CoverageClass) -> Unit)? = null,
+) {
+    private val matcher = matcher?.takeUnless { it.isEmpty }
+    private val packageNames = mutableListOf<String>()
+    private val packageDisplayNames = mutableListOf<String>()
+    private val packageClassOffsets = mutableListOf<Int>()
+    private val packageCounters = CounterColumns()
+    private val classNames = mutableListOf<String>()
+    private val classSourceFilenames = mutableListOf<String?>()
+    private val classCounters = CounterColumns(1024)
+    private val reportCounters = CounterColumns(1).also { it.addRow() }
+    private val internedNames = HashMap<String, String>()
+    private var packageRow = -1
+    private var classRow = -1
+    private var classPending = false
+    private var packageClassCount = 0
+    private var packageDisplayName = ""
+
+    /**
+     * Starts a package and returns false when none of its classes can be selected
+     */
+    fun startPackage(name: String): Boolean {
+        packageDisplayName = displayName(name)
+        if (matcher != null && !matcher.mayMatchPackage(packageDisplayName)) {
+            return false
+        }
+        packageNames.add(internedNames.getOrPut(name) { name })
+        packageDisplayNames.add(packageDisplayName)
+        packageClassOffsets.add(classNames.size)
+        packageRow = packageCounters.addRow()
+        packageClassCount = 0
+        return true
+    }
+
+    /**
+     * Starts a class of the current package and returns false when it is not selected
+     */
+    fun startClass(
+        name: String,
+        sourceFilename: String?,
+    ): Boolean {
+        completeClass()
+        if (matcher != null && !matcher.matches(name.replace('/', '.'), packageDisplayName)) {
+            return false
+        }
+        classNames.add(name)
+        classSourceFilenames.add(sourceFilename)
+        classRow = classCounters.addRow()
+        classPending = true
+        return true
+    }
+
+    fun addClassCounter(counter: CoverageCounter) {
+        classCounters.set(classRow, counter.type, counter.missed, counter.covered)
+    }
+
+    fun addPackageCounter(counter: CoverageCounter) {
+        if (matcher == null) {
+            packageCounters.set(packageRow, counter.type, counter.missed, counter.covered)
+        }
+    }
+
+    fun addReportCounter(counter: CoverageCounter) {
+        if (matcher == null) {
+            reportCounters.set(0, counter.type, counter.missed, counter.covered)
+        }
+    }
+
+    fun endPackage() {
+        completeClass()
+        if (matcher == null) {
+            return
+        }
+        if (packageClassCount == 0) {
+            // Packages without selected classes are dropped
+            packageNames.removeAt(packageNames.size - 1)
+            packageDisplayNames.removeAt(packageDisplayNames.size - 1)
+            packageClassOffsets.removeAt(packageClassOffsets.size - 1)
+            packageCounters.truncate(packageRow)
+            return
+        }
+        reportCounters.addRow(0, packageCounters, packageRow)
+    }
+
+    /**
+     * Finishes the class whose counters have been read: adds it to the recalculated package counters and
+     * hands it to the listener
+     */
+    private fun completeClass() {
+        if (!classPending) {
+            return
+        }
+        classPending = false
+        packageClassCount++
+        if (matcher != null) {
+            // Recalculate package and report counters based on the selected classes
+            packageCounters.addRow(packageRow, classCounters, classRow)
+        }
+        val listener = classListener ?: return
+        // The row is reused for the next class, so the listener gets its own copy of the counters
+        val counters = LinkedHashMap(CounterRowMap(classCounters, classRow))
+        listener(CoverageClass(classNames[classRow], classSourceFilenames[classRow], counters))
+        classNames.clear()
+        classSourceFilenames.clear()
+        classCounters.truncate(0)
+    }
+
+    /** Packages collected so far, in document order */
+    val packageList: List<CoveragePackage> get() = buildCompact("").toCoverageReport().packages
+
+    fun build(reportName: String): CoverageReport = buildCompact(reportName).toCoverageReport()
+
+    private fun buildCompact(reportName: String): CompactCoverageReport {
+        packageCounters.trimToSize()
+        classCounters.trimToSize()
+        return CompactCoverageReport(
+            name = reportName,
+            packageNames = packageNames.toTypedArray(),
+            packageDisplayNames = packageDisplayNames.toTypedArray(),
+            packageClassOffsets = (packageClassOffsets + classNames.size).toIntArray(),
+            packageCounters = packageCounters,
+            classNames = classNames.toTypedArray(),
+            classSourceFilenames = classSourceFilenames.toTypedArray(),
+            classCounters = classCounters,
+            reportCounters = reportCounters,
+        )
+    }
+
+    private fun displayName(packageName: String): String {
+        return if (packageName.isEmpty()) {
+            TargetClassMatcher.DEFAULT_PACKAGE_DISPLAY_NAME
+        } else {
+            packageName.replace('/', '.')
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.mas0061.jacoco
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+
+/**
+ * Compact binary encoding of a [CoverageReport]
+ *
+ * Packages and classes are written in document order. Counters of the known JaCoCo types are written
+ * as their ordinal followed by the missed and covered counts; other types carry their name.
+ */
+internal object CoverageReportSnapshot {
+    private const val MAGIC = 0x4A434353 // "JCCS"
+    private const val VERSION = 1
+    private const val CUSTOM_TYPE = 0xFF
+
+    fun write(
+        report: CoverageReport,
+        output: DataOutputStream,
+    ) {
+        output.writeInt(MAGIC)
+        output.writeInt(VERSION)
+        output.writeUTF(report.name)
+        output.writeInt(report.packages.size)
+        for (pkg in report.packages) {
+            output.writeUTF(pkg.name)
+            output.writeInt(pkg.classes.size)
+            for (clazz in pkg.classes) {
+                output.writeUTF(clazz.name)
+                output.writeBoolean(clazz.sourceFilename != null)
+                clazz.sourceFilename?.let { output.writeUTF(it) }
+                writeCounters(clazz.counters, output)
+            }
+            writeCounters(pkg.counters, output)
+        }
+        writeCounters(report.counters, output)
+    }
+
+    /**
+     * Reads a snapshot written by [write] into a compact report
+     */
+    fun read(input: DataInputStream): CoverageReport {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            throw IOException("Unsupported coverage report snapshot")
+        }
+        val builder = CoverageReportBuilder(null)
+        val reportName = input.readUTF()
+        repeat(input.readInt()) {
+            builder.startPackage(input.readUTF())
+            repeat(input.readInt()) {
+                val className = input.readUTF()
+                val sourceFilename = if (input.readBoolean()) input.readUTF() else null
+                builder.startClass(className, sourceFilename)
+                readCounters(input, builder::addClassCounter)
+            }
+            readCounters(input, builder::addPackageCounter)
+            builder.endPackage()
+        }
+        readCounters(input, builder::addReportCounter)
+        return builder.build(reportName)
+    }
+
+    private fun writeCounters(
+        counters: Map<String, CoverageCounter>,
+        output: DataOutputStream,
+    ) {
+        output.writeShort(counters.size)
+        for (counter in counters.values) {
+            val typeIndex = CounterType.indexOf(counter.type)
+            if (typeIndex < 0) {
+                output.writeByte(CUSTOM_TYPE)
+                output.writeUTF(counter.type)
+            } else {
+                output.writeByte(typeIndex)
+            }
+            output.writeInt(counter.missed)
+            output.writeInt(counter.covered)
+        }
+    }
+
+    private fun readCounters(
+        input: DataInputStream,
+        add: (CoverageCounter) -> Unit,
+    ) {
+        repeat(input.readUnsignedShort()) {
+            val type =
+                when (val typeIndex = input.readUnsignedByte()) {
+                    CUSTOM_TYPE -> input.readUTF()
+                    in 0 until CounterType.COUNT -> CounterType.NAMES[typeIndex]
+                    else -> throw IOException("Invalid counter type in coverage report snapshot: $typeIndex")
+                }
+            add(CoverageCounter(type, input.readInt(), input.readInt()))
+        }
+    }
+}
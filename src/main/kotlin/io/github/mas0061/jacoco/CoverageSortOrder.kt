@@ -0,0 +1,86 @@
+package io.github.mas0061.jacoco
+
+/**
+ * カバレッジの低いクラスを選ぶ際の並び順
+ *
+ * カバレッジ率による並び順では、対象のカウンターが0件のクラス (ブランチのないクラスなど) は順位付けしない。
+ */
+enum class CoverageSortOrder(
+    val optionValue: String,
+    internal val description: String,
+) {
+    /** 命令カバレッジの低い順 (デフォルト) */
+    INSTRUCTION("instruction", "lowest instruction coverage"),
+
+    /** ブランチカバレッジの低い順 */
+    BRANCH("branch", "lowest branch coverage"),
+
+    /** 未実行の命令数の多い順 */
+    MISSED("missed", "most missed instructions"),
+    ;
+
+    /**
+     * クラスが順位付けの対象かどうか
+     */
+    internal fun isRanked(counters: Map<String, CoverageCounter>): Boolean {
+        val typeIndex = if (this == BRANCH) CounterType.BRANCH else CounterType.INSTRUCTION
+        val missed = CoverageCounter.missedCount(counters, typeIndex)
+        return if (this == MISSED) missed > 0 else missed + CoverageCounter.coveredCount(counters, typeIndex) > 0
+    }
+
+    /**
+     * [first] の方がカバレッジが悪い場合に負の値を返す。同順位の場合は未実行の命令数が多い順、クラス名の順とする
+     */
+    internal fun compareWorseFirst(
+        first: CoverageClass,
+        second: CoverageClass,
+    ): Int {
+        val result =
+            when (this) {
+                INSTRUCTION -> compareCoverage(first, second, CounterType.INSTRUCTION)
+                BRANCH -> compareCoverage(first, second, CounterType.BRANCH)
+                MISSED -> 0
+            }
+        if (result != 0) {
+            return result
+        }
+        val missedResult = missedInstructions(second).compareTo(missedInstructions(first))
+        if (missedResult != 0) {
+            return missedResult
+        }
+        if (this == MISSED) {
+            val coverageResult = compareCoverage(first, second, CounterType.INSTRUCTION)
+            if (coverageResult != 0) {
+                return coverageResult
+            }
+        }
+        return first.fullName.compareTo(second.fullName)
+    }
+
+    companion object {
+        fun fromOptionValue(value: String): CoverageSortOrder {
+            return values().firstOrNull { it.optionValue == value.trim().lowercase() }
+                ?: throw IllegalArgumentException(
+                    "Unknown sort order '$value'. Supported values: ${values().joinToString { it.optionValue }}",
+                )
+        }
+
+        private fun missedInstructions(clazz: CoverageClass): Int =
+            CoverageCounter.missedCount(clazz.counters, CounterType.INSTRUCTION)
+
+        /**
+         * カバレッジ率を浮動小数点を使わずに比較する (covered1 / total1 と covered2 / total2 の交差乗算)
+         */
+        private fun compareCoverage(
+            first: CoverageClass,
+            second: CoverageClass,
+            typeIndex: Int,
+        ): Int {
+            val firstCovered = CoverageCounter.coveredCount(first.counters, typeIndex).toLong()
+            val firstTotal = firstCovered + CoverageCounter.missedCount(first.counters, typeIndex)
+            val secondCovered = CoverageCounter.coveredCount(second.counters, typeIndex).toLong()
+            val secondTotal = secondCovered + CoverageCounter.missedCount(second.counters, typeIndex)
+            return (firstCovered * secondTotal).compareTo(secondCovered * firstTotal)
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.mas0061.jacoco
+
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.OutputStream
+import java.io.PrintStream
+import java.nio.charset.Charset
+
+/**
+ * タスクが表示したカバレッジテーブルをタスクの出力ファイルに記録し、再表示するためのユーティリティ
+ *
+ * タスクが最新と判定された場合やビルドキャッシュから復元された場合、タスクアクションは実行されない。
+ * その場合でも同じ表示が得られるよう、コンソールに書き込んだバイト列をそのままファイルにも書き込んでおき、
+ * 再表示の際はファイルの内容をコンソールへ書き戻す。
+ */
+internal object CoverageSummaryOutput {
+    /**
+     * [console] と [summaryFile] の両方に書き込むストリームを開く。閉じても [console] は閉じない
+     */
+    fun open(
+        summaryFile: File,
+        console: PrintStream,
+    ): PrintStream {
+        summaryFile.parentFile?.mkdirs()
+        val file = BufferedOutputStream(FileOutputStream(summaryFile))
+        // コンソールと同じ文字コードで書き込み、再表示ではバイト列をそのまま書き戻す
+        return PrintStream(TeeOutputStream(console, file), false, Charset.defaultCharset().name())
+    }
+
+    /**
+     * 記録されたカバレッジテーブルを [console] に書き戻す
+     */
+    fun replay(
+        summaryFile: File,
+        console: PrintStream,
+    ) {
+        if (!summaryFile.isFile) {
+            return
+        }
+        summaryFile.inputStream().use { it.copyTo(console) }
+        console.flush()
+    }
+
+    private class TeeOutputStream(
+        private val console: OutputStream,
+        private val file: OutputStream,
+    ) : OutputStream() {
+        override fun write(b: Int) {
+            console.write(b)
+            file.write(b)
+        }
+
+        override fun write(
+            b: ByteArray,
+            off: Int,
+            len: Int,
+        ) {
+            console.write(b, off, len)
+            file.write(b, off, len)
+        }
+
+        override fun flush() {
+            console.flush()
+            file.flush()
+        }
+
+        override fun close() {
+            console.flush()
+            file.close()
+        }
+    }
+}
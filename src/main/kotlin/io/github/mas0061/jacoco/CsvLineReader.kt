@@ -0,0 +1,214 @@
+package io.github.mas0061.jacoco
+
+import java.io.Reader
+
+/**
+ * CSVを1行ずつ読み込み、行バッファ内でフィールドに分割するリーダー
+ *
+ * 行バッファとフィールド位置の配列は再利用されるため、行数が増えてもメモリ使用量は一定となる。
+ * 行の区切りは BufferedReader.readLine と同じく LF、CR、CRLF を受け付ける。
+ */
+internal class CsvLineReader(
+    private val reader: Reader,
+    firstLineNumber: Int = 1,
+) {
+    companion object {
+        private const val INPUT_BUFFER_SIZE = 64 * 1024
+        private const val INITIAL_LINE_CAPACITY = 256
+        private const val INITIAL_FIELD_CAPACITY = 16
+    }
+
+    private val input = CharArray(INPUT_BUFFER_SIZE)
+    private var inputPosition = 0
+    private var inputLimit = 0
+    private var skipLineFeed = false
+
+    private var line = CharArray(INITIAL_LINE_CAPACITY)
+    private var lineLength = 0
+    private var fieldStarts = IntArray(INITIAL_FIELD_CAPACITY)
+    private var fieldEnds = IntArray(INITIAL_FIELD_CAPACITY)
+
+    /** 直前に読み込んだ行の物理的な行番号 (1始まり) */
+    var lineNumber = firstLineNumber - 1
+        private set
+
+    /** 直前に分割した行のフィールド数 */
+    var fieldCount = 0
+        private set
+
+    /** 直前に読み込んだ行が空白文字のみで構成されているかどうか */
+    var isBlank = true
+        private set
+
+    /**
+     * 次の行を読み込み、フィールドに分割する。ファイルの終端に達した場合は false を返す
+     */
+    fun readLine(): Boolean {
+        lineLength = 0
+        isBlank = true
+        while (true) {
+            if (inputPosition == inputLimit && !fillInput()) {
+                if (lineLength == 0) {
+                    return false
+                }
+                break
+            }
+            val char = input[inputPosition++]
+            if (skipLineFeed) {
+                skipLineFeed = false
+                if (char == '\n') {
+                    continue
+                }
+            }
+            if (char == '\n' || char == '\r') {
+                skipLineFeed = char == '\r'
+                break
+            }
+            if (isBlank && !char.isWhitespace()) {
+                isBlank = false
+            }
+            appendToLine(char)
+        }
+        lineNumber++
+        tokenize()
+        return true
+    }
+
+    /**
+     * フィールドの値を前後の空白を除いて返す。[previous] と同じ内容の場合は [previous] を返す
+     */
+    fun field(
+        index: Int,
+        previous: String? = null,
+    ): String {
+        val start = trimStart(index)
+        val length = trimEnd(index) - start
+        if (previous != null && previous.length == length && regionEquals(start, previous)) {
+            return previous
+        }
+        return String(line, start, length)
+    }
+
+    /** フィールドの値をそのまま返す (エラーメッセージ用) */
+    fun rawField(index: Int): String = String(line, fieldStarts[index], fieldEnds[index] - fieldStarts[index])
+
+    /**
+     * フィールドを整数として行バッファから直接読み取る。整数でない場合は null を返す
+     */
+    fun intField(index: Int): Int? {
+        var position = trimStart(index)
+        val end = trimEnd(index)
+        if (position == end) {
+            return null
+        }
+        val negative = line[position] == '-'
+        if (negative || line[position] == '+') {
+            position++
+            if (position == end) {
+                return null
+            }
+        }
+        val limit = if (negative) -Int.MIN_VALUE.toLong() else Int.MAX_VALUE.toLong()
+        var value = 0L
+        while (position < end) {
+            val digit = line[position++] - '0'
+            if (digit !in 0..9) {
+                return null
+            }
+            value = value * 10 + digit
+            if (value > limit) {
+                return null
+            }
+        }
+        return (if (negative) -value else value).toInt()
+    }
+
+    private fun fillInput(): Boolean {
+        val read = reader.read(input, 0, input.size)
+        inputPosition = 0
+        inputLimit = maxOf(read, 0)
+        return read > 0
+    }
+
+    private fun appendToLine(char: Char) {
+        if (lineLength == line.size) {
+            line = line.copyOf(line.size * 2)
+        }
+        line[lineLength++] = char
+    }
+
+    /**
+     * 行をカンマで分割する。クォートを外した値を行バッファ内で前詰めするため、追加のバッファは不要
+     */
+    private fun tokenize() {
+        fieldCount = 0
+        var write = 0
+        var fieldStart = 0
+        var inQuotes = false
+        var index = 0
+        while (index < lineLength) {
+            val char = line[index]
+            when {
+                char == '"' && !inQuotes -> inQuotes = true
+                char == '"' && inQuotes ->
+                    // Check if it's an escaped quote
+                    if (index + 1 < lineLength && line[index + 1] == '"') {
+                        line[write++] = '"'
+                        index++
+                    } else {
+                        inQuotes = false
+                    }
+                char == ',' && !inQuotes -> {
+                    addField(fieldStart, write)
+                    fieldStart = write
+                }
+                else -> line[write++] = char
+            }
+            index++
+        }
+        addField(fieldStart, write)
+    }
+
+    private fun addField(
+        start: Int,
+        end: Int,
+    ) {
+        if (fieldCount == fieldStarts.size) {
+            fieldStarts = fieldStarts.copyOf(fieldCount * 2)
+            fieldEnds = fieldEnds.copyOf(fieldCount * 2)
+        }
+        fieldStarts[fieldCount] = start
+        fieldEnds[fieldCount] = end
+        fieldCount++
+    }
+
+    // String.trim と同じ空白文字を取り除く
+    private fun trimStart(index: Int): Int {
+        var start = fieldStarts[index]
+        while (start < fieldEnds[index] && line[start].isWhitespace()) {
+            start++
+        }
+        return start
+    }
+
+    private fun trimEnd(index: Int): Int {
+        val start = fieldStarts[index]
+        var end = fieldEnds[index]
+        while (end > start && line[end - 1].isWhitespace()) {
+            end--
+        }
+        return end
+    }
+
+    private fun regionEquals(
+        start: Int,
+        value: String,
+    ): Boolean {
+        for (offset in value.indices) {
+            if (line[start + offset] != value[offset]) {
+                return false
+            }
+        }
+        return true
+    }
+}
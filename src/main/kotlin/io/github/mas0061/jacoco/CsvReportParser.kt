@@ -1,5 +1,7 @@
 package io.github.mas0061.jacoco
 
+import java.io.File
+
 /**
  * JaCoCoのCSVレポートの1行を表すデータクラス
  */
@@ -32,9 +34,16 @@ data class CoverageRow(
 
 /**
  * JaCoCoのCSVレポートをパースするクラス
+ *
+ * [parallelism] が2以上の場合、大きなファイルは行単位の範囲に分割して並列にパースする。
  */
-class CsvReportParser {
+class CsvReportParser(private val parallelism: Int = 1) {
+    init {
+        require(parallelism > 0) { "Parallelism must be positive: $parallelism" }
+    }
+
     companion object {
+        private const val PARALLEL_THRESHOLD_BYTES = 4L * 1024 * 1024
         private const val EXPECTED_COLUMN_COUNT = 13
         private val EXPECTED_HEADERS =
             listOf(
@@ -44,116 +53,125 @@ class CsvReportParser {
             )
     }
 
-    fun parse(csvFile: java.io.File): List<CoverageRow> {
+    fun parse(csvFile: File): List<CoverageRow> {
+        if (parallelism > 1 && csvFile.length() >= PARALLEL_THRESHOLD_BYTES) {
+            validateFileAccess(csvFile)
+            return ParallelCsvReader(this, parallelism).read(csvFile)
+        }
+
+        val rows = mutableListOf<CoverageRow>()
+        forEachRow(csvFile) { rows.add(it) }
+        return rows
+    }
+
+    /**
+     * CSVファイルを先頭から順に読み込み、1行ごとに [action] を呼び出す
+     *
+     * ファイル全体をメモリに読み込まないため、行数に関わらずメモリ使用量は一定となる。
+     */
+    fun forEachRow(
+        csvFile: File,
+        action: (CoverageRow) -> Unit,
+    ) {
         validateFileAccess(csvFile)
 
-        val lines = csvFile.readLines()
-        require(lines.isNotEmpty()) { "CSV file is empty: ${csvFile.absolutePath}" }
+        csvFile.bufferedReader().use { reader ->
+            val lineReader = CsvLineReader(reader)
+            readHeader(lineReader, csvFile)
+            readRows(lineReader, csvFile.name, action)
+        }
+    }
 
-        validateHeader(lines.first())
+    /**
+     * 先頭行を読み込み、ヘッダーを検証する
+     */
+    internal fun readHeader(
+        lineReader: CsvLineReader,
+        csvFile: File,
+    ) {
+        require(lineReader.readLine()) { "CSV file is empty: ${csvFile.absolutePath}" }
+        validateHeader(lineReader)
+    }
 
-        return lines
-            .drop(1) // ヘッダー行をスキップ
-            .filter { it.isNotBlank() }
-            .mapIndexed { index, line ->
+    /**
+     * ヘッダー以降の行を読み込む。空行はスキップする
+     */
+    internal fun readRows(
+        lineReader: CsvLineReader,
+        fileName: String,
+        action: (CoverageRow) -> Unit,
+    ) {
+        var previous: CoverageRow? = null
+        while (lineReader.readLine()) {
+            if (lineReader.isBlank) {
+                continue
+            }
+            val row =
                 try {
-                    parseLine(line)
+                    parseLine(lineReader, previous)
                 } catch (e: NumberFormatException) {
                     throw IllegalArgumentException(
-                        "Failed to parse line ${index + 2} in ${csvFile.name}: ${e.message}",
+                        "Failed to parse line ${lineReader.lineNumber} in $fileName: ${e.message}",
                         e,
                     )
                 }
-            }
+            action(row)
+            previous = row
+        }
     }
 
-    private fun validateFileAccess(csvFile: java.io.File) {
+    private fun validateFileAccess(csvFile: File) {
         require(csvFile.exists()) { "CSV file not found: ${csvFile.absolutePath}" }
         require(csvFile.canRead()) { "CSV file is not readable: ${csvFile.absolutePath}" }
     }
 
-    private fun validateHeader(headerLine: String) {
-        val headers = parseCSVLine(headerLine)
-        require(headers.size == EXPECTED_COLUMN_COUNT) {
-            "Invalid header format: expected $EXPECTED_COLUMN_COUNT columns, got ${headers.size}"
+    private fun validateHeader(lineReader: CsvLineReader) {
+        require(lineReader.fieldCount == EXPECTED_COLUMN_COUNT) {
+            "Invalid header format: expected $EXPECTED_COLUMN_COUNT columns, got ${lineReader.fieldCount}"
         }
 
-        headers.forEachIndexed { index, header ->
-            require(header.trim() == EXPECTED_HEADERS[index]) {
-                "Invalid header at column ${index + 1}: expected '${EXPECTED_HEADERS[index]}', got '$header'"
+        EXPECTED_HEADERS.forEachIndexed { index, expected ->
+            require(lineReader.field(index) == expected) {
+                "Invalid header at column ${index + 1}: expected '$expected', got '${lineReader.rawField(index)}'"
             }
         }
     }
 
-    private fun parseLine(line: String): CoverageRow {
-        val columns = parseCSVLine(line)
-        require(columns.size >= EXPECTED_COLUMN_COUNT) {
-            "Invalid CSV format: expected $EXPECTED_COLUMN_COUNT columns, got ${columns.size}"
-        }
-
-        return CoverageRow(
-            group = columns[0].trim(),
-            packageName = columns[1].trim(),
-            className = columns[2].trim(),
-            instructionMissed = parseIntColumn(columns[3], "INSTRUCTION_MISSED"),
-            instructionCovered = parseIntColumn(columns[4], "INSTRUCTION_COVERED"),
-            branchMissed = parseIntColumn(columns[5], "BRANCH_MISSED"),
-            branchCovered = parseIntColumn(columns[6], "BRANCH_COVERED"),
-            lineMissed = parseIntColumn(columns[7], "LINE_MISSED"),
-            lineCovered = parseIntColumn(columns[8], "LINE_COVERED"),
-            complexityMissed = parseIntColumn(columns[9], "COMPLEXITY_MISSED"),
-            complexityCovered = parseIntColumn(columns[10], "COMPLEXITY_COVERED"),
-            methodMissed = parseIntColumn(columns[11], "METHOD_MISSED"),
-            methodCovered = parseIntColumn(columns[12], "METHOD_COVERED"),
-        )
-    }
-
     /**
-     * CSVの行をパースする。カンマで区切られた値を考慮し、クォートされた値も適切に処理する
+     * 行バッファから直接1行分の値を読み取る。グループ名とパッケージ名は直前の行と同じであれば再利用する
      */
-    private fun parseCSVLine(line: String): List<String> {
-        val result = mutableListOf<String>()
-        val current = StringBuilder()
-        var inQuotes = false
-        var i = 0
-
-        while (i < line.length) {
-            val char = line[i]
-            when {
-                char == '"' && !inQuotes -> {
-                    inQuotes = true
-                }
-                char == '"' && inQuotes -> {
-                    // Check if it's an escaped quote
-                    if (i + 1 < line.length && line[i + 1] == '"') {
-                        current.append('"')
-                        i++ // Skip the next quote
-                    } else {
-                        inQuotes = false
-                    }
-                }
-                char == ',' && !inQuotes -> {
-                    result.add(current.toString())
-                    current.setLength(0)
-                }
-                else -> {
-                    current.append(char)
-                }
-            }
-            i++
+    private fun parseLine(
+        lineReader: CsvLineReader,
+        previous: CoverageRow?,
+    ): CoverageRow {
+        require(lineReader.fieldCount >= EXPECTED_COLUMN_COUNT) {
+            "Invalid CSV format: expected $EXPECTED_COLUMN_COUNT columns, got ${lineReader.fieldCount}"
         }
 
-        // Add the last field
-        result.add(current.toString())
-
-        return result
+        return CoverageRow(
+            group = lineReader.field(0, previous?.group),
+            packageName = lineReader.field(1, previous?.packageName),
+            className = lineReader.field(2),
+            instructionMissed = parseIntColumn(lineReader, 3),
+            instructionCovered = parseIntColumn(lineReader, 4),
+            branchMissed = parseIntColumn(lineReader, 5),
+            branchCovered = parseIntColumn(lineReader, 6),
+            lineMissed = parseIntColumn(lineReader, 7),
+            lineCovered = parseIntColumn(lineReader, 8),
+            complexityMissed = parseIntColumn(lineReader, 9),
+            complexityCovered = parseIntColumn(lineReader, 10),
+            methodMissed = parseIntColumn(lineReader, 11),
+            methodCovered = parseIntColumn(lineReader, 12),
+        )
     }
 
     private fun parseIntColumn(
-        value: String,
-        columnName: String,
+        lineReader: CsvLineReader,
+        index: Int,
     ): Int {
-        return value.trim().toIntOrNull()
-            ?: throw NumberFormatException("Invalid integer value for $columnName: '$value'")
+        return lineReader.intField(index)
+            ?: throw NumberFormatException(
+                "Invalid integer value for ${EXPECTED_HEADERS[index]}: '${lineReader.rawField(index)}'",
+            )
     }
 }
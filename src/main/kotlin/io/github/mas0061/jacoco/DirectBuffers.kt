@@ -0,0 +1,65 @@
+package io.github.mas0061.jacoco
+
+import java.nio.ByteBuffer
+
+/**
+ * Releases direct and memory-mapped buffers without waiting for the garbage collector
+ *
+ * The JDK frees the native memory of a direct buffer, and unmaps a mapped one, only when the buffer object is
+ * collected. In a long-lived Gradle daemon that can take a long time, and on Windows a mapped file stays locked
+ * until then. [release] runs the buffer's cleaner right away through the JDK internal API: `Unsafe.invokeCleaner`
+ * on Java 9 and later, `DirectBuffer.cleaner().clean()` on Java 8. When neither is accessible the buffer is left
+ * to the garbage collector as before.
+ *
+ * The buffer must not be accessed after it was released; doing so crashes the JVM.
+ */
+internal object DirectBuffers {
+    private val cleaner: ((ByteBuffer) -> Unit)? by lazy { unsafeCleaner() ?: java8Cleaner() }
+
+    /**
+     * Frees the memory or the mapping of [buffer]. Heap buffers, slices and duplicates are ignored.
+     */
+    fun release(buffer: ByteBuffer) {
+        if (!buffer.isDirect) {
+            return
+        }
+        try {
+            cleaner?.invoke(buffer)
+        } catch (ignored: ReflectiveOperationException) {
+            // Left to the garbage collector
+        } catch (ignored: IllegalArgumentException) {
+            // Slices and duplicates have no cleaner of their own
+        }
+    }
+
+    private fun unsafeCleaner(): ((ByteBuffer) -> Unit)? {
+        return try {
+            val unsafeClass = Class.forName("sun.misc.Unsafe")
+            val invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer::class.java)
+            val theUnsafe = unsafeClass.getDeclaredField("theUnsafe")
+            theUnsafe.isAccessible = true
+            val unsafe = theUnsafe.get(null)
+            val release: (ByteBuffer) -> Unit = { buffer -> invokeCleaner.invoke(unsafe, buffer) }
+            release
+        } catch (ignored: ReflectiveOperationException) {
+            null
+        } catch (ignored: SecurityException) {
+            null
+        }
+    }
+
+    private fun java8Cleaner(): ((ByteBuffer) -> Unit)? {
+        return try {
+            val cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner")
+            val cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean")
+            val release: (ByteBuffer) -> Unit = { buffer ->
+                cleanerMethod.invoke(buffer)?.let { cleanMethod.invoke(it) }
+            }
+            release
+        } catch (ignored: ReflectiveOperationException) {
+            null
+        } catch (ignored: SecurityException) {
+            null
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.mas0061.jacoco
+
+import org.gradle.api.file.ProjectLayout
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.model.ObjectFactory
+import org.gradle.util.GradleVersion
+
+/**
+ * ファイルを値とするプロパティを作成するユーティリティ
+ *
+ * `ObjectFactory.fileProperty()` は Gradle 5.0 以降でのみ利用できる。それより前の Gradle では
+ * `ProjectLayout.fileProperty()` を使う。こちらは Gradle 6.0 で削除されたため、リフレクションで呼び出す。
+ */
+internal object FileProperties {
+    fun create(
+        objects: ObjectFactory,
+        layout: ProjectLayout,
+    ): RegularFileProperty {
+        if (GradleVersion.current() >= GradleVersion.version("5.0")) {
+            return objects.fileProperty()
+        }
+        return ProjectLayout::class.java.getMethod("fileProperty").invoke(layout) as RegularFileProperty
+    }
+}
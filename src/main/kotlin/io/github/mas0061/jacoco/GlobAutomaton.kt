@@ -0,0 +1,241 @@
+package io.github.mas0061.jacoco
+
+import java.util.Arrays
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * All target class patterns compiled into one automaton
+ *
+ * Every pattern is a linear sequence of tokens, and all tokens of all patterns are numbered in one array, so
+ * a set of token positions is a state of the combined nondeterministic automaton. Deterministic states are
+ * built lazily by subset construction as names are matched and are shared between threads. Once the names
+ * of a report have been seen, matching a name is a single pass of table lookups over its characters,
+ * independent of the number of patterns.
+ *
+ * Glob syntax:
+ * - `*` matches any sequence of characters, including dots
+ * - `**.` matches zero or more whole package segments
+ * - `?` matches one character other than a dot
+ * - any other character matches itself
+ */
+internal class GlobAutomaton(
+    includePatterns: List<String>,
+    excludePatterns: List<String>,
+) {
+    private val kinds: ByteArray
+    private val literals: CharArray
+    private val excluded: BooleanArray
+
+    /** Every continuation from this position is accepted */
+    private val universal: BooleanArray
+
+    private val states = ConcurrentHashMap<StateKey, State>()
+    val initialState: State
+
+    init {
+        val tokenized = includePatterns.map { tokenize(it) } + excludePatterns.map { tokenize(it) }
+        val size = tokenized.sumOf { it.size + 1 }
+        kinds = ByteArray(size)
+        literals = CharArray(size)
+        excluded = BooleanArray(size)
+        universal = BooleanArray(size)
+
+        val starts = IntArray(tokenized.size)
+        var position = 0
+        tokenized.forEachIndexed { index, tokens ->
+            starts[index] = position
+            for (token in tokens) {
+                kinds[position] = token.kind
+                literals[position] = token.literal
+                excluded[position] = index >= includePatterns.size
+                position++
+            }
+            kinds[position] = END
+            excluded[position] = index >= includePatterns.size
+            position++
+        }
+        for (index in size - 2 downTo 0) {
+            universal[index] = kinds[index] == STAR && (kinds[index + 1] == END || universal[index + 1])
+        }
+        initialState = intern(closure(starts))
+    }
+
+    /**
+     * Deterministic state: a closed set of token positions with its transitions built on demand
+     */
+    inner class State internal constructor(internal val positions: IntArray) {
+        /** The name read so far is matched by an include pattern */
+        val includeAccepted: Boolean
+
+        /** The name read so far is matched by an exclude pattern */
+        val excludeAccepted: Boolean
+
+        /** Some continuation of the name read so far can still be matched by an include pattern */
+        val includeLive: Boolean
+
+        /** Every continuation of the name read so far is matched by an exclude pattern */
+        val excludeUniversal: Boolean
+
+        /** No pattern can match any continuation */
+        val isDead: Boolean get() = positions.isEmpty()
+
+        private val asciiTransitions = AtomicReferenceArray<State>(ASCII_SIZE)
+        private val otherTransitions = ConcurrentHashMap<Char, State>()
+
+        init {
+            var includeAccepted = false
+            var excludeAccepted = false
+            var includeLive = false
+            var excludeUniversal = false
+            for (position in positions) {
+                val isEnd = kinds[position] == END
+                if (excluded[position]) {
+                    excludeAccepted = excludeAccepted || isEnd
+                    excludeUniversal = excludeUniversal || universal[position]
+                } else {
+                    includeAccepted = includeAccepted || isEnd
+                    includeLive = includeLive || !isEnd
+                }
+            }
+            this.includeAccepted = includeAccepted
+            this.excludeAccepted = excludeAccepted
+            this.includeLive = includeLive
+            this.excludeUniversal = excludeUniversal
+        }
+
+        fun next(char: Char): State {
+            if (char.code < ASCII_SIZE) {
+                return asciiTransitions.get(char.code) ?: step(char).also { asciiTransitions.set(char.code, it) }
+            }
+            return otherTransitions[char] ?: step(char).also { otherTransitions[char] = it }
+        }
+
+        private fun step(char: Char): State {
+            val targets = IntArray(positions.size * 2)
+            var count = 0
+            for (position in positions) {
+                val kind = kinds[position]
+                if (kind == STAR || kind == SEGMENT_BODY) {
+                    count = add(targets, count, position)
+                }
+                val advances =
+                    when (kind) {
+                        LITERAL -> literals[position] == char
+                        ANY_EXCEPT_DOT -> char != '.'
+                        // A package segment may only be left right after its dot
+                        SEGMENT_BODY -> char == '.'
+                        else -> false
+                    }
+                if (advances) {
+                    count = add(targets, count, position + 1)
+                }
+            }
+            return intern(closure(targets.copyOf(count)))
+        }
+    }
+
+    private fun add(
+        targets: IntArray,
+        count: Int,
+        position: Int,
+    ): Int {
+        targets[count] = position
+        return count + 1
+    }
+
+    /**
+     * Adds the positions reachable without reading a character. `*` may match nothing; `**.` either matches
+     * nothing or starts a segment
+     */
+    private fun closure(positions: IntArray): IntArray {
+        var result = positions
+        var count = positions.size
+        var index = 0
+        while (index < count) {
+            val position = result[index]
+            val kind = kinds[position]
+            if (kind == STAR || kind == SEGMENTS_ENTRY) {
+                if (count + 2 > result.size) {
+                    result = result.copyOf(count * 2 + 2)
+                }
+                result[count++] = position + 1
+                if (kind == SEGMENTS_ENTRY) {
+                    result[count++] = position + 2
+                }
+            }
+            index++
+        }
+        val closed = result.copyOf(count)
+        closed.sort()
+        var unique = 0
+        for (position in closed) {
+            if (unique == 0 || closed[unique - 1] != position) {
+                closed[unique++] = position
+            }
+        }
+        return closed.copyOf(unique)
+    }
+
+    private fun intern(positions: IntArray): State {
+        val key = StateKey(positions)
+        states[key]?.let { return it }
+        if (states.size >= MAX_STATES) {
+            // Stop growing the table for pathological pattern sets; the state still works, uncached
+            return State(positions)
+        }
+        return states.computeIfAbsent(key) { State(positions) }
+    }
+
+    private class StateKey(private val positions: IntArray) {
+        private val hash = Arrays.hashCode(positions)
+
+        override fun hashCode() = hash
+
+        override fun equals(other: Any?) = other is StateKey && Arrays.equals(positions, other.positions)
+    }
+
+    private class Token(val kind: Byte, val literal: Char = '\u0000')
+
+    private fun tokenize(pattern: String): List<Token> {
+        val tokens = mutableListOf<Token>()
+        var index = 0
+        while (index < pattern.length) {
+            val char = pattern[index]
+            when {
+                pattern.startsWith("**.", index) -> {
+                    tokens.add(Token(SEGMENTS_ENTRY))
+                    tokens.add(Token(SEGMENT_BODY))
+                    index += 2
+                }
+                char == '*' -> {
+                    // Consecutive stars are equivalent to a single one
+                    if (tokens.lastOrNull()?.kind != STAR) {
+                        tokens.add(Token(STAR))
+                    }
+                    while (index + 1 < pattern.length && pattern[index + 1] == '*' &&
+                        !pattern.startsWith("**.", index + 1)
+                    ) {
+                        index++
+                    }
+                }
+                char == '?' -> tokens.add(Token(ANY_EXCEPT_DOT))
+                else -> tokens.add(Token(LITERAL, char))
+            }
+            index++
+        }
+        return tokens
+    }
+
+    companion object {
+        private const val LITERAL: Byte = 0
+        private const val ANY_EXCEPT_DOT: Byte = 1
+        private const val STAR: Byte = 2
+        private const val SEGMENTS_ENTRY: Byte = 3
+        private const val SEGMENT_BODY: Byte = 4
+        private const val END: Byte = 5
+
+        private const val ASCII_SIZE = 128
+        private const val MAX_STATES = 100_000
+    }
+}
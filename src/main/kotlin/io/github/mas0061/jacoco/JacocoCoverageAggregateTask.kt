@@ -0,0 +1,200 @@
+package io.github.mas0061.jacoco
+
+import org.gradle.api.Action
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.MapProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.provider.Provider
+import org.gradle.api.tasks.CacheableTask
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+import org.gradle.api.tasks.options.Option
+import org.gradle.workers.WorkQueue
+import org.gradle.workers.WorkerExecutor
+import java.io.DataInputStream
+import java.io.File
+import javax.inject.Inject
+
+/**
+ * サブプロジェクトのカバレッジレポートを集約して表示するタスク
+ *
+ * 各サブプロジェクトのXMLレポートを並列にパースし、1つのレポートにまとめる。
+ * キャッシュを有効にした場合は、パース済みのレポートをモジュールごとにスナップショットとして保存し、
+ * 前回から変更されたモジュールのみをパースする。キャッシュを使用しない場合は Worker API でパースする。
+ * モジュールごとの全体カバレッジと、全モジュールを合わせた全体カバレッジを1つの表に表示するため、
+ * 集約したXMLレポートを別途生成する必要はない。
+ * [JacocoCoverageTask] と同様に、入力が変わっていなければ記録済みのテーブルを再表示する。
+ */
+@CacheableTask
+open class JacocoCoverageAggregateTask @Inject constructor(private val workerExecutor: WorkerExecutor) : DefaultTask() {
+    init {
+        group = "reporting"
+        description = "Aggregates the JaCoCo XML reports of all subprojects into one console table"
+    }
+
+    /**
+     * パース済みレポートを共有するビルドサービス (Gradle 6.1 以降)
+     *
+     * 古い Gradle でもタスククラスを読み込めるように、ビルドサービスの型は公開しない
+     */
+    @Internal
+    var reportCacheService: Provider<*>? = null
+
+    @Internal
+    @Option(option = "classes", description = "Comma-separated list of class names or packages to aggregate")
+    var classesOption: String = ""
+
+    /**
+     * サブプロジェクトのパスとXMLレポートファイル。プラグインが構成時に設定する
+     */
+    @Internal
+    val moduleReports: MapProperty<String, File> = project.objects.mapProperty(String::class.java, File::class.java)
+
+    @get:Input
+    val targetClassPatterns: ListProperty<String> = project.objects.listProperty(String::class.java)
+
+    /**
+     * XMLパーサーの実装の設定値。表示内容は変わらないため入力には含めない
+     */
+    @Internal
+    val xmlParser: Property<String> = project.objects.property(String::class.java)
+
+    /**
+     * モジュールごとのパース済みレポートをキャッシュするかどうか
+     */
+    @Internal
+    val reportCache: Property<Boolean> = project.objects.property(Boolean::class.javaObjectType)
+
+    /**
+     * モジュールごとのスナップショットを保存するディレクトリ
+     */
+    @Internal
+    val reportCacheDirectory: Property<File> = project.objects.property(File::class.java)
+
+    /**
+     * 集約するモジュールのパス
+     */
+    @get:Input
+    val modulePaths: List<String>
+        get() = moduleReports.get().keys.toList()
+
+    /**
+     * 集約するモジュールのレポートファイル。存在しないファイルは実行時に除外するため、ここでは存在を確認しない
+     */
+    @get:InputFiles
+    @get:PathSensitive(PathSensitivity.RELATIVE)
+    val reportFiles: List<File>
+        get() = moduleReports.get().values.toList()
+
+    /**
+     * 表示したカバレッジテーブルの記録
+     */
+    @get:OutputFile
+    val summaryFile: RegularFileProperty = FileProperties.create(project.objects, project.layout)
+
+    private val xmlReportRenderer = XmlCoverageReportRenderer()
+
+    @TaskAction
+    fun aggregate() {
+        // テストのないモジュールなど、レポートのないモジュールは集約しない
+        val modules = moduleReports.get().filterValues { it.isFile }.toList()
+        val targetClasses = targetClassPatterns.get()
+
+        CoverageSummaryOutput.open(summaryFile.get().asFile, System.out).use { out ->
+            if (modules.isEmpty()) {
+                out.println("No coverage reports found in the subprojects.")
+                return
+            }
+
+            val parsedReports = parseModules(modules.map { it.second }, targetClasses)
+            val moduleReports =
+                modules.map { it.first }.zip(parsedReports)
+                    // 絞り込みで対象のクラスがなくなったモジュールは表示しない
+                    .filter { (_, report) -> targetClasses.isEmpty() || report.packages.isNotEmpty() }
+            if (moduleReports.isEmpty()) {
+                out.println("No coverage data found for the specified criteria.")
+                return
+            }
+
+            val merged = CoverageReportMerger.merge("aggregate", moduleReports.map { it.second })
+            xmlReportRenderer.renderModuleSummary(moduleReports, merged, out)
+        }
+    }
+
+    /**
+     * モジュールのレポートを並列にパースし、モジュールの順に返す
+     */
+    private fun parseModules(
+        reportFiles: List<File>,
+        targetClasses: List<String>,
+    ): List<CoverageReport> {
+        if (!reportCache.get()) {
+            return parseAllModules(reportFiles, targetClasses)
+        }
+
+        // 前回の集約から変更されたモジュールのみをパースし、それ以外はスナップショットから読み込む
+        // パースしたレポートはスナップショットに保存し、そのまま集約に使う
+        val parser = XmlParserBackend.fromOptionValue(xmlParser.get()).createParser()
+        val loader =
+            ModuleReportLoader(CoverageReportCache(reportCacheDirectory.get()), sharedCache()) { parser.parse(it) }
+        val reports = loader.load(reportFiles)
+        logger.info("Parsed {} of {} module reports", loader.parsedCount, reportFiles.size)
+        return reports.map { xmlReportRenderer.filterReport(it, targetClasses) }
+    }
+
+    /**
+     * キャッシュを使用しない場合は、ビルド内で読み込み済みのもの以外のモジュールを Worker API でパースし、
+     * 絞り込んだレポートを一時ファイル経由で受け取る
+     */
+    private fun parseAllModules(
+        reportFiles: List<File>,
+        targetClasses: List<String>,
+    ): List<CoverageReport> {
+        val sharedCache = sharedCache()
+        val keys = reportFiles.map { ParsedReportKey(ReportFingerprint.of(it), targetClasses) }
+        val sharedReports = keys.map { sharedCache?.get(it) }
+        val snapshotFiles = reportFiles.indices.map { File(temporaryDir, "module-$it.snapshot") }
+        val queue = workerExecutor.noIsolation()
+        reportFiles.forEachIndexed { index, reportFile ->
+            if (sharedReports[index] == null) {
+                submitParseAction(queue, reportFile) { parameters ->
+                    parameters.targetClasses.set(targetClasses)
+                    parameters.snapshotFile.set(snapshotFiles[index])
+                }
+            }
+        }
+        queue.await()
+
+        return reportFiles.indices.map { index ->
+            sharedReports[index] ?: DataInputStream(snapshotFiles[index].inputStream().buffered())
+                .use { CoverageReportSnapshot.read(it) }
+                .also { sharedCache?.put(keys[index], it) }
+        }
+    }
+
+    private fun sharedCache(): ParsedReportCache? = reportCacheService?.let { ReportCacheServices.cacheOf(it) }
+
+    private fun submitParseAction(
+        queue: WorkQueue,
+        reportFile: File,
+        configure: (ModuleReportParseAction.Parameters) -> Unit,
+    ) {
+        queue.submit(
+            ModuleReportParseAction::class.java,
+            object : Action<ModuleReportParseAction.Parameters> {
+                override fun execute(parameters: ModuleReportParseAction.Parameters) {
+                    parameters.reportFile.set(reportFile)
+                    parameters.xmlParser.set(xmlParser.get())
+                    configure(parameters)
+                }
+            },
+        )
+    }
+}
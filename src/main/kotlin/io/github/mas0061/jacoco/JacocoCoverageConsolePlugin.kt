@@ -1,13 +1,122 @@
 package io.github.mas0061.jacoco
 
+import org.gradle.api.Action
 import org.gradle.api.Plugin
 import org.gradle.api.Project
+import org.gradle.api.Task
+import org.gradle.api.file.RegularFile
+import org.gradle.api.provider.Provider
+import org.gradle.testing.jacoco.tasks.JacocoReport
+import org.gradle.util.GradleVersion
 
 class JacocoCoverageConsolePlugin : Plugin<Project> {
+    companion object {
+        private const val EXTENSION_NAME = "jacocoCoverageConsole"
+        private const val TASK_NAME = "jacocoCoverageConsole"
+        private const val AGGREGATE_TASK_NAME = "jacocoCoverageAggregate"
+    }
+
     override fun apply(project: Project) {
-        val extension = project.extensions.create("jacocoCoverageConsole", JacocoCoverageExtension::class.java)
+        val extension =
+            project.extensions.create(
+                EXTENSION_NAME,
+                JacocoCoverageExtension::class.java,
+                project.objects,
+                project.layout,
+            )
+        val configManager = CoverageConfigurationManager(project, extension)
+
+        // ビルドサービスは Gradle 6.1 以降でのみ利用できる
+        val reportCacheService =
+            if (GradleVersion.current() >= GradleVersion.version("6.1")) {
+                ReportCacheServices.register(project)
+            } else {
+                null
+            }
+
+        val configureTask =
+            object : Action<JacocoCoverageTask> {
+                override fun execute(task: JacocoCoverageTask) {
+                    configManager.configure(task)
+                    if (reportCacheService != null) {
+                        task.reportCacheService = reportCacheService
+                        if (GradleVersion.current() >= GradleVersion.version("7.0")) {
+                            task.usesService(reportCacheService)
+                        }
+                    }
+                }
+            }
+
+        // タスクは実行が必要になるまで作成しない (Gradle 4.9 以降)
+        if (GradleVersion.current() >= GradleVersion.version("4.9")) {
+            project.tasks.register(TASK_NAME, JacocoCoverageTask::class.java, configureTask)
+        } else {
+            // Gradle 4.9 より前には register がないため、非推奨の create を使う
+            @Suppress("DEPRECATION")
+            val task = project.tasks.create(TASK_NAME, JacocoCoverageTask::class.java)
+            configureTask.execute(task)
+        }
+
+        registerSummaryReplay(project, TASK_NAME, configManager.determineSummaryFile(TASK_NAME))
+
+        // 集約タスクはルートプロジェクトにのみ追加する。Worker API の WorkAction は Gradle 5.6 以降で利用できる
+        if (project === project.rootProject && GradleVersion.current() >= GradleVersion.version("5.6")) {
+            registerAggregateTask(project, configManager, reportCacheService)
+        }
+    }
+
+    private fun registerAggregateTask(
+        project: Project,
+        configManager: CoverageConfigurationManager,
+        reportCacheService: Provider<ReportCacheService>?,
+    ) {
+        project.tasks.register(
+            AGGREGATE_TASK_NAME,
+            JacocoCoverageAggregateTask::class.java,
+            object : Action<JacocoCoverageAggregateTask> {
+                override fun execute(task: JacocoCoverageAggregateTask) {
+                    configManager.configureAggregate(task)
+                    if (reportCacheService != null) {
+                        task.reportCacheService = reportCacheService
+                        if (GradleVersion.current() >= GradleVersion.version("7.0")) {
+                            task.usesService(reportCacheService)
+                        }
+                    }
+                    // 同じビルドでレポートを生成する場合は、生成後に集約する
+                    task.mustRunAfter(project.subprojects.map { it.tasks.withType(JacocoReport::class.java) })
+                }
+            },
+        )
+        registerSummaryReplay(project, AGGREGATE_TASK_NAME, configManager.determineSummaryFile(AGGREGATE_TASK_NAME))
+    }
+
+    /**
+     * 最新と判定された場合やビルドキャッシュから復元された場合は、記録済みのテーブルを再表示する
+     */
+    private fun registerSummaryReplay(
+        project: Project,
+        taskName: String,
+        summaryFile: Provider<RegularFile>,
+    ) {
+        if (GradleVersion.current() >= GradleVersion.version("6.1")) {
+            // 構成キャッシュと併用できるビルドイベントのリスナーを使う
+            SummaryReplayServices.register(project, taskName, summaryFile)
+            return
+        }
 
-        val task = project.tasks.create("jacocoCoverageConsole", JacocoCoverageTask::class.java)
-        task.extension = extension
+        // Gradle 6.1 より前にはビルドイベントのリスナーがないため、非推奨の afterTask を使う
+        @Suppress("DEPRECATION")
+        project.gradle.taskGraph.afterTask(
+            object : Action<Task> {
+                override fun execute(executedTask: Task) {
+                    if (executedTask.project === project &&
+                        executedTask.name == taskName &&
+                        executedTask.state.upToDate
+                    ) {
+                        CoverageSummaryOutput.replay(summaryFile.get().asFile, System.out)
+                    }
+                }
+            },
+        )
     }
 }
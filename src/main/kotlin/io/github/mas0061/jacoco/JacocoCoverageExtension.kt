@@ -1,11 +1,18 @@
 package io.github.mas0061.jacoco
 
-import java.io.File
+import org.gradle.api.file.ProjectLayout
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.model.ObjectFactory
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
+import javax.inject.Inject
 
 /**
  * JaCoCo Coverage Console プラグインの設定を管理するエクステンション
  *
  * このエクステンションを使用して、プラグインの動作をカスタマイズできます。
+ * 各設定は遅延評価されるプロパティで、値はタスクのグラフが決まった後に読み込まれます。
+ * Kotlin DSL で Gradle 8.2 より前のバージョンを使う場合は `=` の代わりに `set(...)` で設定してください。
  *
  * 使用例:
  * ```kotlin
@@ -13,17 +20,18 @@ import java.io.File
  *     xmlReportPath = file("custom/path/jacoco.xml")
  *     showTotal = true
  *     showPackageSummary = true
+ *     showClassDetails = true
  *     targetClasses = listOf("com.example.service.*", "com.example.model.User")
  * }
  * ```
  */
-open class JacocoCoverageExtension {
+open class JacocoCoverageExtension @Inject constructor(objects: ObjectFactory, layout: ProjectLayout) {
     /**
      * JaCoCoのXMLレポートファイルのパス
      *
      * 指定しない場合は、デフォルトパス `build/reports/jacoco/test/jacocoTestReport.xml` が使用されます。
      */
-    var xmlReportPath: File? = null
+    val xmlReportPath: RegularFileProperty = FileProperties.create(objects, layout)
 
     /**
      * JaCoCoのCSVレポートファイルのパス (非推奨)
@@ -32,7 +40,7 @@ open class JacocoCoverageExtension {
      * @deprecated XMLレポートの使用を推奨します
      */
     @Deprecated("Use xmlReportPath instead for better functionality including project totals")
-    var csvReportPath: File? = null
+    val csvReportPath: RegularFileProperty = FileProperties.create(objects, layout)
 
     /**
      * 全体のカバレッジ（Total行）を表示するかどうか
@@ -42,7 +50,7 @@ open class JacocoCoverageExtension {
      * - true: Total行を表示
      * - false: 個別のクラス/パッケージのみ表示
      */
-    var showTotal: Boolean = true
+    val showTotal: Property<Boolean> = booleanProperty(objects, true)
 
     /**
      * パッケージサマリーを表示するかどうか
@@ -52,7 +60,138 @@ open class JacocoCoverageExtension {
      * - true: パッケージレベルのカバレッジサマリーを表示
      * - false: クラスレベルの詳細のみ表示
      */
-    var showPackageSummary: Boolean = true
+    val showPackageSummary: Property<Boolean> = booleanProperty(objects, true)
+
+    /**
+     * クラスごとのカバレッジ詳細を表示するかどうか
+     *
+     * デフォルト値: true
+     *
+     * - true: クラスレベルのカバレッジ詳細を表示
+     * - false: 詳細を表示しない。showPackageSummary も false で targetClasses が空の場合は、
+     *   レポート末尾の全体カウンターのみを読み込むため、大きなレポートでも高速に表示される
+     */
+    val showClassDetails: Property<Boolean> = booleanProperty(objects, true)
+
+    /**
+     * XMLレポートのパーサー実装
+     *
+     * デフォルト値: "streaming"
+     *
+     * - "streaming": StAXによるストリーミングパース
+     * - "mapped": レポートをメモリマップし、バイト列を直接走査する。非常に大きなレポート向け
+     * - "parallel": パッケージの境界を先に調べ、パッケージを並列にパースする
+     */
+    val xmlParser: Property<String> = stringProperty(objects, XmlParserBackend.STREAMING.optionValue)
+
+    /**
+     * クラス詳細に表示するクラス数 (XMLレポートのみ)
+     *
+     * デフォルト値: 0
+     *
+     * - 0: すべてのクラスをクラス名の順に表示
+     * - 1以上: [sortBy] の順でカバレッジの最も悪いクラスを指定した数だけ表示する
+     */
+    val topClasses: Property<Int> = objects.property(Int::class.javaObjectType).apply { set(0) }
+
+    /**
+     * [topClasses] でクラスを選ぶ際の並び順
+     *
+     * デフォルト値: "instruction"
+     *
+     * - "instruction": 命令カバレッジの低い順
+     * - "branch": ブランチカバレッジの低い順 (ブランチのないクラスは除く)
+     * - "missed": 未実行の命令数の多い順
+     */
+    val sortBy: Property<String> = stringProperty(objects, CoverageSortOrder.INSTRUCTION.optionValue)
+
+    /**
+     * XMLレポートのパースと並行してクラスの行を表示するかどうか
+     *
+     * デフォルト値: false
+     *
+     * - true: パース用のスレッドが読み込んだクラスを順に受け取り、レポートの記載順ですぐに表示する。
+     *   クラスを保持しないため、レポートの大きさに関係なくメモリ使用量は一定となる。
+     *   全体カバレッジとパッケージサマリーはクラスの後にまとめて表示する。
+     *   [topClasses] を指定した場合、[showClassDetails] が false の場合は使用されない。
+     *   常にストリーミングパーサーでパースし、キャッシュは使用しない
+     * - false: レポート全体を読み込んでから、クラス名の順に表示する
+     */
+    val streamOutput: Property<Boolean> = booleanProperty(objects, false)
+
+    /**
+     * パース済みのXMLレポートをキャッシュするかどうか
+     *
+     * デフォルト値: false
+     *
+     * - true: 初回のパース結果をバイナリスナップショットとして `build/jacoco-coverage-console/cache` に保存し、
+     *   レポートが変更されていなければ次回以降はスナップショットを読み込む。
+     *   スナップショットにはレポート全体を保存するため、ターゲットクラスによる絞り込みは読み込んだレポートに対して行う。
+     *   変更されたレポートはパースに加えて内容のハッシュ計算とスナップショットの書き込みが必要になるため、
+     *   同じレポートを繰り返し表示する場合に有効にする
+     * - false: 毎回XMLレポートをパースし、対象外のパッケージ・クラスはパース時に読み飛ばす
+     */
+    val reportCache: Property<Boolean> = booleanProperty(objects, false)
+
+    /**
+     * XMLレポートを別プロセスのワーカーでパースする場合の最大ヒープサイズ (Gradle 5.6 以降)
+     *
+     * デフォルト値: "" (デーモン内でパースする)
+     *
+     * - "2g" などを指定すると、パース・絞り込み・集計を指定したヒープサイズのワーカープロセスで行い、
+     *   表示に必要な行だけをデーモンに返す。巨大なレポートでもデーモンのメモリ使用量は増えない。
+     *   [streamOutput] による表示と全体カバレッジのみの表示は、レポートを保持しないため使用しない
+     * - "": デーモン内でパースする
+     */
+    val parserMaxHeapSize: Property<String> = stringProperty(objects, "")
+
+    /**
+     * 複数のXMLレポートを1つのテーブルにまとめて表示するかどうか
+     *
+     * デフォルト値: false
+     *
+     * [xmlReportPath] を指定しない場合は、プロジェクトのすべての JacocoReport タスクが出力するXMLレポートを表示する。
+     * - true: 同じクラスの行をまとめ、カウンターの種類ごとにカバー数の最も多い値を使う。
+     *   どの命令がカバーされたかはレポートからわからないため、全体のカバレッジの下限となる
+     * - false: レポートごとにテーブルを表示する
+     */
+    val mergeReports: Property<Boolean> = booleanProperty(objects, false)
+
+    /**
+     * 行レベルのカバレッジを集計して表示するかどうか
+     *
+     * デフォルト値: false
+     *
+     * - true: XMLレポートの `<line>` 要素を読み込み、各テーブルの後に完全にカバーされた行、一部だけカバーされた行、
+     *   カバーされていない行の数を表示する。読み込み後に、ヒープ内外で使用したメモリ量をログに出力する
+     * - false: 行レベルのデータは読み込まない
+     */
+    val showLineCoverage: Property<Boolean> = booleanProperty(objects, false)
+
+    /**
+     * [targetClasses] で選択したクラスのソースファイルについて、カバーされていない行を表示するかどうか
+     *
+     * デフォルト値: false
+     *
+     * - true: 各テーブルの後に、ソースファイルごとにカバーされていない行と一部だけカバーされた行の範囲を
+     *   `12-18, 40, 55-60` の形式で表示する。初回にレポート内の `<sourcefile>` 要素の位置を索引として
+     *   キャッシュディレクトリに保存し、以降は選択したソースファイルの範囲だけを読み込む
+     * - false: 表示しない
+     */
+    val showMissedLines: Property<Boolean> = booleanProperty(objects, false)
+
+    /**
+     * 行レベルのデータの保存先
+     *
+     * デフォルト値: "direct"
+     *
+     * - "direct": ダイレクトバッファに保存する
+     * - "mapped": タスクの一時ディレクトリにメモリマップしたファイルに保存する。
+     *   -XX:MaxDirectMemorySize の上限を超える巨大なレポートに使う
+     *
+     * いずれもヒープには行ごとのオブジェクトを作らず、ソースファイルの索引だけを置く
+     */
+    val lineStorage: Property<String> = stringProperty(objects, LineStorage.DIRECT.optionValue)
 
     /**
      * 特定のクラス/パッケージのカバレッジを表示する際のターゲット
@@ -63,6 +202,8 @@ open class JacocoCoverageExtension {
      * - 完全一致: "com.example.service.UserService"
      * - パッケージワイルドカード: "com.example.service.*"
      * - パッケージ名: "com.example.service"
+     * - グロブ: "*Controller", "com.acme.**.internal.*Impl" (`**.` は0個以上のパッケージ、`?` はドット以外の1文字)
+     * - 除外: "!*Test" (`!` で始まるパターンに一致するクラスは除外。除外パターンのみの場合は他の全クラスが対象)
      *
      * 例:
      * ```kotlin
@@ -72,15 +213,16 @@ open class JacocoCoverageExtension {
      * )
      * ```
      */
-    var targetClasses: List<String> = emptyList()
+    val targetClasses: ListProperty<String> =
+        objects.listProperty(String::class.java).apply { set(emptyList()) }
 
     /**
      * レポートファイルの設定を検証する
      */
     internal fun validateConfiguration() {
         // XMLレポートファイルを優先してチェック
-        val reportFile = xmlReportPath ?: csvReportPath
-        reportFile?.let { file ->
+        val reportFile = xmlReportPath.orNull ?: csvReportPath.orNull
+        reportFile?.asFile?.let { file ->
             require(file.exists()) {
                 "Specified report file does not exist: ${file.absolutePath}"
             }
@@ -89,8 +231,13 @@ open class JacocoCoverageExtension {
             }
         }
 
+        XmlParserBackend.fromOptionValue(xmlParser.get())
+        CoverageSortOrder.fromOptionValue(sortBy.get())
+        LineStorage.fromOptionValue(lineStorage.get())
+        require(topClasses.get() >= 0) { "Top class count must not be negative: ${topClasses.get()}" }
+
         // ターゲットクラスの設定を検証
-        targetClasses.forEach { target ->
+        targetClasses.get().forEach { target ->
             require(target.isNotBlank()) {
                 "Target class/package name cannot be blank"
             }
@@ -102,6 +249,16 @@ open class JacocoCoverageExtension {
      * CSVが明示的に設定されている場合のみCSVを使用し、それ以外はXMLを使用
      */
     internal fun isUsingXmlReport(): Boolean {
-        return csvReportPath == null
+        return !csvReportPath.isPresent
     }
+
+    private fun booleanProperty(
+        objects: ObjectFactory,
+        defaultValue: Boolean,
+    ): Property<Boolean> = objects.property(Boolean::class.javaObjectType).apply { set(defaultValue) }
+
+    private fun stringProperty(
+        objects: ObjectFactory,
+        defaultValue: String,
+    ): Property<String> = objects.property(String::class.java).apply { set(defaultValue) }
 }
@@ -1,20 +1,52 @@
 package io.github.mas0061.jacoco
 
+import org.gradle.api.Action
 import org.gradle.api.DefaultTask
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.provider.Provider
+import org.gradle.api.tasks.CacheableTask
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFiles
 import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
 import org.gradle.api.tasks.TaskAction
 import org.gradle.api.tasks.options.Option
+import org.gradle.util.GradleVersion
+import org.gradle.workers.ProcessWorkerSpec
+import org.gradle.workers.WorkerExecutor
+import java.io.DataInputStream
+import java.io.File
 import java.io.IOException
+import java.io.PrintStream
+import javax.inject.Inject
 
-open class JacocoCoverageTask : DefaultTask() {
+/**
+ * カバレッジレポートをコンソールに表示するタスク
+ *
+ * レポートファイルと表示に関わる設定を入力、表示したテーブルを出力として宣言する。
+ * 入力が変わっていなければタスクは最新と判定されるかビルドキャッシュから復元され、
+ * プラグインが記録済みのテーブルを再表示する。
+ * 設定はすべてプラグインが構成時にプロパティとして設定し、実行時にはプロジェクトを参照しない。
+ */
+@CacheableTask
+open class JacocoCoverageTask @Inject constructor(private val workerExecutor: WorkerExecutor) : DefaultTask() {
     init {
         group = "reporting"
         description = "Displays JaCoCo coverage reports in console table format with " +
             "project totals and package summaries"
     }
 
+    /**
+     * パース済みレポートを共有するビルドサービス (Gradle 6.1 以降)
+     *
+     * 古い Gradle でもタスククラスを読み込めるように、ビルドサービスの型は公開しない
+     */
     @Internal
-    lateinit var extension: JacocoCoverageExtension
+    var reportCacheService: Provider<*>? = null
 
     @Internal
     @Option(option = "classes", description = "Comma-separated list of class names or packages to display")
@@ -24,12 +56,159 @@ open class JacocoCoverageTask : DefaultTask() {
     @Option(option = "xml-path", description = "Path to JaCoCo XML report file")
     var xmlPathOption: String = ""
 
+    @Internal
+    @Option(option = "xml-parser", description = "XML parser implementation: streaming (default) or mapped")
+    var xmlParserOption: String = ""
+
+    @Internal
+    @Option(option = "top", description = "Show only the given number of classes with the worst coverage")
+    var topOption: String = ""
+
+    @Internal
+    @Option(option = "sort", description = "Ranking used with --top: instruction (default), branch or missed")
+    var sortOption: String = ""
+
+    @Internal
+    @Option(option = "stream", description = "Print class rows in report order while the XML report is parsed")
+    var streamOption: Boolean = false
+
+    @Internal
+    @Option(option = "parser-heap", description = "Parse the XML report in a worker process with this maximum heap")
+    var parserHeapOption: String = ""
+
+    @Internal
+    @Option(option = "merge", description = "Merge all discovered XML reports into one table")
+    var mergeOption: Boolean = false
+
+    @Internal
+    @Option(option = "lines", description = "Show the number of covered, partly covered and missed source lines")
+    var linesOption: Boolean = false
+
+    @Internal
+    @Option(option = "missed-lines", description = "Show the missed and partly covered lines of the selected classes")
+    var missedLinesOption: Boolean = false
+
+    @Internal
+    @Option(option = "line-storage", description = "Storage of the line data: direct (default) or mapped")
+    var lineStorageOption: String = ""
+
     @Internal
     @Option(option = "csv-path", description = "Path to JaCoCo CSV report file (deprecated, use xml-path)")
     var csvPathOption: String = ""
 
+    /**
+     * XMLレポートの名前。[xmlReportFiles] と同じ順序で対応する
+     *
+     * MapProperty は Gradle 5.1 以降でのみ利用できるため、名前とファイルを別のリストとして持つ
+     */
+    @Internal
+    val xmlReportNames: ListProperty<String> = project.objects.listProperty(String::class.java)
+
+    /**
+     * XMLレポートファイル。存在するかどうかはタスクの実行時に確認する
+     */
+    @Internal
+    val xmlReportFiles: ListProperty<File> = project.objects.listProperty(File::class.java)
+
+    /**
+     * CSVレポートファイル (非推奨)。存在するかどうかはタスクの実行時に確認する
+     */
+    @Internal
+    val csvReportFile: Property<File> = project.objects.property(File::class.java)
+
+    /**
+     * 表示するレポートの形式 ("xml" または "csv")
+     */
+    @get:Input
+    val reportFormat: Property<String> = project.objects.property(String::class.java)
+
+    @get:Input
+    val targetClassPatterns: ListProperty<String> = project.objects.listProperty(String::class.java)
+
+    @get:Input
+    val showTotal: Property<Boolean> = project.objects.property(Boolean::class.javaObjectType)
+
+    @get:Input
+    val showPackageSummary: Property<Boolean> = project.objects.property(Boolean::class.javaObjectType)
+
+    @get:Input
+    val showClassDetails: Property<Boolean> = project.objects.property(Boolean::class.javaObjectType)
+
+    /**
+     * カバレッジの悪い順に表示するクラス数の設定値。検証はタスクの実行時に行う
+     */
+    @get:Input
+    val topClasses: Property<String> = project.objects.property(String::class.java)
+
+    /**
+     * カバレッジの悪いクラスを選ぶ際の並び順の設定値。検証はタスクの実行時に行う
+     */
+    @get:Input
+    val sortOrder: Property<String> = project.objects.property(String::class.java)
+
+    @get:Input
+    val streamOutput: Property<Boolean> = project.objects.property(Boolean::class.javaObjectType)
+
+    @get:Input
+    val mergeReports: Property<Boolean> = project.objects.property(Boolean::class.javaObjectType)
+
+    @get:Input
+    val showLineCoverage: Property<Boolean> = project.objects.property(Boolean::class.javaObjectType)
+
+    @get:Input
+    val showMissedLines: Property<Boolean> = project.objects.property(Boolean::class.javaObjectType)
+
+    /**
+     * 行レベルのデータの保存先の設定値。表示内容は変わらないため入力には含めない
+     */
+    @Internal
+    val lineStorage: Property<String> = project.objects.property(String::class.java)
+
+    /**
+     * 表示するレポートの名前。複数のXMLレポートを表示する場合の見出しとなる
+     */
+    @get:Input
+    val reportNames: List<String>
+        get() = if (isXmlReport()) xmlReportNames.get() else emptyList()
+
+    /**
+     * XMLパーサーの実装の設定値。表示内容は変わらないため入力には含めない
+     */
+    @Internal
+    val xmlParser: Property<String> = project.objects.property(String::class.java)
+
+    @Internal
+    val reportCache: Property<Boolean> = project.objects.property(Boolean::class.javaObjectType)
+
+    @Internal
+    val reportCacheDirectory: Property<File> = project.objects.property(File::class.java)
+
+    /**
+     * パースに使うワーカープロセスの最大ヒープサイズ。空の場合はデーモン内でパースする
+     */
+    @Internal
+    val parserMaxHeapSize: Property<String> = project.objects.property(String::class.java)
+
+    /**
+     * 表示するレポートファイル
+     *
+     * ファイル名と内容だけを比較するため、ディレクトリが異なっても同じレポートであればビルドキャッシュを利用できる。
+     * 存在しないファイルはタスクの実行時に除外するかエラーを報告するため、ここでは存在を確認しない。
+     */
+    @get:InputFiles
+    @get:PathSensitive(PathSensitivity.NAME_ONLY)
+    val reportFiles: List<File>
+        get() = if (isXmlReport()) xmlReportFiles.get() else listOf(csvReportFile.get())
+
+    /**
+     * 表示したカバレッジテーブルの記録
+     *
+     * タスクが最新と判定された場合やビルドキャッシュから復元された場合は、この内容を再表示する
+     */
+    @get:OutputFile
+    val summaryFile: RegularFileProperty = FileProperties.create(project.objects, project.layout)
+
     // 依存関係
-    private val configManager by lazy { CoverageConfigurationManager(project, extension) }
     private val dataFilter = CoverageDataFilter()
     private val csvReportRenderer = CoverageReportRenderer()
     private val xmlReportRenderer = XmlCoverageReportRenderer()
@@ -37,12 +216,15 @@ open class JacocoCoverageTask : DefaultTask() {
     @TaskAction
     fun showCoverage() {
         try {
-            val targetClasses = configManager.determineTargetClasses(classesOption)
+            val targetClasses = targetClassPatterns.get()
 
-            if (shouldUseXmlReport()) {
-                renderXmlReport(targetClasses)
-            } else {
-                renderCsvReport(targetClasses)
+            // 表示内容をタスクの出力ファイルにも記録する
+            CoverageSummaryOutput.open(summaryFile.get().asFile, System.out).use { out ->
+                if (isXmlReport()) {
+                    renderXmlReport(targetClasses, out)
+                } else {
+                    renderCsvReport(targetClasses, out)
+                }
             }
         } catch (e: IOException) {
             logger.error("Failed to read coverage report file: ${e.message}", e)
@@ -53,53 +235,373 @@ open class JacocoCoverageTask : DefaultTask() {
         }
     }
 
-    private fun shouldUseXmlReport(): Boolean {
-        val csvExplicitlySpecified =
-            csvPathOption.isNotEmpty() ||
-                project.hasProperty("jacocoCsvPath") ||
-                extension.csvReportPath != null
+    private fun isXmlReport(): Boolean = reportFormat.get() == "xml"
+
+    private fun renderXmlReport(
+        targetClasses: List<String>,
+        out: PrintStream,
+    ) {
+        // 設定値はレポートを読み込む前に検証する
+        CoverageConfigurationManager.parseTopClasses(topClasses.get())
+        CoverageSortOrder.fromOptionValue(sortOrder.get())
+        LineStorage.fromOptionValue(lineStorage.get())
+
+        val xmlFiles = existingXmlFiles()
+        when {
+            xmlFiles.size == 1 -> {
+                renderXmlFile(xmlFiles.values.single(), targetClasses, out)
+                renderLineCoverage(xmlFiles, targetClasses, out)
+            }
+            mergeReports.get() -> renderMergedReports(xmlFiles, targetClasses, out)
+            else -> renderEachReport(xmlFiles, targetClasses, out)
+        }
+    }
+
+    /**
+     * 行レベルのカバレッジの集計と、選択したクラスのカバーされていない行を表示する
+     * 複数のレポートは行ごとに最もよい状態を使ってまとめる
+     */
+    private fun renderLineCoverage(
+        xmlFiles: Map<String, File>,
+        targetClasses: List<String>,
+        out: PrintStream,
+    ) {
+        if (showLineCoverage.get()) {
+            readLineRecords(xmlFiles, targetClasses) { stores ->
+                xmlReportRenderer.renderLineSummary(OffHeapLineStore.countMerged(stores), out)
+            }
+        }
+        if (showMissedLines.get()) {
+            val matcher = TargetClassMatcher(targetClasses)
+            val lines = xmlFiles.values.map { readSelectedSourceFiles(it, matcher) }
+            xmlReportRenderer.renderMissedLines(lines.reduce(LineCoverage::merge), out)
+        }
+    }
+
+    /**
+     * 選択したクラスのソースファイルの行だけを、索引のバイト位置から直接読み込む
+     * 索引はレポートのキャッシュの設定にかかわらずキャッシュディレクトリに保存し、レポートの内容が変わるまで再利用する
+     */
+    private fun readSelectedSourceFiles(
+        xmlFile: File,
+        matcher: TargetClassMatcher,
+    ): LineCoverage {
+        val index = SourceFileIndex.load(xmlFile, reportCacheDirectory.get())
+        return index.readLines(xmlFile, index.select(matcher))
+    }
+
+    /**
+     * 行ごとのデータをレポートごとにヒープの外に読み込み、ヒープ内外のメモリ使用量をログに出力する
+     * 表示はヒープに戻さずに読み込んだデータから直接行い、表示後にバッファと一時ファイルを解放する
+     */
+    private fun readLineRecords(
+        xmlFiles: Map<String, File>,
+        targetClasses: List<String>,
+        render: (List<OffHeapLineStore>) -> Unit,
+    ) {
+        val storage = LineStorage.fromOptionValue(lineStorage.get())
+        val stores = mutableListOf<OffHeapLineStore>()
+        try {
+            for ((name, xmlFile) in xmlFiles) {
+                val store = OffHeapLineStore.open(storage, temporaryDir).also { stores.add(it) }
+                XmlReportParser().readLineRecords(xmlFile, TargetClassMatcher(targetClasses), store)
+                logger.lifecycle("Line data of {}: {}", name, store.memoryReport())
+            }
+            render(stores)
+        } finally {
+            stores.forEach { it.close() }
+        }
+    }
+
+    /**
+     * レポート名とXMLレポートファイル
+     */
+    private fun xmlReports(): Map<String, File> = xmlReportNames.get().zip(xmlReportFiles.get()).toMap()
+
+    /**
+     * 存在するXMLレポート。テストを実行していないタスクのレポートなどは表示しない
+     * いずれも存在しない場合は、最初のレポートのエラーを報告するためにそのまま返す
+     */
+    private fun existingXmlFiles(): Map<String, File> {
+        val xmlFiles = xmlReports()
+        val existing = xmlFiles.filterValues { it.isFile }
+        for ((name, file) in xmlFiles - existing.keys) {
+            logger.info("Skipping the XML report of {}, which does not exist: {}", name, file)
+        }
+        return existing.ifEmpty { xmlFiles.entries.take(1).associate { it.key to it.value } }
+    }
+
+    /**
+     * レポートごとにテーブルを表示する
+     * レポートを保持する表示方法では、すべてのレポートを先に並列で読み込む
+     */
+    private fun renderEachReport(
+        xmlFiles: Map<String, File>,
+        targetClasses: List<String>,
+        out: PrintStream,
+    ) {
+        val reports =
+            if (isTotalsOnly(targetClasses) || isStreamed()) {
+                null
+            } else {
+                loadDisplayedReports(xmlFiles.values.toList(), targetClasses, keepAllClasses = false)
+            }
+        xmlFiles.entries.forEachIndexed { index, (name, xmlFile) ->
+            out.println()
+            out.println("Report: $name (${xmlFile.name})")
+            if (reports == null) {
+                renderXmlFile(xmlFile, targetClasses, out)
+            } else {
+                renderLoadedReport(reports[index], targetClasses, out)
+            }
+            renderLineCoverage(mapOf(name to xmlFile), targetClasses, out)
+        }
+    }
+
+    /**
+     * すべてのレポートを並列で読み込み、同じクラスの行をまとめた1つのテーブルを表示する
+     */
+    private fun renderMergedReports(
+        xmlFiles: Map<String, File>,
+        targetClasses: List<String>,
+        out: PrintStream,
+    ) {
+        val reports =
+            loadDisplayedReports(xmlFiles.values.toList(), targetClasses, keepAllClasses = true).filterNotNull()
+        val merged = if (reports.isEmpty()) null else CoverageReportMerger.mergeOverlapping("merged", reports)
+
+        out.println()
+        out.println("Merged from ${xmlFiles.size} reports: ${xmlFiles.keys.joinToString(", ")}")
+        renderLoadedReport(merged, targetClasses, out)
+        renderLineCoverage(xmlFiles, targetClasses, out)
+    }
+
+    private fun renderXmlFile(
+        xmlFile: File,
+        targetClasses: List<String>,
+        out: PrintStream,
+    ) {
+        if (isTotalsOnly(targetClasses)) {
+            renderXmlTotals(XmlReportParser().parseTotals(xmlFile), out)
+            return
+        }
+
+        if (isStreamed()) {
+            // クラスの行はパースと並行して表示し、全体とパッケージのカバレッジは最後に表示する
+            PipelinedReportRenderer().render(
+                xmlFile = xmlFile,
+                matcher = TargetClassMatcher(targetClasses),
+                showTotal = showTotal.get(),
+                showPackageSummary = showPackageSummary.get(),
+                out = out,
+            )
+            return
+        }
+
+        val report = loadDisplayedReports(listOf(xmlFile), targetClasses, keepAllClasses = false).single()
+        renderLoadedReport(report, targetClasses, out)
+    }
+
+    /**
+     * クラスの行をパースと並行して表示するかどうか
+     */
+    private fun isStreamed(): Boolean {
+        return showClassDetails.get() &&
+            CoverageConfigurationManager.parseTopClasses(topClasses.get()) == 0 &&
+            streamOutput.get()
+    }
 
-        return xmlPathOption.isNotEmpty() ||
-            project.hasProperty("jacocoXmlPath") ||
-            !csvExplicitlySpecified
+    /**
+     * 読み込んだレポートを表示する。[report] が null の場合はデータがないことを表示する
+     */
+    private fun renderLoadedReport(
+        report: CoverageReport?,
+        targetClasses: List<String>,
+        out: PrintStream,
+    ) {
+        if (report == null) {
+            if (targetClasses.isEmpty()) {
+                out.println("No coverage data found in the XML report.")
+            } else {
+                out.println("No coverage data found for the specified criteria.")
+            }
+            return
+        }
+
+        xmlReportRenderer.renderCoverageReport(
+            report = report,
+            showTotal = showTotal.get(),
+            showPackageSummary = showPackageSummary.get(),
+            showClassDetails = showClassDetails.get(),
+            topClasses = CoverageConfigurationManager.parseTopClasses(topClasses.get()),
+            sortOrder = CoverageSortOrder.fromOptionValue(sortOrder.get()),
+            out = out,
+        )
+    }
+
+    /**
+     * 表示するレポートを並列で読み込み、ファイルの順に返す。クラスが1つもないレポートは null となる
+     * [keepAllClasses] が true の場合は、表示しないクラスも含めて返す
+     */
+    private fun loadDisplayedReports(
+        xmlFiles: List<File>,
+        targetClasses: List<String>,
+        keepAllClasses: Boolean,
+    ): List<CoverageReport?> {
+        if (isParsedInWorkerProcess()) {
+            return summarizeInWorkerProcess(xmlFiles, targetClasses, keepAllClasses)
+        }
+        return ConcurrentReportLoader.load(xmlFiles) { xmlFile ->
+            loadXmlReport(xmlFile, targetClasses).takeIf { it.packages.any { pkg -> pkg.classes.isNotEmpty() } }
+        }
+    }
+
+    /**
+     * ワーカープロセスは Gradle 5.6 以降の Worker API で起動する
+     */
+    private fun isParsedInWorkerProcess(): Boolean {
+        if (parserMaxHeapSize.get().isEmpty()) {
+            return false
+        }
+        if (GradleVersion.current() < GradleVersion.version("5.6")) {
+            logger.warn("Parsing in a worker process requires Gradle 5.6 or later; parsing in the daemon instead")
+            return false
+        }
+        return true
+    }
+
+    /**
+     * XMLレポートのパース・絞り込み・集計をワーカープロセスで行い、表示に必要な部分だけを受け取る
+     * レポートごとにワーカーを起動するため、複数のレポートは並列にパースされる
+     */
+    private fun summarizeInWorkerProcess(
+        xmlFiles: List<File>,
+        targetClasses: List<String>,
+        keepAllClasses: Boolean,
+    ): List<CoverageReport?> {
+        xmlFiles.forEach { CoverageReportParser.validateFileAccess(it) }
+        val summaryFiles = xmlFiles.indices.map { File(temporaryDir, "report-summary-$it.bin") }
+        val queue =
+            workerExecutor.processIsolation(
+                object : Action<ProcessWorkerSpec> {
+                    override fun execute(spec: ProcessWorkerSpec) {
+                        spec.forkOptions.maxHeapSize = parserMaxHeapSize.get()
+                    }
+                },
+            )
+        xmlFiles.forEachIndexed { index, xmlFile ->
+            queue.submit(
+                ReportSummaryAction::class.java,
+                object : Action<ReportSummaryAction.Parameters> {
+                    override fun execute(parameters: ReportSummaryAction.Parameters) {
+                        parameters.reportFile.set(xmlFile)
+                        parameters.targetClasses.set(targetClasses)
+                        parameters.xmlParser.set(xmlParser.get())
+                        if (reportCache.get()) {
+                            parameters.cacheDirectory.set(reportCacheDirectory.get())
+                        }
+                        parameters.showClassDetails.set(keepAllClasses || showClassDetails.get())
+                        parameters.topClasses.set(
+                            if (keepAllClasses) 0 else CoverageConfigurationManager.parseTopClasses(topClasses.get()),
+                        )
+                        parameters.sortOrder.set(sortOrder.get())
+                        parameters.summaryFile.set(summaryFiles[index])
+                    }
+                },
+            )
+        }
+        queue.await()
+
+        return summaryFiles.map { file ->
+            DataInputStream(file.inputStream().buffered()).use { ReportSummaries.read(it) }
+        }
     }
 
-    private fun renderXmlReport(targetClasses: List<String>) {
-        val xmlFile = configManager.determineXmlFile(xmlPathOption)
-        val parser = XmlReportParser()
-        val report = parser.parse(xmlFile)
+    /**
+     * XMLレポートを読み込み、ターゲットクラスで絞り込んだレポートを返す
+     */
+    private fun loadXmlReport(
+        xmlFile: File,
+        targetClasses: List<String>,
+    ): CoverageReport {
+        val parser = XmlParserBackend.fromOptionValue(xmlParser.get()).createParser()
+
+        if (!reportCache.get()) {
+            // 対象外のパッケージ・クラスはパース時に読み飛ばす
+            return loadSharedReport(xmlFile, targetClasses) { parser.parse(xmlFile, TargetClassMatcher(targetClasses)) }
+        }
 
-        if (report.packages.isEmpty() || report.getAllClasses().isEmpty()) {
-            println("No coverage data found in the XML report.")
+        // キャッシュにはレポート全体を保存し、絞り込みは読み込んだレポートに対して行う
+        val snapshotCache = CoverageReportCache(reportCacheDirectory.get())
+        val report = loadSharedReport(xmlFile, emptyList()) { snapshotCache.load(xmlFile) { parser.parse(it) } }
+        return xmlReportRenderer.filterReport(report, targetClasses)
+    }
+
+    /**
+     * 同じビルド内の他のタスクが同じ条件で読み込んだレポートを再利用する
+     * 同時に同じレポートを読み込む場合も、パースは1回だけ行う
+     */
+    private fun loadSharedReport(
+        xmlFile: File,
+        targetClasses: List<String>,
+        load: () -> CoverageReport,
+    ): CoverageReport {
+        val service = reportCacheService ?: return load()
+        val key = ParsedReportKey(ReportFingerprint.of(xmlFile), targetClasses)
+        return ReportCacheServices.cacheOf(service).getOrLoad(key, load)
+    }
+
+    /**
+     * 全体カバレッジのみを表示する場合は、パッケージやクラスを読み込む必要がない
+     */
+    private fun isTotalsOnly(targetClasses: List<String>): Boolean {
+        return targetClasses.isEmpty() &&
+            showTotal.get() &&
+            !showPackageSummary.get() &&
+            !showClassDetails.get()
+    }
+
+    private fun renderXmlTotals(
+        report: CoverageReport,
+        out: PrintStream,
+    ) {
+        if (report.counters.isEmpty()) {
+            out.println("No coverage data found in the XML report.")
             return
         }
 
         xmlReportRenderer.renderCoverageReport(
             report = report,
-            targetClasses = targetClasses,
-            showTotal = extension.showTotal,
-            showPackageSummary = extension.showPackageSummary,
+            showTotal = true,
+            showPackageSummary = false,
+            showClassDetails = false,
+            out = out,
         )
     }
 
-    private fun renderCsvReport(targetClasses: List<String>) {
+    private fun renderCsvReport(
+        targetClasses: List<String>,
+        out: PrintStream,
+    ) {
         logger.warn(
             "CSV reports are deprecated. Consider using XML reports for " +
                 "better functionality including project totals.",
         )
+        if (showLineCoverage.get() || showMissedLines.get()) {
+            logger.warn("Line coverage is only available for XML reports.")
+        }
 
-        val csvFile = configManager.determineCsvFile(csvPathOption)
-        val parser = CsvReportParser()
+        val csvFile = csvReportFile.get()
+        val parser = CsvReportParser(Runtime.getRuntime().availableProcessors())
         val coverageData = parser.parse(csvFile)
 
-        val showTotal = configManager.shouldShowTotal()
-        val filteredData = dataFilter.filterCoverageData(coverageData, targetClasses, showTotal)
+        val filteredData = dataFilter.filterCoverageData(coverageData, targetClasses, showTotal.get())
 
         if (filteredData.isEmpty()) {
-            println("No coverage data found for the specified criteria.")
+            out.println("No coverage data found for the specified criteria.")
             return
         }
 
-        csvReportRenderer.renderCoverageTable(filteredData)
+        csvReportRenderer.renderCoverageTable(filteredData, out)
     }
 }
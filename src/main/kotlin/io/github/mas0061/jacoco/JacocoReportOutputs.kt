@@ -0,0 +1,52 @@
+package io.github.mas0061.jacoco
+
+import org.gradle.api.Project
+import org.gradle.testing.jacoco.tasks.JacocoReport
+import org.gradle.util.GradleVersion
+import java.io.File
+
+/**
+ * プロジェクトの JacocoReport タスクが出力するXMLレポートを調べるユーティリティ
+ *
+ * `SingleFileReport.getOutputLocation()` と `getRequired()` は Gradle 6.1 以降でのみ利用できる。それより前の Gradle では
+ * `getDestination()` と `isEnabled()` を使う。こちらは Gradle 8.0 で削除されたため、リフレクションで呼び出す。
+ */
+internal object JacocoReportOutputs {
+    private const val TEST_REPORT_TASK_NAME = "jacocoTestReport"
+
+    /**
+     * XMLレポートを出力する JacocoReport タスクの名前とXMLレポートファイルを返す
+     * jacoco プラグインが追加する jacocoTestReport を先頭とし、それ以外はタスク名の順とする
+     *
+     * レポートの出力先を調べるためにタスクを作成するので、タスクの実行時に評価するプロバイダーから呼び出す。
+     * 並べ替えはタスク名だけで行い、構成時にはタスクを作成しない
+     */
+    fun xmlReports(project: Project): Map<String, File> {
+        val reportTasks = project.tasks.withType(JacocoReport::class.java)
+        val names = reportTasks.names.sortedWith(compareBy({ it != TEST_REPORT_TASK_NAME }, { it }))
+        val reports = LinkedHashMap<String, File>()
+        for (name in names) {
+            val task = reportTasks.getByName(name)
+            if (isXmlReportRequired(task)) {
+                xmlReportFile(task)?.let { reports[name] = it }
+            }
+        }
+        return reports
+    }
+
+    private fun isXmlReportRequired(task: JacocoReport): Boolean {
+        val xml = task.reports.xml
+        if (GradleVersion.current() >= GradleVersion.version("6.1")) {
+            return xml.required.getOrElse(false)
+        }
+        return xml.javaClass.getMethod("isEnabled").invoke(xml) as Boolean
+    }
+
+    private fun xmlReportFile(task: JacocoReport): File? {
+        val xml = task.reports.xml
+        if (GradleVersion.current() >= GradleVersion.version("6.1")) {
+            return xml.outputLocation.orNull?.asFile
+        }
+        return xml.javaClass.getMethod("getDestination").invoke(xml) as File?
+    }
+}
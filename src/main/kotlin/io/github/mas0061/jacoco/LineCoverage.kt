@@ -0,0 +1,371 @@
+package io.github.mas0061.jacoco
+
+/**
+ * Immutable set of source line numbers stored as sorted runs of consecutive lines
+ *
+ * Lines with the same coverage status come in long consecutive blocks, so a source file usually needs only
+ * a handful of runs no matter how many lines it has. The runs are kept in one int array of alternating start
+ * (inclusive) and end (exclusive) bounds. Union, intersection and difference walk both arrays once and cost
+ * time proportional to the number of runs, not the number of lines.
+ */
+class LineSet private constructor(private val bounds: IntArray) {
+    /** Number of lines in the set */
+    val size: Int = (bounds.indices step 2).sumOf { bounds[it + 1] - bounds[it] }
+
+    /** Number of runs of consecutive lines */
+    val runCount: Int get() = bounds.size / 2
+
+    fun isEmpty(): Boolean = bounds.isEmpty()
+
+    operator fun contains(line: Int): Boolean {
+        // The line is inside a run when an odd number of bounds is less than or equal to it
+        var low = 0
+        var high = bounds.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (bounds[middle] <= line) low = middle + 1 else high = middle
+        }
+        return low % 2 == 1
+    }
+
+    /**
+     * Calls [action] with the first and last line of every run in ascending order
+     */
+    inline fun forEachRange(action: (first: Int, last: Int) -> Unit) {
+        for (run in 0 until runCount) {
+            action(runStart(run), runEnd(run) - 1)
+        }
+    }
+
+    fun ranges(): List<IntRange> {
+        val ranges = ArrayList<IntRange>(runCount)
+        forEachRange { first, last -> ranges.add(first..last) }
+        return ranges
+    }
+
+    @PublishedApi
+    internal fun runStart(run: Int): Int = bounds[run * 2]
+
+    @PublishedApi
+    internal fun runEnd(run: Int): Int = bounds[run * 2 + 1]
+
+    infix fun union(other: LineSet): LineSet =
+        when {
+            other.isEmpty() -> this
+            isEmpty() -> other
+            else -> combine(other) { inThis, inOther -> inThis || inOther }
+        }
+
+    infix fun intersect(other: LineSet): LineSet =
+        if (isEmpty() || other.isEmpty()) EMPTY else combine(other) { inThis, inOther -> inThis && inOther }
+
+    operator fun minus(other: LineSet): LineSet =
+        if (isEmpty() || other.isEmpty()) this else combine(other) { inThis, inOther -> inThis && !inOther }
+
+    /**
+     * Sweeps the bounds of both sets in ascending order and emits a bound wherever [keep] changes its result
+     */
+    private inline fun combine(
+        other: LineSet,
+        keep: (Boolean, Boolean) -> Boolean,
+    ): LineSet {
+        val a = bounds
+        val b = other.bounds
+        val result = IntArray(a.size + b.size)
+        var count = 0
+        var i = 0
+        var j = 0
+        var inA = false
+        var inB = false
+        var inResult = false
+        while (i < a.size || j < b.size) {
+            val position = minOf(if (i < a.size) a[i] else Int.MAX_VALUE, if (j < b.size) b[j] else Int.MAX_VALUE)
+            if (i < a.size && a[i] == position) {
+                inA = !inA
+                i++
+            }
+            if (j < b.size && b[j] == position) {
+                inB = !inB
+                j++
+            }
+            val kept = keep(inA, inB)
+            if (kept != inResult) {
+                result[count++] = position
+                inResult = kept
+            }
+        }
+        return if (count == 0) EMPTY else LineSet(result.copyOf(count))
+    }
+
+    override fun equals(other: Any?): Boolean = other is LineSet && bounds.contentEquals(other.bounds)
+
+    override fun hashCode(): Int = bounds.contentHashCode()
+
+    /**
+     * Compact list of the runs, e.g. `12-18, 40, 55-60`
+     */
+    fun format(): String {
+        val text = StringBuilder()
+        forEachRange { first, last ->
+            if (text.isNotEmpty()) {
+                text.append(", ")
+            }
+            text.append(first)
+            if (last != first) {
+                text.append('-').append(last)
+            }
+        }
+        return text.toString()
+    }
+
+    override fun toString(): String = "[${format()}]"
+
+    /**
+     * Collects lines into a [LineSet]. Lines added in ascending order extend or append runs in constant time;
+     * a line that goes back is merged into the runs collected so far.
+     */
+    class Builder {
+        private var bounds = IntArray(8)
+        private var count = 0
+        private var merged: LineSet? = null
+
+        fun add(line: Int): Builder {
+            require(line in 0 until Int.MAX_VALUE) { "Invalid line number: $line" }
+            val lastEnd = if (count == 0) -1 else bounds[count - 1]
+            when {
+                line == lastEnd -> bounds[count - 1] = line + 1
+                line > lastEnd -> appendRun(line)
+                line < bounds[count - 2] -> mergeLine(line)
+                // Otherwise the line is already in the last run
+            }
+            return this
+        }
+
+        fun build(): LineSet {
+            val collected = if (count == 0) EMPTY else LineSet(bounds.copyOf(count))
+            return merged?.union(collected) ?: collected
+        }
+
+        private fun appendRun(line: Int) {
+            if (count == bounds.size) {
+                bounds = bounds.copyOf(count * 2)
+            }
+            bounds[count++] = line
+            bounds[count++] = line + 1
+        }
+
+        private fun mergeLine(line: Int) {
+            merged = build() union of(line)
+            count = 0
+        }
+    }
+
+    companion object {
+        @JvmField
+        val EMPTY = LineSet(IntArray(0))
+
+        fun of(vararg lines: Int): LineSet {
+            val builder = Builder()
+            lines.forEach { builder.add(it) }
+            return builder.build()
+        }
+
+        /**
+         * The lines from [first] to [last], both inclusive
+         */
+        fun range(
+            first: Int,
+            last: Int,
+        ): LineSet {
+            require(first in 0..last && last < Int.MAX_VALUE) { "Invalid line range: $first-$last" }
+            return LineSet(intArrayOf(first, last + 1))
+        }
+    }
+}
+
+/**
+ * Line coverage of one source file, split into the three line states of the JaCoCo HTML report
+ *
+ * A line is fully covered when all of its instructions and branches were executed, partly covered when some
+ * of them were, and missed when none were. Lines without code belong to none of the sets.
+ */
+data class SourceFileLines(
+    val packageName: String,
+    val fileName: String,
+    val missed: LineSet,
+    val partlyCovered: LineSet,
+    val fullyCovered: LineSet,
+) {
+    /** Package path and file name separated by `/`, the key of the file within a report */
+    val path: String get() = if (packageName.isEmpty()) fileName else "$packageName/$fileName"
+
+    /** Lines with at least one executed instruction */
+    val coveredLines: LineSet get() = partlyCovered union fullyCovered
+
+    fun counts(): LineCounts =
+        LineCounts(1, fullyCovered.size.toLong(), partlyCovered.size.toLong(), missed.size.toLong())
+
+    /**
+     * Combines the line coverage of the same file from two reports
+     *
+     * A line keeps the best state it has in either report. A line that is partly covered in both stays partly
+     * covered, because the reports do not tell which of its branches were executed.
+     */
+    fun merge(other: SourceFileLines): SourceFileLines {
+        val full = fullyCovered union other.fullyCovered
+        val partly = (partlyCovered union other.partlyCovered) - full
+        return copy(
+            missed = (missed union other.missed) - partly - full,
+            partlyCovered = partly,
+            fullyCovered = full,
+        )
+    }
+}
+
+/**
+ * Number of source files and of lines in each line state, the content of the line summary
+ */
+data class LineCounts(
+    val sourceFiles: Int,
+    val fullyCovered: Long,
+    val partlyCovered: Long,
+    val missed: Long,
+) {
+    /** Lines with code */
+    val total: Long get() = fullyCovered + partlyCovered + missed
+
+    operator fun plus(other: LineCounts): LineCounts =
+        LineCounts(
+            sourceFiles + other.sourceFiles,
+            fullyCovered + other.fullyCovered,
+            partlyCovered + other.partlyCovered,
+            missed + other.missed,
+        )
+
+    companion object {
+        @JvmField
+        val NONE = LineCounts(0, 0, 0, 0)
+    }
+}
+
+/**
+ * Line-level coverage of a report: the line states of every source file
+ */
+class LineCoverage(val files: List<SourceFileLines>) {
+    private val filesByPath by lazy { files.associateBy { it.path } }
+
+    /**
+     * Returns the lines of the source file with the given package path and file name, e.g.
+     * `com/example/UserService.java`
+     */
+    fun file(path: String): SourceFileLines? = filesByPath[path]
+
+    fun counts(): LineCounts = files.fold(LineCounts.NONE) { counts, file -> counts + file.counts() }
+
+    /**
+     * Combines two reports file by file; files found in only one report are kept as they are
+     */
+    fun merge(other: LineCoverage): LineCoverage {
+        val merged = LinkedHashMap(filesByPath)
+        for (file in other.files) {
+            merged[file.path] = merged[file.path]?.merge(file) ?: file
+        }
+        return LineCoverage(merged.values.toList())
+    }
+
+    override fun equals(other: Any?): Boolean = other is LineCoverage && files == other.files
+
+    override fun hashCode(): Int = files.hashCode()
+
+    companion object {
+        /** Line status values, as in JaCoCo's ICounter */
+        internal const val EMPTY = 0
+        internal const val NOT_COVERED = 1
+        internal const val FULLY_COVERED = 2
+        internal const val PARTLY_COVERED = 3
+
+        /**
+         * Status of a `<line>` element from its missed and covered instruction and branch counts
+         */
+        internal fun lineStatus(
+            missedInstructions: Int,
+            coveredInstructions: Int,
+            missedBranches: Int,
+            coveredBranches: Int,
+        ): Int =
+            counterStatus(missedInstructions, coveredInstructions) or counterStatus(missedBranches, coveredBranches)
+
+        private fun counterStatus(
+            missed: Int,
+            covered: Int,
+        ): Int =
+            when {
+                covered > 0 -> if (missed > 0) PARTLY_COVERED else FULLY_COVERED
+                missed > 0 -> NOT_COVERED
+                else -> EMPTY
+            }
+    }
+}
+
+/**
+ * Receives the `<line>` elements of a report one source file at a time
+ */
+internal interface LineRecordSink {
+    fun startFile(
+        packageName: String,
+        fileName: String,
+    )
+
+    fun addLine(
+        line: Int,
+        missedInstructions: Int,
+        coveredInstructions: Int,
+        missedBranches: Int,
+        coveredBranches: Int,
+    )
+
+    fun endFile()
+}
+
+/**
+ * Collects line records into the three line sets of each source file
+ */
+internal class LineCoverageCollector : LineRecordSink {
+    private val files = mutableListOf<SourceFileLines>()
+    private var packageName = ""
+    private var fileName = ""
+    private var missed = LineSet.Builder()
+    private var partlyCovered = LineSet.Builder()
+    private var fullyCovered = LineSet.Builder()
+
+    override fun startFile(
+        packageName: String,
+        fileName: String,
+    ) {
+        this.packageName = packageName
+        this.fileName = fileName
+        missed = LineSet.Builder()
+        partlyCovered = LineSet.Builder()
+        fullyCovered = LineSet.Builder()
+    }
+
+    override fun addLine(
+        line: Int,
+        missedInstructions: Int,
+        coveredInstructions: Int,
+        missedBranches: Int,
+        coveredBranches: Int,
+    ) {
+        when (LineCoverage.lineStatus(missedInstructions, coveredInstructions, missedBranches, coveredBranches)) {
+            LineCoverage.NOT_COVERED -> missed.add(line)
+            LineCoverage.PARTLY_COVERED -> partlyCovered.add(line)
+            LineCoverage.FULLY_COVERED -> fullyCovered.add(line)
+        }
+    }
+
+    override fun endFile() {
+        files.add(SourceFileLines(packageName, fileName, missed.build(), partlyCovered.build(), fullyCovered.build()))
+    }
+
+    fun build(): LineCoverage = LineCoverage(files.toList())
+}
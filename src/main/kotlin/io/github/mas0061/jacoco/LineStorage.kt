@@ -0,0 +1,24 @@
+package io.github.mas0061.jacoco
+
+/**
+ * 行レベルのカバレッジデータを読み込む際の保存先
+ *
+ * いずれもヒープの外に保存し、ヒープにはソースファイルの索引だけを置く
+ */
+enum class LineStorage(val optionValue: String) {
+    /** ダイレクトバッファ (デフォルト)。-XX:MaxDirectMemorySize の上限を受ける */
+    DIRECT("direct"),
+
+    /** タスクの一時ディレクトリにメモリマップしたファイル。上限はディスクの空き容量となる */
+    MAPPED("mapped"),
+    ;
+
+    companion object {
+        fun fromOptionValue(value: String): LineStorage {
+            return values().firstOrNull { it.optionValue == value.trim().lowercase() }
+                ?: throw IllegalArgumentException(
+                    "Unknown line storage '$value'. Supported values: ${values().joinToString { it.optionValue }}",
+                )
+        }
+    }
+}
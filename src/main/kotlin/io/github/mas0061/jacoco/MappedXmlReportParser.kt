@@ -0,0 +1,131 @@
+package io.github.mas0061.jacoco
+
+import java.io.File
+import java.io.IOException
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * JaCoCo XML report parser backend that scans the memory-mapped report bytes
+ *
+ * This backend avoids the character decoding and attribute string allocation of a general purpose
+ * XML parser and is intended for very large reports. It produces the same [CoverageReport] as
+ * [XmlReportParser].
+ */
+class MappedXmlReportParser internal constructor(
+    private val windowSize: Long,
+) : CoverageReportParser {
+    constructor() : this(MappedXmlScanner.DEFAULT_WINDOW_SIZE)
+
+    override fun parse(
+        xmlFile: File,
+        matcher: TargetClassMatcher?,
+    ): CoverageReport {
+        CoverageReportParser.validateFileAccess(xmlFile)
+
+        return try {
+            FileChannel.open(xmlFile.toPath(), StandardOpenOption.READ).use { channel ->
+                MappedXmlScanner(channel, windowSize = windowSize).use { scanner ->
+                    parseReport(scanner, CoverageReportBuilder(matcher))
+                }
+            }
+        } catch (e: IOException) {
+            throw IllegalArgumentException("Failed to read XML file: ${xmlFile.name}", e)
+        }
+    }
+
+    private fun parseReport(
+        scanner: MappedXmlScanner,
+        builder: CoverageReportBuilder,
+    ): CoverageReport {
+        require(scanner.nextTag() && scanner.tagKind != MappedXmlScanner.END) {
+            "Invalid JaCoCo XML format: no root element found"
+        }
+        require(scanner.tagName == MappedXmlScanner.REPORT) {
+            "Invalid JaCoCo XML format: root element should be 'report', found '${scanner.tagNameString()}'"
+        }
+
+        val reportName = scanner.nameAttribute().orEmpty()
+        if (scanner.tagKind == MappedXmlScanner.START) {
+            parseGroupContent(scanner, builder, true)
+        }
+
+        return builder.build(reportName)
+    }
+
+    /**
+     * Reads the children of `<report>` or `<group>` up to the matching end tag
+     */
+    private fun parseGroupContent(
+        scanner: MappedXmlScanner,
+        builder: CoverageReportBuilder,
+        isReport: Boolean,
+    ) {
+        while (scanner.nextTag()) {
+            if (scanner.tagKind == MappedXmlScanner.END) {
+                return
+            }
+            when (scanner.tagName) {
+                MappedXmlScanner.PACKAGE -> parsePackage(scanner, builder)
+                MappedXmlScanner.GROUP ->
+                    if (scanner.tagKind == MappedXmlScanner.START) parseGroupContent(scanner, builder, false)
+                MappedXmlScanner.COUNTER ->
+                    if (isReport) builder.addReportCounter(readCounter(scanner)) else scanner.skipElement()
+                else -> scanner.skipElement()
+            }
+        }
+        throw IllegalArgumentException("Unexpected end of XML document")
+    }
+
+    /**
+     * Parses the package at the current `<package>` tag into the builder
+     */
+    internal fun parsePackage(
+        scanner: MappedXmlScanner,
+        builder: CoverageReportBuilder,
+    ) {
+        if (!builder.startPackage(scanner.nameAttribute().orEmpty())) {
+            scanner.skipElement()
+            return
+        }
+
+        if (scanner.tagKind == MappedXmlScanner.START) {
+            while (scanner.nextTag() && scanner.tagKind != MappedXmlScanner.END) {
+                when (scanner.tagName) {
+                    MappedXmlScanner.CLASS -> parseClass(scanner, builder)
+                    MappedXmlScanner.COUNTER -> builder.addPackageCounter(readCounter(scanner))
+                    else -> scanner.skipElement()
+                }
+            }
+        }
+
+        builder.endPackage()
+    }
+
+    private fun parseClass(
+        scanner: MappedXmlScanner,
+        builder: CoverageReportBuilder,
+    ) {
+        val className = scanner.nameAttribute().orEmpty()
+        val sourceFilename = scanner.sourceFilenameAttribute()?.takeIf { it.isNotEmpty() }
+        if (!builder.startClass(className, sourceFilename)) {
+            scanner.skipElement()
+            return
+        }
+
+        if (scanner.tagKind == MappedXmlScanner.START) {
+            while (scanner.nextTag() && scanner.tagKind != MappedXmlScanner.END) {
+                when (scanner.tagName) {
+                    MappedXmlScanner.COUNTER -> builder.addClassCounter(readCounter(scanner))
+                    else -> scanner.skipElement()
+                }
+            }
+        }
+    }
+
+    private fun readCounter(scanner: MappedXmlScanner): CoverageCounter {
+        val counter = scanner.readCounter()
+        scanner.skipElement()
+        return counter
+    }
+}
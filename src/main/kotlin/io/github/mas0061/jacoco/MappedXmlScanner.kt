@@ -0,0 +1,541 @@
+package io.github.mas0061.jacoco
+
+import java.io.Closeable
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Tag-level scanner over a memory-mapped JaCoCo XML report
+ *
+ * The scanner works directly on the UTF-8 bytes and only knows the small fixed JaCoCo vocabulary.
+ * Element names are resolved to ids, counter types to shared string constants and counter values are
+ * parsed as integers without creating intermediate strings. It does not validate the document beyond
+ * what is needed to walk the JaCoCo structure.
+ *
+ * Files larger than [windowSize] are mapped in consecutive windows; a window always ends on a tag boundary.
+ *
+ * A window stays mapped, and on Windows keeps the report file locked, until it is unmapped. Each window is
+ * released through [DirectBuffers] when the scanner moves on and when it is closed, so scanners must be used
+ * with `use { }`. On JVMs where the cleaner is not accessible the mapping is left to the garbage collector.
+ */
+internal class MappedXmlScanner(
+    private val channel: FileChannel,
+    private val startOffset: Long = 0,
+    private val endOffset: Long = channel.size(),
+    private val windowSize: Long = DEFAULT_WINDOW_SIZE,
+) : Closeable {
+    companion object {
+        const val DEFAULT_WINDOW_SIZE = 512L * 1024 * 1024
+
+        const val START = 1
+        const val END = 2
+        const val EMPTY = 3
+
+        const val OTHER = 0
+        const val REPORT = 1
+        const val GROUP = 2
+        const val PACKAGE = 3
+        const val CLASS = 4
+        const val METHOD = 5
+        const val SOURCEFILE = 6
+        const val LINE = 7
+        const val COUNTER = 8
+
+        private val ELEMENT_NAMES =
+            arrayOf("", "report", "group", "package", "class", "method", "sourcefile", "line", "counter")
+                .map { it.toByteArray(Charsets.UTF_8) }
+        private val END_TAGS = ELEMENT_NAMES.map { "</${String(it, Charsets.UTF_8)}>".toByteArray(Charsets.UTF_8) }
+        private val COUNTER_TYPES = arrayOf("INSTRUCTION", "BRANCH", "LINE", "COMPLEXITY", "METHOD", "CLASS")
+        private val COUNTER_TYPE_BYTES = COUNTER_TYPES.map { it.toByteArray(Charsets.UTF_8) }
+
+        private val NAME = "name".toByteArray(Charsets.UTF_8)
+        private val SOURCE_FILENAME = "sourcefilename".toByteArray(Charsets.UTF_8)
+        private val TYPE = "type".toByteArray(Charsets.UTF_8)
+        private val MISSED = "missed".toByteArray(Charsets.UTF_8)
+        private val COVERED = "covered".toByteArray(Charsets.UTF_8)
+        private val NR = "nr".toByteArray(Charsets.UTF_8)
+        private val MI = "mi".toByteArray(Charsets.UTF_8)
+        private val CI = "ci".toByteArray(Charsets.UTF_8)
+        private val MB = "mb".toByteArray(Charsets.UTF_8)
+        private val CB = "cb".toByteArray(Charsets.UTF_8)
+
+        private const val LT = '<'.code.toByte()
+        private const val GT = '>'.code.toByte()
+        private const val SLASH = '/'.code.toByte()
+        private const val EQUALS = '='.code.toByte()
+        private const val QUOTE = '"'.code.toByte()
+        private const val APOSTROPHE = '\''.code.toByte()
+        private const val EXCLAMATION = '!'.code.toByte()
+        private const val QUESTION = '?'.code.toByte()
+        private const val OPEN_BRACKET = '['.code.toByte()
+        private const val CLOSE_BRACKET = ']'.code.toByte()
+        private const val AMPERSAND = '&'.code.toByte()
+        private const val ZERO = '0'.code.toByte()
+        private const val NINE = '9'.code.toByte()
+
+        private val PROCESSING_INSTRUCTION_END = "?>".toByteArray(Charsets.UTF_8)
+        private val COMMENT_START = "--".toByteArray(Charsets.UTF_8)
+        private val COMMENT_END = "-->".toByteArray(Charsets.UTF_8)
+        private val CDATA_START = "[CDATA[".toByteArray(Charsets.UTF_8)
+        private val CDATA_END = "]]>".toByteArray(Charsets.UTF_8)
+    }
+
+    private var buffer: MappedByteBuffer = map(startOffset)
+    private var windowStart = startOffset
+    private var windowLength = buffer.limit()
+    private var position = 0
+    private var scratch = ByteArray(256)
+
+    private var tagStart = 0
+    private var tagEnd = 0
+    private var nameEnd = 0
+
+    /** Kind of the current tag: [START], [END] or [EMPTY] */
+    var tagKind = 0
+        private set
+
+    /** Element id of the current tag, [OTHER] for names outside the JaCoCo vocabulary */
+    var tagName = OTHER
+        private set
+
+    /** File offset of the `<` of the current tag */
+    val tagOffset: Long get() = windowStart + tagStart
+
+    /** File offset just after the `>` of the current tag */
+    val tagEndOffset: Long get() = windowStart + tagEnd
+
+    /**
+     * Moves to the next element tag, skipping text, comments, processing instructions and the DOCTYPE.
+     * Returns false at the end of the scanned range.
+     */
+    fun nextTag(): Boolean {
+        while (true) {
+            val start = indexOf(LT, position)
+            if (start < 0) {
+                if (windowStart + windowLength >= endOffset) {
+                    position = windowLength
+                    return false
+                }
+                remap(windowStart + windowLength)
+                continue
+            }
+            val end = findTagEnd(start)
+            if (end < 0) {
+                require(windowStart + windowLength < endOffset && start > 0) {
+                    "Unexpected end of XML document at offset ${windowStart + start}"
+                }
+                remap(windowStart + start)
+                continue
+            }
+            position = end
+            if (isMarkup(start)) {
+                continue
+            }
+            setCurrentTag(start, end)
+            return true
+        }
+    }
+
+    /**
+     * Skips the children of the current start tag up to and including its end tag
+     */
+    fun skipElement() {
+        if (tagKind != START) {
+            return
+        }
+        var depth = 1
+        while (depth > 0 && nextTag()) {
+            when (tagKind) {
+                START -> depth++
+                END -> depth--
+            }
+        }
+        require(depth == 0) { "Unexpected end of XML document" }
+    }
+
+    /**
+     * Moves to the end tag of the current start tag by searching for its closing bytes only.
+     * Intended for elements that never nest, such as `<package>`, so no tags are tokenized on the way.
+     */
+    fun skipToEndTag() {
+        if (tagKind != START) {
+            return
+        }
+        val endTag = END_TAGS[tagName]
+        while (true) {
+            val end = findSequenceEnd(position, endTag)
+            if (end >= 0) {
+                tagStart = end - endTag.size
+                tagEnd = end
+                nameEnd = end - 1
+                tagKind = END
+                position = end
+                return
+            }
+            require(windowStart + windowLength < endOffset) { "Unexpected end of XML document" }
+            // Keep the last bytes so that an end tag crossing the window boundary is found
+            remap(windowStart + maxOf(position, windowLength - endTag.size + 1))
+        }
+    }
+
+    /** Decoded name of the current tag, used for error messages */
+    fun tagNameString(): String {
+        val nameStart = if (tagKind == END) tagStart + 2 else tagStart + 1
+        return decode(nameStart, nameEnd)
+    }
+
+    /** Value of the `name` attribute of the current tag */
+    fun nameAttribute(): String? = stringAttribute(NAME)
+
+    /** Value of the `sourcefilename` attribute of the current tag */
+    fun sourceFilenameAttribute(): String? = stringAttribute(SOURCE_FILENAME)
+
+    /**
+     * Returns the decoded value of an attribute of the current tag, or null when it is absent
+     */
+    fun stringAttribute(attributeName: ByteArray): String? {
+        var result: String? = null
+        forEachAttribute { nameStart, nameEndIndex, valueStart, valueEnd ->
+            if (result == null && regionEquals(nameStart, nameEndIndex, attributeName)) {
+                result = decode(valueStart, valueEnd)
+            }
+        }
+        return result
+    }
+
+    /**
+     * Reads the current `<counter>` tag in a single pass over its attributes
+     */
+    fun readCounter(): CoverageCounter {
+        var type = ""
+        var missed = -1
+        var covered = -1
+        forEachAttribute { nameStart, nameEndIndex, valueStart, valueEnd ->
+            when {
+                regionEquals(nameStart, nameEndIndex, TYPE) -> type = counterType(valueStart, valueEnd)
+                regionEquals(nameStart, nameEndIndex, MISSED) -> missed = parseCount(valueStart, valueEnd, MISSED)
+                regionEquals(nameStart, nameEndIndex, COVERED) -> covered = parseCount(valueStart, valueEnd, COVERED)
+            }
+        }
+        require(missed >= 0) { "Invalid missed value in counter: attribute is missing in ${tagText()}" }
+        require(covered >= 0) { "Invalid covered value in counter: attribute is missing in ${tagText()}" }
+        return CoverageCounter(type, missed, covered)
+    }
+
+    /**
+     * Reads the current `<line>` tag in a single pass over its attributes and hands it to [sink]
+     */
+    fun readLine(sink: LineRecordSink) {
+        var line = -1
+        var missedInstructions = 0
+        var coveredInstructions = 0
+        var missedBranches = 0
+        var coveredBranches = 0
+        forEachAttribute { nameStart, nameEndIndex, valueStart, valueEnd ->
+            when {
+                regionEquals(nameStart, nameEndIndex, NR) -> line = parseCount(valueStart, valueEnd, NR)
+                regionEquals(nameStart, nameEndIndex, MI) -> missedInstructions = parseCount(valueStart, valueEnd, MI)
+                regionEquals(nameStart, nameEndIndex, CI) -> coveredInstructions = parseCount(valueStart, valueEnd, CI)
+                regionEquals(nameStart, nameEndIndex, MB) -> missedBranches = parseCount(valueStart, valueEnd, MB)
+                regionEquals(nameStart, nameEndIndex, CB) -> coveredBranches = parseCount(valueStart, valueEnd, CB)
+            }
+        }
+        require(line >= 0) { "Invalid JaCoCo XML format: line without nr attribute" }
+        sink.addLine(line, missedInstructions, coveredInstructions, missedBranches, coveredBranches)
+    }
+
+    /**
+     * Parses a non-negative integer attribute value of the current tag, or returns -1 when it is absent
+     */
+    fun intAttribute(attributeName: ByteArray): Int {
+        var result = -1
+        forEachAttribute { nameStart, nameEndIndex, valueStart, valueEnd ->
+            if (regionEquals(nameStart, nameEndIndex, attributeName)) {
+                result = parseCount(valueStart, valueEnd, attributeName)
+            }
+        }
+        return result
+    }
+
+    /**
+     * Unmaps the current window. The scanner must not be used afterwards.
+     */
+    override fun close() {
+        DirectBuffers.release(buffer)
+    }
+
+    /** Raw text of the current tag, used for error messages */
+    private fun tagText(): String = decode(tagStart, tagEnd)
+
+    private inline fun forEachAttribute(action: (Int, Int, Int, Int) -> Unit) {
+        var index = nameEnd
+        val limit = tagEnd - 1
+        while (index < limit) {
+            val byte = buffer.get(index)
+            if (isWhitespace(byte) || byte == SLASH) {
+                index++
+                continue
+            }
+            val attributeNameStart = index
+            while (index < limit && buffer.get(index) != EQUALS && !isWhitespace(buffer.get(index))) {
+                index++
+            }
+            val attributeNameEnd = index
+            while (index < limit && buffer.get(index) != QUOTE && buffer.get(index) != APOSTROPHE) {
+                index++
+            }
+            if (index >= limit) {
+                return
+            }
+            val quote = buffer.get(index)
+            val valueStart = index + 1
+            index = valueStart
+            while (index < limit && buffer.get(index) != quote) {
+                index++
+            }
+            action(attributeNameStart, attributeNameEnd, valueStart, index)
+            index++
+        }
+    }
+
+    private fun setCurrentTag(
+        start: Int,
+        end: Int,
+    ) {
+        tagStart = start
+        tagEnd = end
+        val closing = buffer.get(start + 1) == SLASH
+        val nameStart = if (closing) start + 2 else start + 1
+        var index = nameStart
+        while (index < end - 1) {
+            val byte = buffer.get(index)
+            if (isWhitespace(byte) || byte == SLASH || byte == GT) {
+                break
+            }
+            index++
+        }
+        nameEnd = index
+        tagKind =
+            when {
+                closing -> END
+                buffer.get(end - 2) == SLASH -> EMPTY
+                else -> START
+            }
+        tagName = resolveElementName(nameStart, nameEnd)
+    }
+
+    private fun resolveElementName(
+        start: Int,
+        end: Int,
+    ): Int {
+        for (id in 1 until ELEMENT_NAMES.size) {
+            if (regionEquals(start, end, ELEMENT_NAMES[id])) {
+                return id
+            }
+        }
+        return OTHER
+    }
+
+    private fun counterType(
+        start: Int,
+        end: Int,
+    ): String {
+        for (i in COUNTER_TYPE_BYTES.indices) {
+            if (regionEquals(start, end, COUNTER_TYPE_BYTES[i])) {
+                return COUNTER_TYPES[i]
+            }
+        }
+        return decode(start, end)
+    }
+
+    private fun parseCount(
+        start: Int,
+        end: Int,
+        attributeName: ByteArray,
+    ): Int {
+        var value = 0L
+        var valid = end > start && end - start <= 10
+        var index = start
+        while (valid && index < end) {
+            val byte = buffer.get(index++)
+            valid = byte in ZERO..NINE
+            value = value * 10 + (byte - ZERO)
+        }
+        require(valid && value <= Int.MAX_VALUE) {
+            "Invalid ${String(attributeName, Charsets.UTF_8)} value in ${tagNameString()}: ${decode(start, end)}"
+        }
+        return value.toInt()
+    }
+
+    /**
+     * Returns true for comments, processing instructions, CDATA sections and the DOCTYPE
+     */
+    private fun isMarkup(start: Int): Boolean {
+        val next = buffer.get(start + 1)
+        return next == EXCLAMATION || next == QUESTION
+    }
+
+    /**
+     * Returns the index just after the end of the markup starting at [start], or -1 when it is not
+     * complete in the current window
+     */
+    private fun findTagEnd(start: Int): Int {
+        if (start + 1 >= windowLength) {
+            return -1
+        }
+        return when (buffer.get(start + 1)) {
+            QUESTION -> findSequenceEnd(start + 2, PROCESSING_INSTRUCTION_END)
+            EXCLAMATION ->
+                when {
+                    startsWith(start + 2, COMMENT_START) -> findSequenceEnd(start + 4, COMMENT_END)
+                    startsWith(start + 2, CDATA_START) -> findSequenceEnd(start + 2, CDATA_END)
+                    else -> findDeclarationEnd(start + 2)
+                }
+            else -> findElementTagEnd(start + 1)
+        }
+    }
+
+    private fun findElementTagEnd(from: Int): Int {
+        var quote: Byte = 0
+        for (index in from until windowLength) {
+            val byte = buffer.get(index)
+            when {
+                quote != 0.toByte() -> if (byte == quote) quote = 0
+                byte == QUOTE || byte == APOSTROPHE -> quote = byte
+                byte == GT -> return index + 1
+            }
+        }
+        return -1
+    }
+
+    private fun findDeclarationEnd(from: Int): Int {
+        var bracketDepth = 0
+        for (index in from until windowLength) {
+            when (buffer.get(index)) {
+                OPEN_BRACKET -> bracketDepth++
+                CLOSE_BRACKET -> bracketDepth--
+                GT -> if (bracketDepth <= 0) return index + 1
+            }
+        }
+        return -1
+    }
+
+    private fun findSequenceEnd(
+        from: Int,
+        sequence: ByteArray,
+    ): Int {
+        var index = from
+        while (index + sequence.size <= windowLength) {
+            if (startsWith(index, sequence)) {
+                return index + sequence.size
+            }
+            index++
+        }
+        return -1
+    }
+
+    private fun startsWith(
+        index: Int,
+        sequence: ByteArray,
+    ): Boolean {
+        if (index + sequence.size > windowLength) {
+            return false
+        }
+        for (i in sequence.indices) {
+            if (buffer.get(index + i) != sequence[i]) {
+                return false
+            }
+        }
+        return true
+    }
+
+    private fun indexOf(
+        byte: Byte,
+        from: Int,
+    ): Int {
+        for (index in from until windowLength) {
+            if (buffer.get(index) == byte) {
+                return index
+            }
+        }
+        return -1
+    }
+
+    private fun regionEquals(
+        start: Int,
+        end: Int,
+        expected: ByteArray,
+    ): Boolean {
+        if (end - start != expected.size) {
+            return false
+        }
+        for (i in expected.indices) {
+            if (buffer.get(start + i) != expected[i]) {
+                return false
+            }
+        }
+        return true
+    }
+
+    private fun decode(
+        start: Int,
+        end: Int,
+    ): String {
+        val length = end - start
+        if (scratch.size < length) {
+            scratch = ByteArray(maxOf(length, scratch.size * 2))
+        }
+        var hasEntity = false
+        for (i in 0 until length) {
+            val byte = buffer.get(start + i)
+            hasEntity = hasEntity || byte == AMPERSAND
+            scratch[i] = byte
+        }
+        val value = String(scratch, 0, length, Charsets.UTF_8)
+        return if (hasEntity) unescape(value) else value
+    }
+
+    private fun unescape(value: String): String {
+        val result = StringBuilder(value.length)
+        var index = 0
+        while (index < value.length) {
+            val semicolon = if (value[index] == '&') value.indexOf(';', index) else -1
+            if (semicolon < 0) {
+                result.append(value[index++])
+                continue
+            }
+            val entity = value.substring(index + 1, semicolon)
+            when {
+                entity == "lt" -> result.append('<')
+                entity == "gt" -> result.append('>')
+                entity == "amp" -> result.append('&')
+                entity == "quot" -> result.append('"')
+                entity == "apos" -> result.append('\'')
+                entity.startsWith("#x") -> result.appendCodePoint(entity.substring(2).toInt(16))
+                entity.startsWith("#") -> result.appendCodePoint(entity.substring(1).toInt())
+                else -> result.append('&').append(entity).append(';')
+            }
+            index = semicolon + 1
+        }
+        return result.toString()
+    }
+
+    private fun isWhitespace(byte: Byte): Boolean {
+        return byte == ' '.code.toByte() || byte == '\n'.code.toByte() ||
+            byte == '\r'.code.toByte() || byte == '\t'.code.toByte()
+    }
+
+    private fun remap(offset: Long) {
+        val previous = buffer
+        buffer = map(offset)
+        DirectBuffers.release(previous)
+        windowStart = offset
+        windowLength = buffer.limit()
+        position = 0
+    }
+
+    private fun map(offset: Long): MappedByteBuffer {
+        val length = minOf(windowSize, endOffset - offset, Int.MAX_VALUE.toLong())
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length)
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.mas0061.jacoco
+
+import java.io.File
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Loads the complete reports of several modules through the snapshot cache
+ *
+ * The reports are loaded concurrently by [ConcurrentReportLoader]. A report that is unchanged since its snapshot
+ * was written is read from the snapshot; a changed report is parsed with [parse], and the parsed report is both
+ * returned and stored as the new snapshot, so it is never read back from disk. With a [sharedCache], reports that
+ * another task of the same build already loaded are taken from memory.
+ */
+internal class ModuleReportLoader(
+    private val snapshotCache: CoverageReportCache,
+    private val sharedCache: ParsedReportCache?,
+    private val parse: (File) -> CoverageReport,
+) {
+    private val parsed = AtomicInteger()
+
+    /**
+     * Number of reports parsed so far, as opposed to read from a snapshot or from the shared cache
+     */
+    val parsedCount: Int
+        get() = parsed.get()
+
+    /**
+     * Returns the complete reports in the order of [reportFiles]
+     */
+    fun load(reportFiles: List<File>): List<CoverageReport> {
+        return ConcurrentReportLoader.load(reportFiles) { reportFile ->
+            val load = {
+                snapshotCache.load(reportFile) { file ->
+                    parsed.incrementAndGet()
+                    parse(file)
+                }
+            }
+            sharedCache?.getOrLoad(ParsedReportKey(ReportFingerprint.of(reportFile)), load) ?: load()
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.mas0061.jacoco
+
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
+import org.gradle.workers.WorkAction
+import org.gradle.workers.WorkParameters
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.io.FileOutputStream
+
+/**
+ * Worker API action that parses the XML report of one module and writes it as a binary snapshot
+ *
+ * Without the report cache, the aggregation task submits one action per module, so Gradle parses the reports
+ * concurrently on its worker threads. Work actions cannot return values; the filtered report is written to
+ * [Parameters.snapshotFile] and the task reads it back once all actions have finished. The Worker API in this
+ * form requires Gradle 5.6.
+ */
+abstract class ModuleReportParseAction : WorkAction<ModuleReportParseAction.Parameters> {
+    interface Parameters : WorkParameters {
+        val reportFile: RegularFileProperty
+        val targetClasses: ListProperty<String>
+        val xmlParser: Property<String>
+        val snapshotFile: RegularFileProperty
+    }
+
+    override fun execute() {
+        val parser = XmlParserBackend.fromOptionValue(parameters.xmlParser.get()).createParser()
+        val reportFile = parameters.reportFile.get().asFile
+        val report = parser.parse(reportFile, TargetClassMatcher(parameters.targetClasses.get()))
+
+        val snapshotFile = parameters.snapshotFile.get().asFile
+        snapshotFile.parentFile?.mkdirs()
+        DataOutputStream(BufferedOutputStream(FileOutputStream(snapshotFile))).use { output ->
+            CoverageReportSnapshot.write(report, output)
+        }
+    }
+}
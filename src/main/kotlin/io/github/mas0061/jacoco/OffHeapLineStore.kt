@@ -0,0 +1,275 @@
+package io.github.mas0061.jacoco
+
+import java.io.Closeable
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.util.Locale
+
+/**
+ * Line records of a report kept outside the Java heap
+ *
+ * Every `<line>` element becomes a fixed-size record of five ints (`nr`, `mi`, `ci`, `mb`, `cb`) written into
+ * chunks of direct byte buffers or of a memory-mapped temporary file. Only the source file index lives on the
+ * heap: for each file its package and file name, the number of its first record and its record count. A report
+ * with ten million lines therefore adds about 200 MB outside the heap and a few bytes per source file inside it.
+ *
+ * The store is filled through [LineRecordSink] by [XmlReportParser.readLineRecords]. The line summary is counted
+ * from the records in place; only single source files are turned into heap line sets, e.g. to merge a file that
+ * appears in several reports. The store must be closed to release its buffers and the temporary file of the
+ * mapped storage.
+ */
+internal class OffHeapLineStore private constructor(
+    private val storage: LineStorage,
+    private val mappedFile: File?,
+) : LineRecordSink, Closeable {
+    private val channel = mappedFile?.let { RandomAccessFile(it, "rw").channel }
+    private val chunks = ArrayList<ByteBuffer>()
+    private val packageNames = ArrayList<String>()
+    private val fileNames = ArrayList<String>()
+    private val internedPackageNames = HashMap<String, String>()
+    private var firstRecords = LongArray(INITIAL_FILE_CAPACITY)
+    private var recordCounts = IntArray(INITIAL_FILE_CAPACITY)
+    private val filesByPath by lazy { (0 until fileCount).associateBy { path(it) } }
+
+    /** Number of line records in the store */
+    var lineCount = 0L
+        private set
+
+    val fileCount: Int get() = fileNames.size
+
+    /** Bytes of the buffers taken by line records */
+    val offHeapBytesUsed: Long get() = lineCount * RECORD_BYTES
+
+    /** Bytes of all allocated buffers, including the unused end of the last chunk */
+    val offHeapBytesReserved: Long get() = chunks.size.toLong() * CHUNK_BYTES
+
+    /**
+     * Estimated heap size of the source file index: the offset and count arrays, the name lists and the
+     * name strings, counted with two bytes per character. The buffer objects themselves are included.
+     */
+    val onHeapBytes: Long
+        get() {
+            val arrays =
+                ARRAY_HEADER_BYTES * 2 + firstRecords.size * Long.SIZE_BYTES + recordCounts.size * Int.SIZE_BYTES
+            val lists = (packageNames.size + fileNames.size + chunks.size) * REFERENCE_BYTES
+            val strings = (internedPackageNames.values.asSequence() + fileNames.asSequence()).sumOf { stringBytes(it) }
+            return arrays + lists + strings + chunks.size * BUFFER_OBJECT_BYTES
+        }
+
+    fun packageName(file: Int): String = packageNames[file]
+
+    fun fileName(file: Int): String = fileNames[file]
+
+    fun lineCount(file: Int): Int = recordCounts[file]
+
+    fun path(file: Int): String =
+        if (packageNames[file].isEmpty()) fileNames[file] else "${packageNames[file]}/${fileNames[file]}"
+
+    /**
+     * Returns the index of the source file with the given package path and file name, or -1
+     */
+    fun fileIndex(path: String): Int = filesByPath[path] ?: -1
+
+    override fun startFile(
+        packageName: String,
+        fileName: String,
+    ) {
+        val file = fileNames.size
+        if (file == firstRecords.size) {
+            firstRecords = firstRecords.copyOf(file * 2)
+            recordCounts = recordCounts.copyOf(file * 2)
+        }
+        packageNames.add(internedPackageNames.getOrPut(packageName) { packageName })
+        fileNames.add(fileName)
+        firstRecords[file] = lineCount
+        recordCounts[file] = 0
+    }
+
+    override fun addLine(
+        line: Int,
+        missedInstructions: Int,
+        coveredInstructions: Int,
+        missedBranches: Int,
+        coveredBranches: Int,
+    ) {
+        val chunkIndex = (lineCount / RECORDS_PER_CHUNK).toInt()
+        if (chunkIndex == chunks.size) {
+            chunks.add(allocateChunk(chunkIndex))
+        }
+        val offset = (lineCount % RECORDS_PER_CHUNK).toInt() * RECORD_BYTES
+        chunks[chunkIndex]
+            .putInt(offset, line)
+            .putInt(offset + 4, missedInstructions)
+            .putInt(offset + 8, coveredInstructions)
+            .putInt(offset + 12, missedBranches)
+            .putInt(offset + 16, coveredBranches)
+        lineCount++
+        recordCounts[fileNames.size - 1]++
+    }
+
+    override fun endFile() {
+        // Records are written as they arrive; the file index entry is complete already
+    }
+
+    /**
+     * Hands the records of one source file to [sink] in report order
+     */
+    fun replay(
+        file: Int,
+        sink: LineRecordSink,
+    ) {
+        sink.startFile(packageNames[file], fileNames[file])
+        val first = firstRecords[file]
+        for (record in first until first + recordCounts[file]) {
+            val chunk = chunks[(record / RECORDS_PER_CHUNK).toInt()]
+            val offset = (record % RECORDS_PER_CHUNK).toInt() * RECORD_BYTES
+            sink.addLine(
+                chunk.getInt(offset),
+                chunk.getInt(offset + 4),
+                chunk.getInt(offset + 8),
+                chunk.getInt(offset + 12),
+                chunk.getInt(offset + 16),
+            )
+        }
+        sink.endFile()
+    }
+
+    /**
+     * Counts the lines of one source file by state, reading the records in place
+     */
+    fun counts(file: Int): LineCounts {
+        var fullyCovered = 0L
+        var partlyCovered = 0L
+        var missed = 0L
+        val first = firstRecords[file]
+        for (record in first until first + recordCounts[file]) {
+            val chunk = chunks[(record / RECORDS_PER_CHUNK).toInt()]
+            val offset = (record % RECORDS_PER_CHUNK).toInt() * RECORD_BYTES
+            val status =
+                LineCoverage.lineStatus(
+                    chunk.getInt(offset + 4),
+                    chunk.getInt(offset + 8),
+                    chunk.getInt(offset + 12),
+                    chunk.getInt(offset + 16),
+                )
+            when (status) {
+                LineCoverage.FULLY_COVERED -> fullyCovered++
+                LineCoverage.PARTLY_COVERED -> partlyCovered++
+                LineCoverage.NOT_COVERED -> missed++
+            }
+        }
+        return LineCounts(1, fullyCovered, partlyCovered, missed)
+    }
+
+    /**
+     * Counts the lines of all source files by state
+     */
+    fun counts(): LineCounts = (0 until fileCount).fold(LineCounts.NONE) { counts, file -> counts + counts(file) }
+
+    /**
+     * Converts the records of one source file into the run-length encoded line sets of [SourceFileLines]
+     */
+    fun lines(file: Int): SourceFileLines {
+        val collector = LineCoverageCollector()
+        replay(file, collector)
+        return collector.build().files.single()
+    }
+
+    /**
+     * One-line summary of the memory used by the store, e.g. for the build log
+     */
+    fun memoryReport(): String {
+        val location = if (storage == LineStorage.MAPPED) "memory-mapped temporary file" else "direct buffers"
+        return "$lineCount lines of $fileCount source files: " +
+            "${formatBytes(onHeapBytes)} on-heap (source file index), " +
+            "${formatBytes(offHeapBytesUsed)} off-heap in $location (${formatBytes(offHeapBytesReserved)} reserved)"
+    }
+
+    /**
+     * Frees the direct buffers or unmaps the chunks right away and deletes the temporary file of the mapped
+     * storage. A mapped file stays locked on Windows until it is unmapped, so the chunks are released first.
+     */
+    override fun close() {
+        chunks.forEach { DirectBuffers.release(it) }
+        chunks.clear()
+        channel?.close()
+        if (mappedFile != null) {
+            Files.deleteIfExists(mappedFile.toPath())
+        }
+    }
+
+    private fun allocateChunk(chunkIndex: Int): ByteBuffer {
+        return if (channel == null) {
+            ByteBuffer.allocateDirect(CHUNK_BYTES)
+        } else {
+            channel.map(FileChannel.MapMode.READ_WRITE, chunkIndex.toLong() * CHUNK_BYTES, CHUNK_BYTES.toLong())
+        }
+    }
+
+    companion object {
+        /** Bytes of one line record: `nr`, `mi`, `ci`, `mb` and `cb` as ints */
+        const val RECORD_BYTES = 20
+        const val RECORDS_PER_CHUNK = 1 shl 16
+        const val CHUNK_BYTES = RECORD_BYTES * RECORDS_PER_CHUNK
+
+        private const val INITIAL_FILE_CAPACITY = 64
+        private const val ARRAY_HEADER_BYTES = 16L
+        private const val REFERENCE_BYTES = 8L
+        private const val STRING_OBJECT_BYTES = 56L
+        private const val BUFFER_OBJECT_BYTES = 64L
+
+        /**
+         * Creates an empty store; [temporaryDirectory] holds the backing file of the mapped storage
+         */
+        fun open(
+            storage: LineStorage,
+            temporaryDirectory: File,
+        ): OffHeapLineStore {
+            return when (storage) {
+                LineStorage.DIRECT -> OffHeapLineStore(storage, null)
+                LineStorage.MAPPED -> {
+                    temporaryDirectory.mkdirs()
+                    OffHeapLineStore(storage, File.createTempFile("lines", ".bin", temporaryDirectory))
+                }
+            }
+        }
+
+        /**
+         * Counts the lines of several stores by state, keeping the best state of each line like [LineCoverage.merge].
+         * Source files found in only one store are counted in place; the others are merged one file at a time.
+         */
+        fun countMerged(stores: List<OffHeapLineStore>): LineCounts {
+            if (stores.size == 1) {
+                return stores[0].counts()
+            }
+            val paths = LinkedHashSet<String>()
+            for (store in stores) {
+                (0 until store.fileCount).mapTo(paths) { store.path(it) }
+            }
+            var counts = LineCounts.NONE
+            for (path in paths) {
+                val files = stores.mapNotNull { store -> store.fileIndex(path).takeIf { it >= 0 }?.let { store to it } }
+                counts +=
+                    if (files.size == 1) {
+                        files[0].first.counts(files[0].second)
+                    } else {
+                        files.map { (store, file) -> store.lines(file) }.reduce(SourceFileLines::merge).counts()
+                    }
+            }
+            return counts
+        }
+
+        private fun stringBytes(value: String): Long = STRING_OBJECT_BYTES + value.length * 2L
+
+        internal fun formatBytes(bytes: Long): String {
+            return when {
+                bytes >= 1 shl 20 -> String.format(Locale.ROOT, "%.1f MiB", bytes / 1048576.0)
+                bytes >= 1 shl 10 -> String.format(Locale.ROOT, "%.1f KiB", bytes / 1024.0)
+                else -> "$bytes B"
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package io.github.mas0061.jacoco
+
+import java.io.File
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * CSVレポートを行の先頭で区切った範囲に分割し、範囲ごとに並列でパースするクラス
+ *
+ * JaCoCoのCSVには複数行にまたがるクォート値が現れないため、改行の直後で安全に分割できる。
+ * 各範囲はメモリマップして読み込み、結果はファイルの順序で結合する。
+ * エラーメッセージの行番号は、先行する範囲の行数を足し合わせて物理的な行番号に補正する。
+ */
+internal class ParallelCsvReader(
+    private val parser: CsvReportParser,
+    private val parallelism: Int,
+) {
+    companion object {
+        private const val CHUNKS_PER_THREAD = 4
+        private const val MAX_CHUNK_SIZE = 256L * 1024 * 1024
+        private const val BOUNDARY_SEARCH_SIZE = 4096
+        private const val LINE_FEED = '\n'.code.toByte()
+    }
+
+    /**
+     * 範囲ごとのパース結果。失敗した場合は、範囲内の相対的な行番号を含む例外を保持する
+     */
+    private class ChunkResult(
+        val rows: List<CoverageRow>,
+        val lineCount: Int,
+        val failure: IllegalArgumentException?,
+    )
+
+    fun read(csvFile: File): List<CoverageRow> {
+        return FileChannel.open(csvFile.toPath(), StandardOpenOption.READ).use { channel ->
+            val boundaries = splitAtLineStarts(channel)
+            val results = parseChunks(channel, boundaries, csvFile)
+            mergeResults(results, csvFile)
+        }
+    }
+
+    /**
+     * ファイルを同程度の大きさの範囲に分割し、各範囲の開始位置を改行の直後に揃える
+     */
+    private fun splitAtLineStarts(channel: FileChannel): List<Long> {
+        val size = channel.size()
+        val chunkCount = maxOf(parallelism * CHUNKS_PER_THREAD.toLong(), (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE)
+        val chunkSize = maxOf(1L, size / chunkCount)
+
+        val boundaries = mutableListOf(0L)
+        var target = chunkSize
+        while (target < size) {
+            val lineStart = findNextLineStart(channel, maxOf(target, boundaries.last() + 1))
+            if (lineStart >= size) {
+                break
+            }
+            boundaries.add(lineStart)
+            target = lineStart + chunkSize
+        }
+        boundaries.add(size)
+        return boundaries
+    }
+
+    private fun findNextLineStart(
+        channel: FileChannel,
+        from: Long,
+    ): Long {
+        val buffer = ByteBuffer.allocate(BOUNDARY_SEARCH_SIZE)
+        var position = from
+        while (true) {
+            buffer.clear()
+            val read = channel.read(buffer, position)
+            if (read <= 0) {
+                return channel.size()
+            }
+            for (index in 0 until read) {
+                if (buffer.get(index) == LINE_FEED) {
+                    return position + index + 1
+                }
+            }
+            position += read
+        }
+    }
+
+    private fun parseChunks(
+        channel: FileChannel,
+        boundaries: List<Long>,
+        csvFile: File,
+    ): List<ChunkResult> {
+        val pool = ForkJoinPool(parallelism)
+        try {
+            val futures =
+                (0 until boundaries.size - 1).map { index ->
+                    pool.submit(
+                        Callable {
+                            parseChunk(channel, boundaries[index], boundaries[index + 1], index == 0, csvFile)
+                        },
+                    )
+                }
+            return futures.map { future ->
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause as? IllegalArgumentException ?: IllegalStateException("Failed to parse CSV file", e)
+                }
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    private fun parseChunk(
+        channel: FileChannel,
+        start: Long,
+        end: Long,
+        isFirstChunk: Boolean,
+        csvFile: File,
+    ): ChunkResult {
+        val buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)
+        // 常駐するデーモンでGCまでマップが残ると、Windowsでは次のレポート生成がファイルを上書きできないため、すぐに解放する
+        try {
+            val lineReader = CsvLineReader(ByteBufferInputStream(buffer).reader())
+            if (isFirstChunk) {
+                parser.readHeader(lineReader, csvFile)
+            }
+
+            val rows = mutableListOf<CoverageRow>()
+            return try {
+                parser.readRows(lineReader, csvFile.name) { rows.add(it) }
+                ChunkResult(rows, lineReader.lineNumber, null)
+            } catch (e: IllegalArgumentException) {
+                ChunkResult(rows, lineReader.lineNumber, e)
+            }
+        } finally {
+            DirectBuffers.release(buffer)
+        }
+    }
+
+    /**
+     * 範囲ごとの結果をファイルの順序で結合する。最初に失敗した範囲の例外を物理的な行番号で投げ直す
+     */
+    private fun mergeResults(
+        results: List<ChunkResult>,
+        csvFile: File,
+    ): List<CoverageRow> {
+        val rows = ArrayList<CoverageRow>(results.sumOf { it.rows.size })
+        var lineOffset = 0
+        for (result in results) {
+            val failure = result.failure
+            if (failure != null) {
+                val cause = failure.cause as? NumberFormatException ?: throw failure
+                throw IllegalArgumentException(
+                    "Failed to parse line ${lineOffset + result.lineCount} in ${csvFile.name}: ${cause.message}",
+                    cause,
+                )
+            }
+            rows.addAll(result.rows)
+            lineOffset += result.lineCount
+        }
+        return rows
+    }
+
+    /**
+     * メモリマップした範囲を読み込むストリーム
+     */
+    private class ByteBufferInputStream(private val buffer: ByteBuffer) : InputStream() {
+        override fun read(): Int = if (buffer.hasRemaining()) buffer.get().toInt() and 0xFF else -1
+
+        override fun read(
+            bytes: ByteArray,
+            offset: Int,
+            length: Int,
+        ): Int {
+            if (!buffer.hasRemaining()) {
+                return -1
+            }
+            val count = minOf(length, buffer.remaining())
+            buffer.get(bytes, offset, count)
+            return count
+        }
+    }
+}
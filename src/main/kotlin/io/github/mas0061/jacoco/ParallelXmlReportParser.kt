@@ -0,0 +1,180 @@
+package io.github.mas0061.jacoco
+
+import java.io.File
+import java.io.IOException
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * JaCoCo XML report parser backend that parses the top-level packages concurrently
+ *
+ * A first pass over the memory-mapped report only looks for the byte ranges of the `<package>` elements
+ * and reads the report-level counters. The package ranges are then split into contiguous batches that
+ * are parsed on a fork-join pool, and the results are merged in document order. The counters are
+ * identical to those of the sequential parsers.
+ */
+class ParallelXmlReportParser internal constructor(
+    private val parallelism: Int,
+    private val windowSize: Long,
+) : CoverageReportParser {
+    constructor(parallelism: Int = Runtime.getRuntime().availableProcessors()) :
+        this(parallelism, MappedXmlScanner.DEFAULT_WINDOW_SIZE)
+
+    companion object {
+        private const val BATCHES_PER_THREAD = 4
+    }
+
+    private val packageParser = MappedXmlReportParser(windowSize)
+
+    init {
+        require(parallelism > 0) { "Parallelism must be positive: $parallelism" }
+    }
+
+    /**
+     * Result of the boundary scan: the report attributes and the byte range of every package
+     */
+    private class ReportLayout(
+        val name: String,
+        val counters: Map<String, CoverageCounter>,
+        val packageStarts: List<Long>,
+        val packageEnds: List<Long>,
+    )
+
+    override fun parse(
+        xmlFile: File,
+        matcher: TargetClassMatcher?,
+    ): CoverageReport {
+        CoverageReportParser.validateFileAccess(xmlFile)
+
+        return try {
+            FileChannel.open(xmlFile.toPath(), StandardOpenOption.READ).use { channel ->
+                val layout = MappedXmlScanner(channel, windowSize = windowSize).use { scanLayout(it) }
+                val packages = parsePackages(channel, layout, matcher)
+                val counters =
+                    if (matcher == null || matcher.isEmpty) {
+                        layout.counters
+                    } else {
+                        CoverageCounter.aggregate(packages.map { it.counters })
+                    }
+                CoverageReport(layout.name, packages, counters)
+            }
+        } catch (e: IOException) {
+            throw IllegalArgumentException("Failed to read XML file: ${xmlFile.name}", e)
+        }
+    }
+
+    private fun scanLayout(scanner: MappedXmlScanner): ReportLayout {
+        require(scanner.nextTag() && scanner.tagKind != MappedXmlScanner.END) {
+            "Invalid JaCoCo XML format: no root element found"
+        }
+        require(scanner.tagName == MappedXmlScanner.REPORT) {
+            "Invalid JaCoCo XML format: root element should be 'report', found '${scanner.tagNameString()}'"
+        }
+
+        val reportName = scanner.nameAttribute().orEmpty()
+        val counters = mutableMapOf<String, CoverageCounter>()
+        val packageStarts = mutableListOf<Long>()
+        val packageEnds = mutableListOf<Long>()
+        var groupDepth = 0
+        var reportEnded = scanner.tagKind == MappedXmlScanner.EMPTY
+
+        while (!reportEnded && scanner.nextTag()) {
+            when {
+                scanner.tagKind == MappedXmlScanner.END -> if (groupDepth-- == 0) reportEnded = true
+                scanner.tagName == MappedXmlScanner.PACKAGE -> {
+                    packageStarts.add(scanner.tagOffset)
+                    scanner.skipToEndTag()
+                    packageEnds.add(scanner.tagEndOffset)
+                }
+                scanner.tagName == MappedXmlScanner.GROUP ->
+                    if (scanner.tagKind == MappedXmlScanner.START) groupDepth++
+                scanner.tagName == MappedXmlScanner.COUNTER && groupDepth == 0 -> {
+                    val counter = scanner.readCounter()
+                    counters[counter.type] = counter
+                    scanner.skipElement()
+                }
+                else -> scanner.skipElement()
+            }
+        }
+        require(reportEnded) { "Unexpected end of XML document" }
+
+        return ReportLayout(reportName, counters, packageStarts, packageEnds)
+    }
+
+    private fun parsePackages(
+        channel: FileChannel,
+        layout: ReportLayout,
+        matcher: TargetClassMatcher?,
+    ): List<CoveragePackage> {
+        val batches = splitIntoBatches(layout)
+        if (batches.size <= 1 || parallelism == 1) {
+            return batches.flatMap { parseBatch(channel, layout, it, matcher) }
+        }
+
+        val pool = ForkJoinPool(parallelism)
+        try {
+            val futures =
+                batches.map { batch ->
+                    pool.submit(Callable { parseBatch(channel, layout, batch, matcher) })
+                }
+            return futures.flatMap { future ->
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause as? IllegalArgumentException ?: IllegalStateException("Failed to parse packages", e)
+                }
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    /**
+     * Groups consecutive packages into batches of roughly equal byte size
+     */
+    private fun splitIntoBatches(layout: ReportLayout): List<IntRange> {
+        val packageCount = layout.packageStarts.size
+        if (packageCount == 0) {
+            return emptyList()
+        }
+        val totalBytes = layout.packageEnds.last() - layout.packageStarts.first()
+        val batchBytes = maxOf(1L, totalBytes / (parallelism * BATCHES_PER_THREAD))
+
+        val batches = mutableListOf<IntRange>()
+        var first = 0
+        for (index in 0 until packageCount) {
+            val isLast = index == packageCount - 1
+            if (isLast || layout.packageEnds[index] - layout.packageStarts[first] >= batchBytes) {
+                batches.add(first..index)
+                first = index + 1
+            }
+        }
+        return batches
+    }
+
+    private fun parseBatch(
+        channel: FileChannel,
+        layout: ReportLayout,
+        batch: IntRange,
+        matcher: TargetClassMatcher?,
+    ): List<CoveragePackage> {
+        val builder = CoverageReportBuilder(matcher)
+        MappedXmlScanner(
+            channel,
+            startOffset = layout.packageStarts[batch.first],
+            endOffset = layout.packageEnds[batch.last],
+            windowSize = windowSize,
+        ).use { scanner ->
+            // Group tags and counters between the packages of a batch are passed over
+            while (scanner.nextTag()) {
+                if (scanner.tagName == MappedXmlScanner.PACKAGE && scanner.tagKind != MappedXmlScanner.END) {
+                    packageParser.parsePackage(scanner, builder)
+                }
+            }
+        }
+        return builder.packageList
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.mas0061.jacoco
+
+import java.lang.ref.SoftReference
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.FutureTask
+
+/**
+ * Identifies a parsed report by its file and the target class patterns applied while parsing it.
+ * An empty pattern list stands for the complete report.
+ */
+internal data class ParsedReportKey(
+    val fingerprint: ReportFingerprint,
+    val targetClasses: List<String> = emptyList(),
+)
+
+/**
+ * Bounded in-memory cache of parsed reports keyed by [ParsedReportKey]
+ *
+ * The least recently used report is evicted when more than [maxEntries] reports are cached. Reports are
+ * held through soft references, so the garbage collector can still reclaim them under memory pressure.
+ */
+internal class ParsedReportCache(private val maxEntries: Int) {
+    private val entries =
+        object : LinkedHashMap<ParsedReportKey, SoftReference<CoverageReport>>(16, 0.75f, true) {
+            override fun removeEldestEntry(
+                eldest: MutableMap.MutableEntry<ParsedReportKey, SoftReference<CoverageReport>>?,
+            ) = size > maxEntries
+        }
+
+    /** Loads in progress; callers asking for the same key wait for the running load */
+    private val loading = HashMap<ParsedReportKey, FutureTask<CoverageReport>>()
+
+    init {
+        require(maxEntries > 0) { "Cache size must be positive: $maxEntries" }
+    }
+
+    val size: Int
+        @Synchronized get() = entries.size
+
+    @Synchronized
+    fun get(key: ParsedReportKey): CoverageReport? {
+        val report = entries[key]?.get()
+        if (report == null) {
+            entries.remove(key)
+        }
+        return report
+    }
+
+    @Synchronized
+    fun put(
+        key: ParsedReportKey,
+        report: CoverageReport,
+    ) {
+        entries[key] = SoftReference(report)
+    }
+
+    /**
+     * Returns the cached report, or loads and caches it
+     *
+     * The report is loaded outside the lock, but only once per key: concurrent callers asking for a key that is
+     * being loaded wait for that load and share its result or its failure. A failed load is not cached.
+     */
+    fun getOrLoad(
+        key: ParsedReportKey,
+        load: () -> CoverageReport,
+    ): CoverageReport {
+        val task: FutureTask<CoverageReport>
+        val isOwner: Boolean
+        synchronized(this) {
+            get(key)?.let { return it }
+            val running = loading[key]
+            isOwner = running == null
+            task = running ?: FutureTask(load).also { loading[key] = it }
+        }
+
+        if (isOwner) {
+            task.run()
+            synchronized(this) {
+                loading.remove(key)
+                try {
+                    put(key, task.get())
+                } catch (ignored: ExecutionException) {
+                    // Failed loads are not cached; the failure is rethrown below
+                }
+            }
+        }
+        try {
+            return task.get()
+        } catch (e: ExecutionException) {
+            throw e.cause as? RuntimeException ?: IllegalStateException("Failed to load report", e.cause)
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.mas0061.jacoco
+
+import java.io.File
+import java.io.PrintStream
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.FutureTask
+
+/**
+ * Prints class rows while the XML report is still being parsed
+ *
+ * A parser thread reads the report with the streaming parser and puts every selected class into a bounded
+ * queue; the calling thread takes the classes off the queue and prints them in document order. The buffered
+ * output is flushed whenever the queue runs empty, so the first rows appear as soon as they are parsed.
+ * Neither side retains classes, so memory use does not grow with the number of classes. The project total
+ * and the package summaries are only known at the end of the report and are printed in a trailing section.
+ *
+ * The table header is printed with the first class. When no class is selected, the same message as the
+ * regular renderer path is printed instead of an empty table.
+ */
+internal class PipelinedReportRenderer(
+    private val queueCapacity: Int = DEFAULT_QUEUE_CAPACITY,
+) {
+    companion object {
+        private const val DEFAULT_QUEUE_CAPACITY = 1024
+        private const val PARSER_THREAD_NAME = "jacoco-coverage-console-parser"
+        private const val NO_DATA_MESSAGE = "No coverage data found in the XML report."
+        private const val NO_MATCHING_DATA_MESSAGE = "No coverage data found for the specified criteria."
+    }
+
+    /** Message from the parser thread to the render thread */
+    private sealed class Message {
+        class ClassParsed(val clazz: CoverageClass) : Message()
+
+        /** The parser has finished, successfully or not; the outcome is read from its task */
+        object Finished : Message()
+    }
+
+    fun render(
+        xmlFile: File,
+        matcher: TargetClassMatcher?,
+        showTotal: Boolean,
+        showPackageSummary: Boolean,
+        out: PrintStream = System.out,
+    ) {
+        val queue = ArrayBlockingQueue<Message>(queueCapacity)
+        val parseTask = createParseTask(queue, xmlFile, matcher)
+        val parserThread = Thread(parseTask, PARSER_THREAD_NAME)
+        parserThread.isDaemon = true
+        parserThread.start()
+
+        val writer = ConsoleTableWriter(out)
+        try {
+            val first = nextMessage(writer, queue)
+            if (first == Message.Finished) {
+                // Rethrows parse errors before reporting that nothing was found
+                parseResult(parseTask)
+                writer.line(if (matcher == null || matcher.isEmpty) NO_DATA_MESSAGE else NO_MATCHING_DATA_MESSAGE)
+                return
+            }
+
+            writer.blankLine()
+            writer.rule('=')
+            writer.line("JaCoCo Coverage Report")
+            writer.rule('=')
+            writer.tableHeader()
+            writer.rule('-')
+
+            val report = printClassRows(writer, queue, parseTask, first)
+
+            writer.rule('-')
+            if (showTotal) {
+                writer.name("PROJECT TOTAL")
+                printCoverage(writer, report.counters)
+            }
+            if (showPackageSummary && report.packages.size > 1) {
+                for (pkg in report.packages.sortedBy { it.displayName }) {
+                    writer.name(pkg.displayName).name(" (package)")
+                    printCoverage(writer, pkg.counters)
+                }
+            }
+            writer.rule('-')
+            writer.blankLine()
+        } finally {
+            writer.flush()
+            // Stops the parser when rendering failed; it may be blocked on the full queue
+            parseTask.cancel(true)
+        }
+    }
+
+    private fun createParseTask(
+        queue: BlockingQueue<Message>,
+        xmlFile: File,
+        matcher: TargetClassMatcher?,
+    ): FutureTask<CoverageReport> {
+        val parse =
+            Callable {
+                XmlReportParser().parseStreaming(xmlFile, matcher) { queue.put(Message.ClassParsed(it)) }
+            }
+        return object : FutureTask<CoverageReport>(parse) {
+            override fun done() {
+                if (isCancelled) {
+                    return
+                }
+                try {
+                    queue.put(Message.Finished)
+                } catch (ignored: InterruptedException) {
+                    // The render thread has already given up
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints the classes, starting with [first], as they arrive and returns the report once the parser has finished
+     */
+    private fun printClassRows(
+        writer: ConsoleTableWriter,
+        queue: BlockingQueue<Message>,
+        parseTask: FutureTask<CoverageReport>,
+        first: Message,
+    ): CoverageReport {
+        var message = first
+        while (true) {
+            when (message) {
+                is Message.ClassParsed -> {
+                    writer.name("  ").name(message.clazz.fullName)
+                    printCoverage(writer, message.clazz.counters)
+                }
+                Message.Finished -> return parseResult(parseTask)
+            }
+            message = nextMessage(writer, queue)
+        }
+    }
+
+    private fun nextMessage(
+        writer: ConsoleTableWriter,
+        queue: BlockingQueue<Message>,
+    ): Message {
+        return queue.poll() ?: run {
+            // Nothing parsed yet: show what has been printed so far before waiting
+            writer.flush()
+            queue.take()
+        }
+    }
+
+    private fun parseResult(parseTask: FutureTask<CoverageReport>): CoverageReport {
+        try {
+            return parseTask.get()
+        } catch (e: ExecutionException) {
+            throw e.cause as? IllegalArgumentException ?: IllegalStateException("Failed to parse XML report", e)
+        }
+    }
+
+    private fun printCoverage(
+        writer: ConsoleTableWriter,
+        counters: Map<String, CoverageCounter>,
+    ) {
+        writer.coverage(
+            CoverageCounter.missedCount(counters, CounterType.INSTRUCTION),
+            CoverageCounter.coveredCount(counters, CounterType.INSTRUCTION),
+            CoverageCounter.missedCount(counters, CounterType.BRANCH),
+            CoverageCounter.coveredCount(counters, CounterType.BRANCH),
+        )
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.mas0061.jacoco
+
+import org.gradle.api.Action
+import org.gradle.api.Project
+import org.gradle.api.provider.Property
+import org.gradle.api.provider.Provider
+import org.gradle.api.services.BuildService
+import org.gradle.api.services.BuildServiceParameters
+import org.gradle.api.services.BuildServiceSpec
+
+/**
+ * Build service that shares parsed reports between all coverage tasks of a build
+ *
+ * The service lives until the end of the build, when Gradle closes it and the cached reports are released.
+ * Build services require Gradle 6.1; this class and [ReportCacheServices] are only loaded on such versions.
+ */
+abstract class ReportCacheService :
+    BuildService<ReportCacheService.Parameters>,
+    AutoCloseable {
+    interface Parameters : BuildServiceParameters {
+        val maxEntries: Property<Int>
+    }
+
+    internal val cache: ParsedReportCache by lazy { ParsedReportCache(parameters.maxEntries.get()) }
+
+    override fun close() {
+        cache.clear()
+    }
+}
+
+/**
+ * Registration of [ReportCacheService], kept apart from the plugin and the task so that older Gradle
+ * versions never load the build service API
+ */
+internal object ReportCacheServices {
+    private const val SERVICE_NAME = "jacocoCoverageConsoleReportCache"
+    private const val DEFAULT_MAX_ENTRIES = 8
+
+    fun register(project: Project): Provider<ReportCacheService> {
+        return project.gradle.sharedServices.registerIfAbsent(
+            SERVICE_NAME,
+            ReportCacheService::class.java,
+            object : Action<BuildServiceSpec<ReportCacheService.Parameters>> {
+                override fun execute(spec: BuildServiceSpec<ReportCacheService.Parameters>) {
+                    spec.parameters.maxEntries.set(DEFAULT_MAX_ENTRIES)
+                }
+            },
+        )
+    }
+
+    fun cacheOf(service: Provider<*>): ParsedReportCache = (service.get() as ReportCacheService).cache
+}
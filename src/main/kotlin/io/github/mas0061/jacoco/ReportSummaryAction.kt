@@ -0,0 +1,113 @@
+package io.github.mas0061.jacoco
+
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
+import org.gradle.workers.WorkAction
+import org.gradle.workers.WorkParameters
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.FileOutputStream
+
+/**
+ * Worker API action that parses, filters and summarizes an XML report in a separate worker process
+ *
+ * The complete report only ever lives in the worker's heap. The action writes the part of the report that
+ * the table shows to [Parameters.summaryFile], so the daemon reads back a summary whose size depends on the
+ * displayed rows rather than on the report. The Worker API in this form requires Gradle 5.6.
+ */
+abstract class ReportSummaryAction : WorkAction<ReportSummaryAction.Parameters> {
+    interface Parameters : WorkParameters {
+        val reportFile: RegularFileProperty
+        val targetClasses: ListProperty<String>
+        val xmlParser: Property<String>
+
+        /**
+         * Snapshot cache of parsed reports; parsing skips the cache when absent
+         */
+        val cacheDirectory: DirectoryProperty
+        val showClassDetails: Property<Boolean>
+        val topClasses: Property<Int>
+        val sortOrder: Property<String>
+        val summaryFile: RegularFileProperty
+    }
+
+    override fun execute() {
+        val parser = XmlParserBackend.fromOptionValue(parameters.xmlParser.get()).createParser()
+        val reportFile = parameters.reportFile.get().asFile
+        val targetClasses = parameters.targetClasses.get()
+        val report =
+            if (parameters.cacheDirectory.isPresent) {
+                val cache = CoverageReportCache(parameters.cacheDirectory.get().asFile)
+                XmlCoverageReportRenderer().filterReport(cache.load(reportFile) { parser.parse(it) }, targetClasses)
+            } else {
+                parser.parse(reportFile, TargetClassMatcher(targetClasses))
+            }
+
+        val summary =
+            ReportSummaries.summarize(
+                report,
+                parameters.showClassDetails.get(),
+                parameters.topClasses.get(),
+                CoverageSortOrder.fromOptionValue(parameters.sortOrder.get()),
+            )
+        val summaryFile = parameters.summaryFile.get().asFile
+        summaryFile.parentFile?.mkdirs()
+        DataOutputStream(BufferedOutputStream(FileOutputStream(summaryFile))).use { output ->
+            ReportSummaries.write(summary, output)
+        }
+    }
+}
+
+/**
+ * Reduction of a filtered report to the rows rendered by [XmlCoverageReportRenderer]
+ */
+internal object ReportSummaries {
+    /**
+     * Returns the report without the classes that are not displayed, or null when the report has no classes
+     *
+     * Package and report counters are kept as they are. Without class details no class is kept; in top mode
+     * only the selected classes are kept, so rendering the summary selects the same classes again.
+     */
+    fun summarize(
+        report: CoverageReport,
+        showClassDetails: Boolean,
+        topClasses: Int,
+        sortOrder: CoverageSortOrder,
+    ): CoverageReport? {
+        if (report.packages.all { it.classes.isEmpty() }) {
+            return null
+        }
+        if (showClassDetails && topClasses == 0) {
+            return report
+        }
+
+        val selectedNames =
+            if (showClassDetails) {
+                val selector = WorstClassSelector(sortOrder, topClasses)
+                report.packages.forEach { pkg -> pkg.classes.forEach(selector::offer) }
+                selector.result().mapTo(HashSet()) { it.name }
+            } else {
+                emptySet()
+            }
+        val packages =
+            report.packages.map { pkg ->
+                CoveragePackage(pkg.name, pkg.classes.filter { it.name in selectedNames }, pkg.counters)
+            }
+        return CoverageReport(report.name, packages, report.counters)
+    }
+
+    fun write(
+        summary: CoverageReport?,
+        output: DataOutputStream,
+    ) {
+        output.writeBoolean(summary != null)
+        summary?.let { CoverageReportSnapshot.write(it, output) }
+    }
+
+    fun read(input: DataInputStream): CoverageReport? {
+        return if (input.readBoolean()) CoverageReportSnapshot.read(input) else null
+    }
+}
@@ -0,0 +1,263 @@
+package io.github.mas0061.jacoco
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * Byte ranges of the `<sourcefile>` elements of a JaCoCo XML report
+ *
+ * The index is built in one pass over the memory-mapped report. Source file elements are skipped by searching
+ * for their end tag, so their `<line>` elements are never tokenized. Each entry also lists the classes of the
+ * package that name the file as `sourcefilename`, so that target class patterns select source files without
+ * reading the report. The lines of a selected file are then read by mapping just its byte range.
+ *
+ * [load] keeps the index as a sidecar file next to the report snapshots and validates it like
+ * [CoverageReportCache]: while the report's size and modification time are unchanged the sidecar is used as is,
+ * so the report is not read at all. When only the modification time differs, the SHA-256 recorded in the
+ * sidecar decides, so a report regenerated with identical content keeps its index.
+ */
+internal class SourceFileIndex(val entries: List<Entry>) {
+    class Entry(
+        val packageName: String,
+        val fileName: String,
+        val startOffset: Long,
+        val endOffset: Long,
+        val classNames: List<String>,
+    ) {
+        val path: String get() = if (packageName.isEmpty()) fileName else "$packageName/$fileName"
+    }
+
+    /**
+     * Returns the source files of the classes selected by [matcher], or all source files without one
+     */
+    fun select(matcher: TargetClassMatcher?): List<Entry> {
+        if (matcher == null || matcher.isEmpty) {
+            return entries
+        }
+        return entries.filter { entry ->
+            val packageDisplayName =
+                if (entry.packageName.isEmpty()) {
+                    TargetClassMatcher.DEFAULT_PACKAGE_DISPLAY_NAME
+                } else {
+                    entry.packageName.replace('/', '.')
+                }
+            entry.classNames.any { matcher.matches(it.replace('/', '.'), packageDisplayName) }
+        }
+    }
+
+    /**
+     * Reads the lines of [selected] from their byte ranges in [xmlFile], in index order
+     */
+    fun readLines(
+        xmlFile: File,
+        selected: List<Entry>,
+    ): LineCoverage {
+        val collector = LineCoverageCollector()
+        if (selected.isEmpty()) {
+            return collector.build()
+        }
+        return try {
+            FileChannel.open(xmlFile.toPath(), StandardOpenOption.READ).use { channel ->
+                for (entry in selected) {
+                    collector.startFile(entry.packageName, entry.fileName)
+                    MappedXmlScanner(channel, entry.startOffset, entry.endOffset).use { scanner ->
+                        while (scanner.nextTag()) {
+                            if (scanner.tagName == MappedXmlScanner.LINE && scanner.tagKind != MappedXmlScanner.END) {
+                                scanner.readLine(collector)
+                            }
+                        }
+                    }
+                    collector.endFile()
+                }
+                collector.build()
+            }
+        } catch (e: IOException) {
+            throw IllegalArgumentException("Failed to read XML file: ${xmlFile.name}", e)
+        }
+    }
+
+    companion object {
+        private const val FORMAT_VERSION = 3
+
+        /**
+         * Returns the index of [xmlFile] from its sidecar file in [cacheDirectory], or builds it and writes the
+         * sidecar. Without a cache directory the index is always built. [contentHash] is only called when the
+         * sidecar's modification time differs from the report's, or when a new sidecar is written.
+         */
+        fun load(
+            xmlFile: File,
+            cacheDirectory: File?,
+            contentHash: (File) -> ByteArray = ReportFingerprint.Companion::contentHash,
+        ): SourceFileIndex {
+            CoverageReportParser.validateFileAccess(xmlFile)
+
+            val fingerprint = ReportFingerprint.of(xmlFile)
+            val indexFile = cacheDirectory?.let { File(it, "index-${fingerprint.pathHash()}.bin") }
+            var reportHash: ByteArray? = null
+            val cached =
+                indexFile?.let { file ->
+                    read(file) { header ->
+                        when {
+                            header.fingerprint == fingerprint -> true
+                            header.fingerprint.path != fingerprint.path -> false
+                            header.fingerprint.size != fingerprint.size -> false
+                            else -> header.contentHash.contentEquals(contentHash(xmlFile).also { reportHash = it })
+                        }
+                    }
+                }
+            if (cached != null && cached.fingerprint == fingerprint) {
+                return cached.index
+            }
+
+            // A touched report with the same content keeps its index; the sidecar is rewritten with the new time
+            val index = cached?.index ?: build(xmlFile)
+            indexFile?.let { write(it, fingerprint, reportHash ?: contentHash(xmlFile), index) }
+            return index
+        }
+
+        fun build(xmlFile: File): SourceFileIndex {
+            CoverageReportParser.validateFileAccess(xmlFile)
+
+            return try {
+                FileChannel.open(xmlFile.toPath(), StandardOpenOption.READ).use { channel ->
+                    SourceFileIndex(MappedXmlScanner(channel).use { scan(it) })
+                }
+            } catch (e: IOException) {
+                throw IllegalArgumentException("Failed to read XML file: ${xmlFile.name}", e)
+            }
+        }
+
+        private fun scan(scanner: MappedXmlScanner): List<Entry> {
+            require(scanner.nextTag() && scanner.tagName == MappedXmlScanner.REPORT) {
+                "Invalid JaCoCo XML format: root element should be 'report'"
+            }
+
+            val entries = ArrayList<Entry>()
+            var packageName = ""
+            val classesByFile = HashMap<String, MutableList<String>>()
+            while (scanner.nextTag()) {
+                if (scanner.tagKind == MappedXmlScanner.END) {
+                    continue
+                }
+                when (scanner.tagName) {
+                    MappedXmlScanner.REPORT, MappedXmlScanner.GROUP -> Unit
+                    MappedXmlScanner.PACKAGE -> {
+                        packageName = scanner.nameAttribute().orEmpty()
+                        classesByFile.clear()
+                    }
+                    MappedXmlScanner.CLASS -> {
+                        val sourceFilename = scanner.sourceFilenameAttribute()
+                        if (sourceFilename != null) {
+                            val classNames = classesByFile.getOrPut(sourceFilename) { ArrayList() }
+                            classNames.add(scanner.nameAttribute().orEmpty())
+                        }
+                        scanner.skipElement()
+                    }
+                    MappedXmlScanner.SOURCEFILE -> {
+                        val fileName = scanner.nameAttribute().orEmpty()
+                        val startOffset = scanner.tagOffset
+                        scanner.skipToEndTag()
+                        val classNames = classesByFile[fileName].orEmpty()
+                        entries.add(Entry(packageName, fileName, startOffset, scanner.tagEndOffset, classNames))
+                    }
+                    else -> scanner.skipElement()
+                }
+            }
+            return entries
+        }
+
+        private class SidecarHeader(
+            val fingerprint: ReportFingerprint,
+            val contentHash: ByteArray,
+        )
+
+        private class CachedIndex(
+            val fingerprint: ReportFingerprint,
+            val index: SourceFileIndex,
+        )
+
+        /**
+         * Reads the sidecar file when [isValid] accepts its header. Unreadable files are treated as missing.
+         */
+        private fun read(
+            indexFile: File,
+            isValid: (SidecarHeader) -> Boolean,
+        ): CachedIndex? {
+            if (!indexFile.isFile) {
+                return null
+            }
+            return try {
+                DataInputStream(indexFile.inputStream().buffered()).use { input ->
+                    if (input.readInt() != FORMAT_VERSION) {
+                        return null
+                    }
+                    val fingerprint = ReportFingerprint(input.readUTF(), input.readLong(), input.readLong())
+                    val contentHash = ByteArray(input.readUnsignedByte())
+                    input.readFully(contentHash)
+                    if (!isValid(SidecarHeader(fingerprint, contentHash))) {
+                        return null
+                    }
+                    CachedIndex(fingerprint, SourceFileIndex(List(input.readInt()) { readEntry(input) }))
+                }
+            } catch (ignored: IOException) {
+                null
+            }
+        }
+
+        private fun readEntry(input: DataInputStream): Entry {
+            val packageName = input.readUTF()
+            val fileName = input.readUTF()
+            val startOffset = input.readLong()
+            val endOffset = input.readLong()
+            val classNames = List(input.readInt()) { input.readUTF() }
+            return Entry(packageName, fileName, startOffset, endOffset, classNames)
+        }
+
+        /**
+         * Writes the sidecar file through a temporary file. The index is an optimization only, so failures to
+         * write it are ignored.
+         */
+        private fun write(
+            indexFile: File,
+            fingerprint: ReportFingerprint,
+            contentHash: ByteArray,
+            index: SourceFileIndex,
+        ) {
+            var temporaryFile: File? = null
+            try {
+                indexFile.parentFile.mkdirs()
+                temporaryFile = File.createTempFile(indexFile.name, ".tmp", indexFile.parentFile)
+                DataOutputStream(temporaryFile.outputStream().buffered()).use { output ->
+                    output.writeInt(FORMAT_VERSION)
+                    output.writeUTF(fingerprint.path)
+                    output.writeLong(fingerprint.size)
+                    output.writeLong(fingerprint.lastModified)
+                    output.writeByte(contentHash.size)
+                    output.write(contentHash)
+                    output.writeInt(index.entries.size)
+                    for (entry in index.entries) {
+                        output.writeUTF(entry.packageName)
+                        output.writeUTF(entry.fileName)
+                        output.writeLong(entry.startOffset)
+                        output.writeLong(entry.endOffset)
+                        output.writeInt(entry.classNames.size)
+                        entry.classNames.forEach { output.writeUTF(it) }
+                    }
+                }
+                if (!temporaryFile.renameTo(indexFile)) {
+                    // File.renameTo does not replace an existing file on every platform
+                    indexFile.delete()
+                    temporaryFile.renameTo(indexFile)
+                }
+            } catch (ignored: IOException) {
+                // Ignored: the next run builds the index again
+            } finally {
+                temporaryFile?.delete()
+            }
+        }
+    }
+}
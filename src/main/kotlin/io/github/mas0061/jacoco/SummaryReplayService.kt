@@ -0,0 +1,78 @@
+package io.github.mas0061.jacoco
+
+import org.gradle.api.Action
+import org.gradle.api.Project
+import org.gradle.api.file.RegularFile
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.provider.Provider
+import org.gradle.api.services.BuildService
+import org.gradle.api.services.BuildServiceParameters
+import org.gradle.api.services.BuildServiceSpec
+import org.gradle.build.event.BuildEventsListenerRegistry
+import org.gradle.tooling.events.FinishEvent
+import org.gradle.tooling.events.OperationCompletionListener
+import org.gradle.tooling.events.task.TaskFinishEvent
+import org.gradle.tooling.events.task.TaskSuccessResult
+import javax.inject.Inject
+
+/**
+ * Build service that prints the recorded table again when a coverage task did not run
+ *
+ * An up-to-date task or one restored from the build cache skips its action. The service listens for the
+ * completion of the task and copies the table recorded by its last execution to the console. Unlike a task
+ * graph listener, a build event listener works with the configuration cache.
+ * Build event listeners require Gradle 6.1; this class and [SummaryReplayServices] are only loaded on such
+ * versions.
+ */
+abstract class SummaryReplayService :
+    BuildService<SummaryReplayService.Parameters>,
+    OperationCompletionListener {
+    interface Parameters : BuildServiceParameters {
+        val taskPath: Property<String>
+        val summaryFile: RegularFileProperty
+    }
+
+    override fun onFinish(event: FinishEvent) {
+        if (event !is TaskFinishEvent || event.descriptor.taskPath != parameters.taskPath.get()) {
+            return
+        }
+        val result = event.result
+        if (result is TaskSuccessResult && (result.isUpToDate || result.isFromCache)) {
+            CoverageSummaryOutput.replay(parameters.summaryFile.get().asFile, System.out)
+        }
+    }
+}
+
+/**
+ * Registration of [SummaryReplayService], kept apart from the plugin so that older Gradle versions never load
+ * the build event API
+ */
+internal object SummaryReplayServices {
+    private const val SERVICE_NAME_PREFIX = "jacocoCoverageConsoleSummaryReplay"
+
+    fun register(
+        project: Project,
+        taskName: String,
+        summaryFile: Provider<RegularFile>,
+    ) {
+        val taskPath = if (project.path == ":") ":$taskName" else "${project.path}:$taskName"
+        val service =
+            project.gradle.sharedServices.registerIfAbsent(
+                SERVICE_NAME_PREFIX + taskPath,
+                SummaryReplayService::class.java,
+                object : Action<BuildServiceSpec<SummaryReplayService.Parameters>> {
+                    override fun execute(spec: BuildServiceSpec<SummaryReplayService.Parameters>) {
+                        spec.parameters.taskPath.set(taskPath)
+                        spec.parameters.summaryFile.set(summaryFile)
+                    }
+                },
+            )
+        project.objects.newInstance(ListenerRegistryHolder::class.java).registry.onTaskCompletion(service)
+    }
+
+    /**
+     * The listener registry can only be obtained by injection
+     */
+    open class ListenerRegistryHolder @Inject constructor(val registry: BuildEventsListenerRegistry)
+}
@@ -0,0 +1,95 @@
+package io.github.mas0061.jacoco
+
+/**
+ * Target class patterns compiled once so that they can be evaluated while parsing the report
+ *
+ * A class is selected when an include pattern matches its fully qualified name or the display name of its
+ * package, and no exclude pattern matches either of them. Patterns prefixed with `!` are excludes; when only
+ * excludes are given, every other class is selected. The patterns are globs, see [GlobAutomaton] for the
+ * syntax; `com.example.*`, `*Controller` and `com.acme.**.internal.*Impl` are typical examples.
+ */
+class TargetClassMatcher(targetClasses: List<String>) {
+    private val hasIncludes = targetClasses.any { !it.startsWith(EXCLUDE_PREFIX) }
+    private val automaton =
+        GlobAutomaton(
+            targetClasses.filterNot { it.startsWith(EXCLUDE_PREFIX) },
+            targetClasses.filter { it.startsWith(EXCLUDE_PREFIX) }.map { it.substring(EXCLUDE_PREFIX.length) },
+        )
+
+    val isEmpty: Boolean = targetClasses.isEmpty()
+
+    /**
+     * Returns true when the class or its package is selected by the patterns
+     */
+    fun matches(
+        classFullName: String,
+        packageDisplayName: String,
+    ): Boolean {
+        // The package name is usually a prefix of the class name, so one pass over the class name decides both
+        val packageIsPrefix =
+            classFullName.length > packageDisplayName.length &&
+                classFullName[packageDisplayName.length] == '.' &&
+                classFullName.startsWith(packageDisplayName)
+        val packageState = if (packageIsPrefix) null else run(automaton.initialState, packageDisplayName)
+
+        var state = automaton.initialState
+        var packageAccepted = packageState?.includeAccepted ?: false
+        var packageExcluded = packageState?.excludeAccepted ?: false
+        for (index in 0..classFullName.length) {
+            if (packageIsPrefix && index == packageDisplayName.length) {
+                packageAccepted = state.includeAccepted
+                packageExcluded = state.excludeAccepted
+            }
+            if (index == classFullName.length || state.isDead) {
+                break
+            }
+            state = state.next(classFullName[index])
+        }
+        if (packageExcluded || state.excludeAccepted) {
+            return false
+        }
+        return !hasIncludes || packageAccepted || state.includeAccepted
+    }
+
+    /**
+     * Returns true when at least one class of the package could be selected.
+     * Packages for which this returns false can be skipped without reading their classes.
+     */
+    fun mayMatchPackage(packageDisplayName: String): Boolean {
+        val packageState = run(automaton.initialState, packageDisplayName)
+        if (packageState.excludeAccepted) {
+            return false
+        }
+        if (packageDisplayName == DEFAULT_PACKAGE_DISPLAY_NAME) {
+            // Classes in the default package have no package prefix to reason about
+            return !isEmpty
+        }
+        // Every class of the package starts with "<package>."
+        val classState = packageState.next('.')
+        if (classState.excludeUniversal) {
+            return false
+        }
+        return !hasIncludes || packageState.includeAccepted || classState.includeLive
+    }
+
+    private fun run(
+        initial: GlobAutomaton.State,
+        name: String,
+    ): GlobAutomaton.State {
+        var state = initial
+        for (char in name) {
+            if (state.isDead) {
+                break
+            }
+            state = state.next(char)
+        }
+        return state
+    }
+
+    companion object {
+        const val DEFAULT_PACKAGE_DISPLAY_NAME = "(default package)"
+
+        /** Prefix that turns a pattern into an exclude pattern */
+        const val EXCLUDE_PREFIX = "!"
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.mas0061.jacoco
+
+import java.util.PriorityQueue
+
+/**
+ * カバレッジの最も悪い [limit] 件のクラスを1回の走査で選ぶクラス
+ *
+ * 選んだクラスは大きさ [limit] の優先度付きキューに保持し、先頭には保持中で最もカバレッジの良いクラスを置く。
+ * 新しいクラスが先頭より悪ければ入れ替えるため、n件のクラスに対して O(n log limit) の時間と
+ * O(limit) のメモリで済み、全体のソートや絞り込んだリストの作成は不要となる。
+ */
+internal class WorstClassSelector(
+    private val order: CoverageSortOrder,
+    private val limit: Int,
+) {
+    private val worstFirst = Comparator<CoverageClass> { first, second -> order.compareWorseFirst(first, second) }
+    private val selected = PriorityQueue(limit, worstFirst.reversed())
+
+    init {
+        require(limit > 0) { "Top class count must be positive: $limit" }
+    }
+
+    fun offer(clazz: CoverageClass) {
+        if (!order.isRanked(clazz.counters)) {
+            return
+        }
+        if (selected.size < limit) {
+            selected.add(clazz)
+        } else if (worstFirst.compare(clazz, selected.peek()) < 0) {
+            selected.poll()
+            selected.add(clazz)
+        }
+    }
+
+    /**
+     * 選んだクラスを悪い順に返す
+     */
+    fun result(): List<CoverageClass> = selected.sortedWith(worstFirst)
+}
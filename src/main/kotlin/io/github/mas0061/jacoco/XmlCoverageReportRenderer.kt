@@ -1,66 +1,141 @@
 package io.github.mas0061.jacoco
 
-import java.util.Locale
+import java.io.PrintStream
 
 /**
  * XML-based coverage report renderer with support for project totals and package summaries
  */
 class XmlCoverageReportRenderer {
-    companion object {
-        private const val TABLE_WIDTH = 82 // 50 + 1 + 15 + 1 + 15 = 82
-        private const val CLASS_COLUMN_WIDTH = 50
-        private const val COVERAGE_COLUMN_WIDTH = 15
-    }
-
     /**
      * Render coverage report with optional filtering and package grouping
+     *
+     * When [topClasses] is positive, the class details list only that many classes with the worst coverage
+     * according to [sortOrder] instead of every class sorted by name.
      */
     fun renderCoverageReport(
         report: CoverageReport,
         targetClasses: List<String> = emptyList(),
         showTotal: Boolean = true,
         showPackageSummary: Boolean = true,
+        showClassDetails: Boolean = true,
+        topClasses: Int = 0,
+        sortOrder: CoverageSortOrder = CoverageSortOrder.INSTRUCTION,
+        out: PrintStream = System.out,
     ) {
-        val filteredData =
-            if (targetClasses.isEmpty()) {
-                report
-            } else {
-                filterReport(report, targetClasses)
-            }
+        val filteredData = filterReport(report, targetClasses)
+        val writer = ConsoleTableWriter(out)
 
-        printHeader()
-        printTableHeader()
+        printHeader(writer)
+        if (showClassDetails && topClasses > 0) {
+            writer.line("Top $topClasses classes by ${sortOrder.description}")
+            writer.rule('=')
+        }
+        printTableHeader(writer)
 
         if (showTotal) {
-            printProjectTotal(filteredData)
+            printProjectTotal(writer, filteredData)
         }
 
         if (showPackageSummary && filteredData.packages.size > 1) {
-            printPackageSummaries(filteredData)
+            printPackageSummaries(writer, filteredData)
+        }
+
+        if (showClassDetails && topClasses > 0) {
+            printWorstClasses(writer, filteredData, topClasses, sortOrder)
+        } else if (showClassDetails) {
+            printClassDetails(writer, filteredData)
+        }
+        printFooter(writer)
+        writer.flush()
+    }
+
+    /**
+     * Render the totals of several module reports and their combined total in one table
+     *
+     * [modules] pairs each module name with its report; [total] is the merged report of all modules.
+     */
+    fun renderModuleSummary(
+        modules: List<Pair<String, CoverageReport>>,
+        total: CoverageReport,
+        out: PrintStream = System.out,
+    ) {
+        val writer = ConsoleTableWriter(out)
+
+        printHeader(writer)
+        writer.line("Aggregated from ${modules.size} module reports")
+        writer.rule('=')
+        writer.tableHeader("Module")
+        writer.rule('-')
+
+        printProjectTotal(writer, total)
+        for ((moduleName, report) in modules.sortedBy { it.first }) {
+            writer.name(moduleName).name(" (module)")
+            printCoverage(writer, report.counters)
         }
+        printFooter(writer)
+        writer.flush()
+    }
+
+    /**
+     * Render the number of fully covered, partly covered and missed source lines below a table
+     */
+    fun renderLineSummary(
+        counts: LineCounts,
+        out: PrintStream = System.out,
+    ) {
+        val writer = ConsoleTableWriter(out)
+        writer.line(
+            "Lines: ${counts.total} in ${counts.sourceFiles} source files " +
+                "(${counts.fullyCovered} fully covered, ${counts.partlyCovered} partly covered, " +
+                "${counts.missed} missed)",
+        )
+        writer.flush()
+    }
 
-        printClassDetails(filteredData)
-        printFooter()
+    /**
+     * Render the missed and partly covered line ranges of every source file that has any
+     */
+    fun renderMissedLines(
+        lines: LineCoverage,
+        out: PrintStream = System.out,
+    ) {
+        val writer = ConsoleTableWriter(out)
+        val uncoveredFiles = lines.files.filter { !it.missed.isEmpty() || !it.partlyCovered.isEmpty() }
+        writer.blankLine()
+        if (uncoveredFiles.isEmpty()) {
+            writer.line("No missed lines in ${lines.files.size} source files")
+        }
+        for (file in uncoveredFiles.sortedBy { it.path }) {
+            writer.line(file.path)
+            if (!file.missed.isEmpty()) {
+                writer.line("  Missed:         ${file.missed.format()}")
+            }
+            if (!file.partlyCovered.isEmpty()) {
+                writer.line("  Partly covered: ${file.partlyCovered.format()}")
+            }
+        }
+        writer.flush()
     }
 
-    private fun filterReport(
+    /**
+     * Returns the classes selected by the target patterns with recalculated package and report counters
+     */
+    internal fun filterReport(
         report: CoverageReport,
         targetClasses: List<String>,
     ): CoverageReport {
+        if (targetClasses.isEmpty()) {
+            return report
+        }
+        val matcher = TargetClassMatcher(targetClasses)
         val filteredPackages = mutableListOf<CoveragePackage>()
 
         for (pkg in report.packages) {
-            val filteredClasses =
-                pkg.classes.filter { clazz ->
-                    targetClasses.any { pattern ->
-                        matchesPattern(clazz.fullName, pattern) ||
-                            matchesPattern(pkg.displayName, pattern)
-                    }
-                }
+            val filteredClasses = pkg.classes.filter { clazz -> matcher.matches(clazz.fullName, pkg.displayName) }
 
             if (filteredClasses.isNotEmpty()) {
                 // Recalculate package counters based on filtered classes
-                val packageCounters = aggregateCounters(filteredClasses.map { it.counters })
+                val packageCounters = CoverageCounter.aggregate(filteredClasses.map { it.counters })
                 filteredPackages.add(
                     pkg.copy(
                         classes = filteredClasses,
@@ -71,7 +146,7 @@ class XmlCoverageReportRenderer {
         }
 
         // Recalculate report counters based on filtered packages
-        val reportCounters = aggregateCounters(filteredPackages.map { it.counters })
+        val reportCounters = CoverageCounter.aggregate(filteredPackages.map { it.counters })
 
         return report.copy(
             packages = filteredPackages,
@@ -79,119 +154,82 @@ class XmlCoverageReportRenderer {
         )
     }
 
-    private fun matchesPattern(
-        name: String,
-        pattern: String,
-    ): Boolean {
-        return when {
-            pattern.endsWith("*") -> {
-                val prefix = pattern.dropLast(1)
-                name.startsWith(prefix)
-            }
-            pattern.startsWith("*") -> {
-                val suffix = pattern.drop(1)
-                name.endsWith(suffix)
-            }
-            pattern.contains("*") -> {
-                val parts = pattern.split("*")
-                if (parts.size == 2) {
-                    name.startsWith(parts[0]) && name.endsWith(parts[1])
-                } else {
-                    false
-                }
-            }
-            else -> name == pattern
-        }
-    }
-
-    private fun aggregateCounters(countersList: List<Map<String, CoverageCounter>>): Map<String, CoverageCounter> {
-        val aggregated = mutableMapOf<String, Pair<Int, Int>>()
-
-        for (counters in countersList) {
-            for ((type, counter) in counters) {
-                val (currentMissed, currentCovered) = aggregated.getOrDefault(type, 0 to 0)
-                aggregated[type] = (currentMissed + counter.missed) to (currentCovered + counter.covered)
-            }
-        }
-
-        return aggregated.mapValues { (type, counts) ->
-            CoverageCounter(type, counts.first, counts.second)
-        }
+    private fun printHeader(writer: ConsoleTableWriter) {
+        writer.blankLine()
+        writer.rule('=')
+        writer.line("JaCoCo Coverage Report")
+        writer.rule('=')
     }
 
-    private fun printHeader() {
-        println()
-        println("=".repeat(TABLE_WIDTH))
-        println("JaCoCo Coverage Report")
-        println("=".repeat(TABLE_WIDTH))
+    private fun printTableHeader(writer: ConsoleTableWriter) {
+        writer.tableHeader()
+        writer.rule('-')
     }
 
-    private fun printTableHeader() {
-        val header =
-            String.format(
-                Locale.US,
-                "%-${CLASS_COLUMN_WIDTH}s %${COVERAGE_COLUMN_WIDTH}s %${COVERAGE_COLUMN_WIDTH}s",
-                "Class/Package",
-                "Instruction (%)",
-                "Branch (%)",
-            )
-        println(header)
-        println("-".repeat(TABLE_WIDTH))
-    }
-
-    private fun printProjectTotal(report: CoverageReport) {
-        val instructionCoverage = String.format(Locale.US, "%.2f", report.instructionCoverage)
-        val branchCoverage = String.format(Locale.US, "%.2f", report.branchCoverage)
-
-        val totalRow =
-            String.format(
-                Locale.US,
-                "%-${CLASS_COLUMN_WIDTH}s %${COVERAGE_COLUMN_WIDTH}s %${COVERAGE_COLUMN_WIDTH}s",
-                "PROJECT TOTAL",
-                instructionCoverage,
-                branchCoverage,
-            )
-        println(totalRow)
+    private fun printProjectTotal(
+        writer: ConsoleTableWriter,
+        report: CoverageReport,
+    ) {
+        writer.name("PROJECT TOTAL")
+        printCoverage(writer, report.counters)
     }
 
-    private fun printPackageSummaries(report: CoverageReport) {
+    private fun printPackageSummaries(
+        writer: ConsoleTableWriter,
+        report: CoverageReport,
+    ) {
         for (pkg in report.packages.sortedBy { it.displayName }) {
-            val instructionCoverage = String.format(Locale.US, "%.2f", pkg.instructionCoverage)
-            val branchCoverage = String.format(Locale.US, "%.2f", pkg.branchCoverage)
-
-            val packageRow =
-                String.format(
-                    Locale.US,
-                    "%-${CLASS_COLUMN_WIDTH}s %${COVERAGE_COLUMN_WIDTH}s %${COVERAGE_COLUMN_WIDTH}s",
-                    "${pkg.displayName} (package)",
-                    instructionCoverage,
-                    branchCoverage,
-                )
-            println(packageRow)
+            writer.name(pkg.displayName).name(" (package)")
+            printCoverage(writer, pkg.counters)
         }
     }
 
-    private fun printClassDetails(report: CoverageReport) {
+    private fun printClassDetails(
+        writer: ConsoleTableWriter,
+        report: CoverageReport,
+    ) {
         val allClasses = report.getAllClasses().sortedBy { it.fullName }
 
         for (clazz in allClasses) {
-            val instructionCoverage = String.format(Locale.US, "%.2f", clazz.instructionCoverage)
-            val branchCoverage = String.format(Locale.US, "%.2f", clazz.branchCoverage)
-
-            val classRow =
-                String.format(
-                    Locale.US,
-                    "%-${CLASS_COLUMN_WIDTH}s %${COVERAGE_COLUMN_WIDTH}s %${COVERAGE_COLUMN_WIDTH}s",
-                    "  ${clazz.fullName}",
-                    instructionCoverage,
-                    branchCoverage,
-                )
-            println(classRow)
+            writer.name("  ").name(clazz.fullName)
+            printCoverage(writer, clazz.counters)
         }
     }
 
-    private fun printFooter() {
-        println("-".repeat(TABLE_WIDTH))
-        println()
+    private fun printWorstClasses(
+        writer: ConsoleTableWriter,
+        report: CoverageReport,
+        topClasses: Int,
+        sortOrder: CoverageSortOrder,
+    ) {
+        // Single pass over the packages without collecting or sorting all classes
+        val selector = WorstClassSelector(sortOrder, topClasses)
+        for (pkg in report.packages) {
+            for (clazz in pkg.classes) {
+                selector.offer(clazz)
+            }
+        }
+
+        for (clazz in selector.result()) {
+            writer.name("  ").name(clazz.fullName)
+            printCoverage(writer, clazz.counters)
+        }
+    }
+
+    private fun printCoverage(
+        writer: ConsoleTableWriter,
+        counters: Map<String, CoverageCounter>,
+    ) {
+        writer.coverage(
+            CoverageCounter.missedCount(counters, CounterType.INSTRUCTION),
+            CoverageCounter.coveredCount(counters, CounterType.INSTRUCTION),
+            CoverageCounter.missedCount(counters, CounterType.BRANCH),
+            CoverageCounter.coveredCount(counters, CounterType.BRANCH),
+        )
+    }
+
+    private fun printFooter(writer: ConsoleTableWriter) {
+        writer.rule('-')
+        writer.blankLine()
     }
 }
@@ -0,0 +1,33 @@
+package io.github.mas0061.jacoco
+
+/**
+ * XMLレポートのパーサー実装
+ */
+enum class XmlParserBackend(val optionValue: String) {
+    /** StAXによるストリーミングパース (デフォルト) */
+    STREAMING("streaming"),
+
+    /** メモリマップしたバイト列を直接走査するパース */
+    MAPPED("mapped"),
+
+    /** パッケージ単位で複数スレッドに分割して並列にパース */
+    PARALLEL("parallel"),
+    ;
+
+    fun createParser(): CoverageReportParser {
+        return when (this) {
+            STREAMING -> XmlReportParser()
+            MAPPED -> MappedXmlReportParser()
+            PARALLEL -> ParallelXmlReportParser()
+        }
+    }
+
+    companion object {
+        fun fromOptionValue(value: String): XmlParserBackend {
+            return values().firstOrNull { it.optionValue == value.trim().lowercase() }
+                ?: throw IllegalArgumentException(
+                    "Unknown XML parser '$value'. Supported values: ${values().joinToString { it.optionValue }}",
+                )
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package io.github.mas0061.jacoco
 
-import org.w3c.dom.Document
-import org.w3c.dom.Element
-import org.xml.sax.SAXException
 import java.io.File
 import java.io.IOException
-import javax.xml.parsers.DocumentBuilderFactory
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamException
+import javax.xml.stream.XMLStreamReader
 
 /**
  * Coverage counter data
@@ -18,6 +18,65 @@ data class CoverageCounter(
     val total: Int get() = missed + covered
     val coveragePercentage: Double get() =
         if (total == 0) 0.0 else (covered.toDouble() / total) * 100
+
+    companion object {
+        /**
+         * Sums the counters of several elements per counter type
+         */
+        fun aggregate(countersList: List<Map<String, CoverageCounter>>): Map<String, CoverageCounter> {
+            val aggregated = mutableMapOf<String, Pair<Int, Int>>()
+
+            for (counters in countersList) {
+                for ((type, counter) in counters) {
+                    val (currentMissed, currentCovered) = aggregated.getOrDefault(type, 0 to 0)
+                    aggregated[type] = (currentMissed + counter.missed) to (currentCovered + counter.covered)
+                }
+            }
+
+            return aggregated.mapValues { (type, counts) ->
+                CoverageCounter(type, counts.first, counts.second)
+            }
+        }
+
+        /**
+         * Coverage percentage of one counter type; reads the columns directly for compact reports
+         */
+        internal fun coveragePercentage(
+            counters: Map<String, CoverageCounter>,
+            typeIndex: Int,
+        ): Double {
+            if (counters is CounterRowMap) {
+                return counters.coveragePercentage(typeIndex)
+            }
+            return counters[CounterType.NAMES[typeIndex]]?.coveragePercentage ?: 0.0
+        }
+
+        /**
+         * Missed count of a counter type, or 0 when the type is absent
+         */
+        internal fun missedCount(
+            counters: Map<String, CoverageCounter>,
+            typeIndex: Int,
+        ): Int {
+            if (counters is CounterRowMap) {
+                return counters.missed(typeIndex)
+            }
+            return counters[CounterType.NAMES[typeIndex]]?.missed ?: 0
+        }
+
+        /**
+         * Covered count of a counter type, or 0 when the type is absent
+         */
+        internal fun coveredCount(
+            counters: Map<String, CoverageCounter>,
+            typeIndex: Int,
+        ): Int {
+            if (counters is CounterRowMap) {
+                return counters.covered(typeIndex)
+            }
+            return counters[CounterType.NAMES[typeIndex]]?.covered ?: 0
+        }
+    }
 }
 
 /**
@@ -28,9 +87,11 @@ data class CoverageClass(
     val sourceFilename: String?,
     val counters: Map<String, CoverageCounter>,
 ) {
-    val fullName: String get() = name.replace('/', '.')
-    val instructionCoverage: Double get() = counters["INSTRUCTION"]?.coveragePercentage ?: 0.0
-    val branchCoverage: Double get() = counters["BRANCH"]?.coveragePercentage ?: 0.0
+    internal var cachedFullName: String? = null
+
+    val fullName: String get() = cachedFullName ?: name.replace('/', '.').also { cachedFullName = it }
+    val instructionCoverage: Double get() = CoverageCounter.coveragePercentage(counters, CounterType.INSTRUCTION)
+    val branchCoverage: Double get() = CoverageCounter.coveragePercentage(counters, CounterType.BRANCH)
 }
 
 /**
@@ -41,9 +102,13 @@ data class CoveragePackage(
     val classes: List<CoverageClass>,
     val counters: Map<String, CoverageCounter>,
 ) {
-    val displayName: String get() = if (name.isEmpty()) "(default package)" else name.replace('/', '.')
-    val instructionCoverage: Double get() = counters["INSTRUCTION"]?.coveragePercentage ?: 0.0
-    val branchCoverage: Double get() = counters["BRANCH"]?.coveragePercentage ?: 0.0
+    internal var cachedDisplayName: String? = null
+
+    val displayName: String get() =
+        cachedDisplayName
+            ?: (if (name.isEmpty()) "(default package)" else name.replace('/', '.')).also { cachedDisplayName = it }
+    val instructionCoverage: Double get() = CoverageCounter.coveragePercentage(counters, CounterType.INSTRUCTION)
+    val branchCoverage: Double get() = CoverageCounter.coveragePercentage(counters, CounterType.BRANCH)
 }
 
 /**
@@ -54,136 +119,238 @@ data class CoverageReport(
     val packages: List<CoveragePackage>,
     val counters: Map<String, CoverageCounter>,
 ) {
-    val instructionCoverage: Double get() = counters["INSTRUCTION"]?.coveragePercentage ?: 0.0
-    val branchCoverage: Double get() = counters["BRANCH"]?.coveragePercentage ?: 0.0
+    val instructionCoverage: Double get() = CoverageCounter.coveragePercentage(counters, CounterType.INSTRUCTION)
+    val branchCoverage: Double get() = CoverageCounter.coveragePercentage(counters, CounterType.BRANCH)
 
     fun getAllClasses(): List<CoverageClass> = packages.flatMap { it.classes }
 }
 
 /**
  * JaCoCo XML report parser
+ *
+ * The report is read with a StAX stream reader in a single forward pass, so the DOM tree is
+ * never materialized and heap usage grows with the number of classes rather than the file size.
  */
-class XmlReportParser {
-    fun parse(xmlFile: File): CoverageReport {
-        validateFileAccess(xmlFile)
-
-        val document = parseXmlDocument(xmlFile)
-        val reportElement = document.documentElement
+class XmlReportParser : CoverageReportParser {
+    override fun parse(
+        xmlFile: File,
+        matcher: TargetClassMatcher?,
+    ): CoverageReport = parse(xmlFile, CoverageReportBuilder(matcher))
 
-        require(reportElement.tagName == "report") {
-            "Invalid JaCoCo XML format: root element should be 'report', found '${reportElement.tagName}'"
-        }
+    /**
+     * Parses the report and hands every selected class to [classListener] as soon as its element has been read.
+     * Classes are not retained: the returned report holds the packages and the report counters only.
+     */
+    internal fun parseStreaming(
+        xmlFile: File,
+        matcher: TargetClassMatcher?,
+        classListener: (CoverageClass) -> Unit,
+    ): CoverageReport = parse(xmlFile, CoverageReportBuilder(matcher, classListener))
 
-        val reportName = reportElement.getAttribute("name")
-        val packages = parsePackages(reportElement)
-        val reportCounters = parseCounters(reportElement)
+    /**
+     * Reads the `<line>` elements of every `<sourcefile>` into run-length encoded line sets.
+     *
+     * Class counters are skipped. With a [matcher], only the source files of the selected classes are read;
+     * a source file is selected when a selected class of its package names it as `sourcefilename`.
+     */
+    fun parseLineCoverage(
+        xmlFile: File,
+        matcher: TargetClassMatcher? = null,
+    ): LineCoverage = LineCoverageCollector().also { readLineRecords(xmlFile, matcher, it) }.build()
 
-        return CoverageReport(
-            name = reportName,
-            packages = packages,
-            counters = reportCounters,
-        )
+    /**
+     * Hands the `<line>` elements of the selected source files to [sink], see [parseLineCoverage]
+     */
+    internal fun readLineRecords(
+        xmlFile: File,
+        matcher: TargetClassMatcher?,
+        sink: LineRecordSink,
+    ) {
+        read(xmlFile) { reader -> LineRecordReader(matcher?.takeUnless { it.isEmpty }, sink).read(reader) }
     }
 
-    private fun validateFileAccess(xmlFile: File) {
-        require(xmlFile.exists()) { "XML file not found: ${xmlFile.absolutePath}" }
-        require(xmlFile.canRead()) { "XML file is not readable: ${xmlFile.absolutePath}" }
-        require(xmlFile.extension.lowercase() == "xml") {
-            "Expected XML file, got: ${xmlFile.name}"
-        }
-    }
+    private fun parse(
+        xmlFile: File,
+        builder: CoverageReportBuilder,
+    ): CoverageReport = read(xmlFile) { reader -> parseReport(reader, builder) }
+
+    private fun <T> read(
+        xmlFile: File,
+        parse: (XMLStreamReader) -> T,
+    ): T {
+        CoverageReportParser.validateFileAccess(xmlFile)
 
-    private fun parseXmlDocument(xmlFile: File): Document {
         return try {
-            val factory = createDocumentBuilderFactory()
-            val builder = factory.newDocumentBuilder()
-            builder.setEntityResolver { _, _ -> null } // Ignore external entities
-            builder.parse(xmlFile)
+            xmlFile.inputStream().buffered().use { input ->
+                val reader = createXmlInputFactory().createXMLStreamReader(input)
+                try {
+                    parse(reader)
+                } finally {
+                    reader.close()
+                }
+            }
         } catch (e: IOException) {
             throw IllegalArgumentException("Failed to read XML file: ${xmlFile.name}", e)
-        } catch (e: SAXException) {
+        } catch (e: XMLStreamException) {
             throw IllegalArgumentException("Failed to parse XML file: ${xmlFile.name}", e)
         }
     }
 
-    private fun createDocumentBuilderFactory(): DocumentBuilderFactory {
-        val factory = DocumentBuilderFactory.newInstance()
-        factory.isValidating = false
-        factory.isNamespaceAware = false
-        factory.setFeature("http://xml.org/sax/features/namespaces", false)
-        factory.setFeature("http://xml.org/sax/features/validation", false)
-        factory.setFeature(
-            "http://apache.org/xml/features/nonvalidating/load-dtd-grammar",
-            false,
-        )
-        factory.setFeature(
-            "http://apache.org/xml/features/nonvalidating/load-external-dtd",
-            false,
-        )
+    /**
+     * Reads only the report-level counters from the end of the file.
+     * Falls back to a full parse when the tail is not in the expected JaCoCo layout.
+     */
+    fun parseTotals(xmlFile: File): CoverageReport {
+        CoverageReportParser.validateFileAccess(xmlFile)
+
+        val totals =
+            try {
+                XmlReportTotalsReader().read(xmlFile)
+            } catch (e: IOException) {
+                throw IllegalArgumentException("Failed to read XML file: ${xmlFile.name}", e)
+            }
+        return totals ?: parse(xmlFile)
+    }
+
+    private fun createXmlInputFactory(): XMLInputFactory {
+        val factory = XMLInputFactory.newInstance()
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false)
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false)
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false) // Ignore the JaCoCo DOCTYPE
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false)
         return factory
     }
 
-    private fun parsePackages(reportElement: Element): List<CoveragePackage> {
-        val packageElements = reportElement.getElementsByTagName("package")
-        return (0 until packageElements.length).map { i ->
-            val packageElement = packageElements.item(i) as Element
-            parsePackage(packageElement)
+    private fun parseReport(
+        reader: XMLStreamReader,
+        builder: CoverageReportBuilder,
+    ): CoverageReport {
+        moveToRootElement(reader)
+
+        require(reader.localName == "report") {
+            "Invalid JaCoCo XML format: root element should be 'report', found '${reader.localName}'"
         }
-    }
 
-    private fun parsePackage(packageElement: Element): CoveragePackage {
-        val packageName = packageElement.getAttribute("name")
-        val classes = parseClasses(packageElement)
-        val counters = parseCounters(packageElement)
+        val reportName = reader.getAttributeValue(null, "name").orEmpty()
+        parseGroupContent(reader, builder, true)
 
-        return CoveragePackage(
-            name = packageName,
-            classes = classes,
-            counters = counters,
-        )
+        return builder.build(reportName)
+    }
+
+    private fun moveToRootElement(reader: XMLStreamReader) {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                return
+            }
+        }
+        throw IllegalArgumentException("Invalid JaCoCo XML format: no root element found")
     }
 
-    private fun parseClasses(packageElement: Element): List<CoverageClass> {
-        val classElements = packageElement.getElementsByTagName("class")
-        return (0 until classElements.length).map { i ->
-            val classElement = classElements.item(i) as Element
-            parseClass(classElement)
+    /**
+     * Reads the children of `<report>` or `<group>` up to the matching end tag.
+     * Packages nested in groups are collected as well; only direct counters are kept.
+     */
+    private fun parseGroupContent(
+        reader: XMLStreamReader,
+        builder: CoverageReportBuilder,
+        isReport: Boolean,
+    ) {
+        while (reader.hasNext()) {
+            when (reader.next()) {
+                XMLStreamConstants.START_ELEMENT ->
+                    when (reader.localName) {
+                        "package" -> parsePackage(reader, builder)
+                        "group" -> parseGroupContent(reader, builder, false)
+                        "counter" ->
+                            if (isReport) builder.addReportCounter(readCounter(reader)) else skipElement(reader)
+                        else -> skipElement(reader)
+                    }
+                XMLStreamConstants.END_ELEMENT -> return
+            }
         }
     }
 
-    private fun parseClass(classElement: Element): CoverageClass {
-        val className = classElement.getAttribute("name")
-        val sourceFilename = classElement.getAttribute("sourcefilename").takeIf { it.isNotEmpty() }
-        val counters = parseCounters(classElement)
+    private fun parsePackage(
+        reader: XMLStreamReader,
+        builder: CoverageReportBuilder,
+    ) {
+        if (!builder.startPackage(reader.getAttributeValue(null, "name").orEmpty())) {
+            skipElement(reader)
+            return
+        }
 
-        return CoverageClass(
-            name = className,
-            sourceFilename = sourceFilename,
-            counters = counters,
-        )
+        while (reader.hasNext()) {
+            when (reader.next()) {
+                XMLStreamConstants.START_ELEMENT ->
+                    when (reader.localName) {
+                        "class" -> parseClass(reader, builder)
+                        "counter" -> builder.addPackageCounter(readCounter(reader))
+                        else -> skipElement(reader)
+                    }
+                XMLStreamConstants.END_ELEMENT -> break
+            }
+        }
+
+        builder.endPackage()
     }
 
-    private fun parseCounters(element: Element): Map<String, CoverageCounter> {
-        val counterElements = element.getElementsByTagName("counter")
-        val counters = mutableMapOf<String, CoverageCounter>()
+    private fun parseClass(
+        reader: XMLStreamReader,
+        builder: CoverageReportBuilder,
+    ) {
+        val className = reader.getAttributeValue(null, "name").orEmpty()
+        val sourceFilename = reader.getAttributeValue(null, "sourcefilename")?.takeIf { it.isNotEmpty() }
+        if (!builder.startClass(className, sourceFilename)) {
+            skipElement(reader)
+            return
+        }
 
-        for (i in 0 until counterElements.length) {
-            val counterElement = counterElements.item(i) as Element
+        while (reader.hasNext()) {
+            when (reader.next()) {
+                XMLStreamConstants.START_ELEMENT ->
+                    when (reader.localName) {
+                        "counter" -> builder.addClassCounter(readCounter(reader))
+                        else -> skipElement(reader)
+                    }
+                XMLStreamConstants.END_ELEMENT -> break
+            }
+        }
+    }
 
-            // Only process direct children, not nested counters
-            if (counterElement.parentNode == element) {
-                val counter = parseCounter(counterElement)
-                counters[counter.type] = counter
+    /**
+     * Skips the current element including all of its descendants (methods, source files, lines)
+     */
+    private fun skipElement(reader: XMLStreamReader) {
+        var depth = 1
+        while (depth > 0 && reader.hasNext()) {
+            when (reader.next()) {
+                XMLStreamConstants.START_ELEMENT -> depth++
+                XMLStreamConstants.END_ELEMENT -> depth--
             }
         }
+    }
 
-        return counters
+    private fun readCounter(reader: XMLStreamReader): CoverageCounter {
+        val counter = parseCounter(reader)
+        skipElement(reader)
+        return counter
     }
 
-    private fun parseCounter(counterElement: Element): CoverageCounter {
-        val type = counterElement.getAttribute("type")
-        val missedAttr = counterElement.getAttribute("missed")
-        val coveredAttr = counterElement.getAttribute("covered")
+    /**
+     * Reads the attributes of the current `<counter>` in one pass over the attribute list.
+     * Each counter is handled exactly once, by the element that directly owns it.
+     */
+    private fun parseCounter(reader: XMLStreamReader): CoverageCounter {
+        var type = ""
+        var missedAttr = ""
+        var coveredAttr = ""
+        for (i in 0 until reader.attributeCount) {
+            when (reader.getAttributeLocalName(i)) {
+                "type" -> type = reader.getAttributeValue(i)
+                "missed" -> missedAttr = reader.getAttributeValue(i)
+                "covered" -> coveredAttr = reader.getAttributeValue(i)
+            }
+        }
         val missed =
             missedAttr.toIntOrNull()
                 ?: throw IllegalArgumentException("Invalid missed value in counter: $missedAttr")
@@ -197,4 +364,132 @@ class XmlReportParser {
             covered = covered,
         )
     }
+
+    /**
+     * Walks the report for [readLineRecords] and passes the lines of every selected source file to [sink]
+     */
+    private inner class LineRecordReader(
+        private val matcher: TargetClassMatcher?,
+        private val sink: LineRecordSink,
+    ) {
+        fun read(reader: XMLStreamReader) {
+            moveToRootElement(reader)
+            require(reader.localName == "report") {
+                "Invalid JaCoCo XML format: root element should be 'report', found '${reader.localName}'"
+            }
+            readGroupContent(reader)
+        }
+
+        private fun readGroupContent(reader: XMLStreamReader) {
+            while (reader.hasNext()) {
+                when (reader.next()) {
+                    XMLStreamConstants.START_ELEMENT ->
+                        when (reader.localName) {
+                            "package" -> readPackage(reader)
+                            "group" -> readGroupContent(reader)
+                            else -> skipElement(reader)
+                        }
+                    XMLStreamConstants.END_ELEMENT -> return
+                }
+            }
+        }
+
+        private fun readPackage(reader: XMLStreamReader) {
+            val packageName = reader.getAttributeValue(null, "name").orEmpty()
+            val displayName =
+                if (packageName.isEmpty()) {
+                    TargetClassMatcher.DEFAULT_PACKAGE_DISPLAY_NAME
+                } else {
+                    packageName.replace('/', '.')
+                }
+            if (matcher != null && !matcher.mayMatchPackage(displayName)) {
+                skipElement(reader)
+                return
+            }
+
+            // JaCoCo writes the classes of a package before its source files
+            val selectedSourceFiles = HashSet<String>()
+            while (reader.hasNext()) {
+                when (reader.next()) {
+                    XMLStreamConstants.START_ELEMENT ->
+                        when (reader.localName) {
+                            "class" -> {
+                                selectSourceFile(reader, displayName, selectedSourceFiles)
+                                skipElement(reader)
+                            }
+                            "sourcefile" -> readSourceFile(reader, packageName, selectedSourceFiles)
+                            else -> skipElement(reader)
+                        }
+                    XMLStreamConstants.END_ELEMENT -> return
+                }
+            }
+        }
+
+        private fun selectSourceFile(
+            reader: XMLStreamReader,
+            packageDisplayName: String,
+            selectedSourceFiles: MutableSet<String>,
+        ) {
+            val sourceFilename = reader.getAttributeValue(null, "sourcefilename") ?: return
+            if (matcher == null) {
+                return
+            }
+            val className = reader.getAttributeValue(null, "name").orEmpty()
+            if (matcher.matches(className.replace('/', '.'), packageDisplayName)) {
+                selectedSourceFiles.add(sourceFilename)
+            }
+        }
+
+        private fun readSourceFile(
+            reader: XMLStreamReader,
+            packageName: String,
+            selectedSourceFiles: Set<String>,
+        ) {
+            val fileName = reader.getAttributeValue(null, "name").orEmpty()
+            if (matcher != null && fileName !in selectedSourceFiles) {
+                skipElement(reader)
+                return
+            }
+
+            sink.startFile(packageName, fileName)
+            while (reader.hasNext()) {
+                when (reader.next()) {
+                    XMLStreamConstants.START_ELEMENT -> {
+                        if (reader.localName == "line") {
+                            addLine(reader)
+                        }
+                        skipElement(reader)
+                    }
+                    XMLStreamConstants.END_ELEMENT -> break
+                }
+            }
+            sink.endFile()
+        }
+
+        /**
+         * Reads the attributes of the current `<line>` in one pass over the attribute list
+         */
+        private fun addLine(reader: XMLStreamReader) {
+            var line = -1
+            var missedInstructions = 0
+            var coveredInstructions = 0
+            var missedBranches = 0
+            var coveredBranches = 0
+            for (i in 0 until reader.attributeCount) {
+                val value = reader.getAttributeValue(i)
+                when (reader.getAttributeLocalName(i)) {
+                    "nr" -> line = lineAttribute(value)
+                    "mi" -> missedInstructions = lineAttribute(value)
+                    "ci" -> coveredInstructions = lineAttribute(value)
+                    "mb" -> missedBranches = lineAttribute(value)
+                    "cb" -> coveredBranches = lineAttribute(value)
+                }
+            }
+            require(line >= 0) { "Invalid JaCoCo XML format: line without nr attribute" }
+            sink.addLine(line, missedInstructions, coveredInstructions, missedBranches, coveredBranches)
+        }
+
+        private fun lineAttribute(value: String): Int =
+            value.toIntOrNull()?.takeIf { it >= 0 } ?: throw IllegalArgumentException("Invalid value in line: $value")
+    }
 }
@@ -0,0 +1,114 @@
+package io.github.mas0061.jacoco
+
+import java.io.File
+import java.io.RandomAccessFile
+
+/**
+ * Reads only the report-level counters of a JaCoCo XML report
+ *
+ * JaCoCo writes the report counters as the last children of `<report>`, so they can be taken from a
+ * small window at the end of the file without reading the packages. The report name is read from
+ * the beginning of the file in the same way.
+ */
+class XmlReportTotalsReader {
+    companion object {
+        private const val HEAD_SIZE = 8 * 1024
+        private const val TAIL_SIZE = 64 * 1024
+        private const val REPORT_END_TAG = "</report>"
+        private val REPORT_START_PATTERN = Regex("<report(\\s[^>]*)?>")
+        private val ATTRIBUTE_PATTERN = Regex("([A-Za-z]+)\\s*=\\s*\"([^\"]*)\"")
+    }
+
+    /**
+     * Returns a report without packages, or null when the head or tail of the file is not
+     * in the expected JaCoCo layout and a full parse is required
+     */
+    fun read(xmlFile: File): CoverageReport? {
+        return RandomAccessFile(xmlFile, "r").use { file ->
+            val reportName = readReportName(readRange(file, 0, HEAD_SIZE))
+            val counters = readTrailingCounters(readRange(file, maxOf(0L, file.length() - TAIL_SIZE), TAIL_SIZE))
+
+            if (reportName == null || counters.isNullOrEmpty()) {
+                null
+            } else {
+                CoverageReport(
+                    name = reportName,
+                    packages = emptyList(),
+                    counters = counters,
+                )
+            }
+        }
+    }
+
+    private fun readRange(
+        file: RandomAccessFile,
+        position: Long,
+        maxLength: Int,
+    ): String {
+        val length = minOf(maxLength.toLong(), file.length() - position).toInt()
+        val buffer = ByteArray(length)
+        file.seek(position)
+        file.readFully(buffer)
+        return String(buffer, Charsets.UTF_8)
+    }
+
+    private fun readReportName(head: String): String? {
+        val reportStart = REPORT_START_PATTERN.find(head) ?: return null
+        return parseAttributes(reportStart.value)["name"].orEmpty()
+    }
+
+    /**
+     * Walks backwards from `</report>` over the empty-element `<counter/>` tags that directly precede it
+     */
+    private fun readTrailingCounters(tail: String): Map<String, CoverageCounter>? {
+        val reportEnd = tail.lastIndexOf(REPORT_END_TAG)
+        if (reportEnd < 0 || tail.substring(reportEnd + REPORT_END_TAG.length).isNotBlank()) {
+            return null
+        }
+
+        val counters = mutableListOf<CoverageCounter>()
+        var end = reportEnd
+        while (true) {
+            end = skipWhitespaceBackwards(tail, end)
+            if (end < 2 || !tail.startsWith("/>", end - 2)) {
+                break
+            }
+            val start = tail.lastIndexOf('<', end - 2)
+            if (start < 0) {
+                // The window ended inside the counters, so they cannot be read completely
+                return null
+            }
+            val element = tail.substring(start, end)
+            if (!element.startsWith("<counter")) {
+                break
+            }
+            counters.add(0, parseCounter(element) ?: return null)
+            end = start
+        }
+
+        return counters.associateBy { it.type }
+    }
+
+    private fun skipWhitespaceBackwards(
+        text: String,
+        end: Int,
+    ): Int {
+        var index = end
+        while (index > 0 && text[index - 1].isWhitespace()) {
+            index--
+        }
+        return index
+    }
+
+    private fun parseCounter(element: String): CoverageCounter? {
+        val attributes = parseAttributes(element)
+        val type = attributes["type"] ?: return null
+        val missed = attributes["missed"]?.toIntOrNull() ?: return null
+        val covered = attributes["covered"]?.toIntOrNull() ?: return null
+        return CoverageCounter(type, missed, covered)
+    }
+
+    private fun parseAttributes(element: String): Map<String, String> {
+        return ATTRIBUTE_PATTERN.findAll(element).associate { it.groupValues[1] to it.groupValues[2] }
+    }
+}
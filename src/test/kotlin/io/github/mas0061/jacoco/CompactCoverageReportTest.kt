@@ -0,0 +1,118 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class CompactCoverageReportTest {
+    @Test
+    fun testViewsEqualMapBasedModel() {
+        val report = buildReport(null)
+
+        val expected =
+            CoverageReport(
+                name = "test-project",
+                packages =
+                    listOf(
+                        CoveragePackage(
+                            name = "com/example",
+                            classes =
+                                listOf(
+                                    CoverageClass(
+                                        name = "com/example/A",
+                                        sourceFilename = "A.java",
+                                        counters =
+                                            linkedMapOf(
+                                                "INSTRUCTION" to CoverageCounter("INSTRUCTION", 10, 40),
+                                                "BRANCH" to CoverageCounter("BRANCH", 2, 6),
+                                            ),
+                                    ),
+                                    CoverageClass(
+                                        name = "com/example/B",
+                                        sourceFilename = null,
+                                        counters = linkedMapOf("INSTRUCTION" to CoverageCounter("INSTRUCTION", 0, 50)),
+                                    ),
+                                ),
+                            counters = linkedMapOf("INSTRUCTION" to CoverageCounter("INSTRUCTION", 10, 90)),
+                        ),
+                        CoveragePackage(
+                            name = "",
+                            classes =
+                                listOf(
+                                    CoverageClass(
+                                        name = "Main",
+                                        sourceFilename = "Main.java",
+                                        counters = linkedMapOf("CUSTOM" to CoverageCounter("CUSTOM", 1, 1)),
+                                    ),
+                                ),
+                            counters = linkedMapOf("INSTRUCTION" to CoverageCounter("INSTRUCTION", 5, 5)),
+                        ),
+                    ),
+                counters = linkedMapOf("INSTRUCTION" to CoverageCounter("INSTRUCTION", 15, 95)),
+            )
+
+        assertEquals(expected, report)
+        assertEquals(expected.hashCode(), report.hashCode())
+    }
+
+    @Test
+    fun testViewsComputeCoverageFromColumns() {
+        val report = buildReport(null)
+        val classA = report.packages[0].classes[0]
+
+        assertEquals("com.example.A", classA.fullName)
+        assertEquals(80.0, classA.instructionCoverage, 0.01)
+        assertEquals(75.0, classA.branchCoverage, 0.01)
+        assertEquals(0.0, report.packages[0].classes[1].branchCoverage, 0.01)
+        assertNull(report.packages[0].classes[1].counters["BRANCH"])
+        assertEquals("(default package)", report.packages[1].displayName)
+        assertEquals(CoverageCounter("CUSTOM", 1, 1), report.packages[1].classes[0].counters["CUSTOM"])
+    }
+
+    @Test
+    fun testFilteredCountersAreSummedFromSelectedClasses() {
+        val report = buildReport(TargetClassMatcher(listOf("com.example.*")))
+
+        assertEquals(1, report.packages.size)
+        assertEquals(2, report.packages[0].classes.size)
+        assertEquals(CoverageCounter("INSTRUCTION", 10, 90), report.packages[0].counters["INSTRUCTION"])
+        assertEquals(CoverageCounter("BRANCH", 2, 6), report.packages[0].counters["BRANCH"])
+        assertEquals(report.packages[0].counters, report.counters)
+    }
+
+    @Test
+    fun testPackagesWithoutSelectedClassesAreDropped() {
+        val report = buildReport(TargetClassMatcher(listOf("Main")))
+
+        assertEquals(1, report.packages.size)
+        assertEquals("Main", report.packages[0].classes.single().name)
+        assertTrue(report.counters.keys == setOf("CUSTOM"))
+    }
+
+    private fun buildReport(matcher: TargetClassMatcher?): CoverageReport {
+        val builder = CoverageReportBuilder(matcher)
+
+        if (builder.startPackage("com/example")) {
+            if (builder.startClass("com/example/A", "A.java")) {
+                builder.addClassCounter(CoverageCounter("INSTRUCTION", 10, 40))
+                builder.addClassCounter(CoverageCounter("BRANCH", 2, 6))
+            }
+            if (builder.startClass("com/example/B", null)) {
+                builder.addClassCounter(CoverageCounter("INSTRUCTION", 0, 50))
+            }
+            builder.addPackageCounter(CoverageCounter("INSTRUCTION", 10, 90))
+            builder.endPackage()
+        }
+        if (builder.startPackage("")) {
+            if (builder.startClass("Main", "Main.java")) {
+                builder.addClassCounter(CoverageCounter("CUSTOM", 1, 1))
+            }
+            builder.addPackageCounter(CoverageCounter("INSTRUCTION", 5, 5))
+            builder.endPackage()
+        }
+        builder.addReportCounter(CoverageCounter("INSTRUCTION", 15, 95))
+
+        return builder.build("test-project")
+    }
+}
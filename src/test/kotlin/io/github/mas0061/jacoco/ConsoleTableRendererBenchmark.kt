@@ -0,0 +1,114 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Test
+import java.io.OutputStream
+import java.io.PrintStream
+import java.util.Locale
+
+/**
+ * Rows per second of the buffered table renderer compared with per-row String.format and println
+ *
+ * Both sides render only the class rows of a synthetic report.
+ *
+ * Excluded from the regular test task; run with `./gradlew benchmark`.
+ * Output goes to an auto-flushing stream that discards the bytes but counts the writes, which is roughly what
+ * Gradle's relay of the task's standard output pays per call.
+ */
+class ConsoleTableRendererBenchmark {
+    companion object {
+        private const val CLASS_COUNT = 50_000
+        private const val ROUNDS = 5
+    }
+
+    @Test
+    fun benchmarkRenderers() {
+        val report = createReport(CLASS_COUNT)
+
+        measure("format+println") { renderWithFormat(report) }
+        measure("buffered") {
+            XmlCoverageReportRenderer().renderCoverageReport(report, showTotal = false, showPackageSummary = false)
+        }
+    }
+
+    private fun measure(
+        label: String,
+        render: () -> Unit,
+    ) {
+        val originalOut = System.out
+        val sink = CountingOutputStream()
+        System.setOut(PrintStream(sink, true))
+        val nanos =
+            try {
+                render() // warm-up
+                sink.writes = 0
+                val start = System.nanoTime()
+                repeat(ROUNDS) { render() }
+                System.nanoTime() - start
+            } finally {
+                System.setOut(originalOut)
+            }
+        val seconds = nanos / 1_000_000_000.0
+        println(
+            String.format(
+                Locale.US,
+                "%-16s %10.0f rows/s %10d writes/round",
+                label,
+                CLASS_COUNT * ROUNDS / seconds,
+                sink.writes / ROUNDS,
+            ),
+        )
+    }
+
+    /**
+     * The former rendering of the class rows: three String.format calls and one println per row
+     */
+    private fun renderWithFormat(report: CoverageReport) {
+        for (clazz in report.getAllClasses().sortedBy { it.fullName }) {
+            val instructionCoverage = String.format(Locale.US, "%.2f", clazz.instructionCoverage)
+            val branchCoverage = String.format(Locale.US, "%.2f", clazz.branchCoverage)
+            println(
+                String.format(Locale.US, "%-50s %15s %15s", "  ${clazz.fullName}", instructionCoverage, branchCoverage),
+            )
+        }
+    }
+
+    private fun createReport(classCount: Int): CoverageReport {
+        val packages =
+            (0 until classCount / 100).map { packageIndex ->
+                val packageName = "com/example/module$packageIndex"
+                CoveragePackage(
+                    name = packageName,
+                    classes =
+                        (0 until 100).map { classIndex ->
+                            CoverageClass(
+                                name = "$packageName/GeneratedClass$classIndex",
+                                sourceFilename = "GeneratedClass$classIndex.java",
+                                counters =
+                                    mapOf(
+                                        "INSTRUCTION" to CoverageCounter("INSTRUCTION", classIndex, 250 - classIndex),
+                                        "BRANCH" to CoverageCounter("BRANCH", classIndex % 7, 24),
+                                    ),
+                            )
+                        },
+                    counters = emptyMap(),
+                )
+            }
+        return CoverageReport("benchmark", packages, emptyMap())
+    }
+
+    private class CountingOutputStream : OutputStream() {
+        var writes = 0L
+
+        override fun write(b: Int) {
+            writes++
+        }
+
+        override fun write(
+            b: ByteArray,
+            off: Int,
+            len: Int,
+        ) {
+            writes++
+        }
+    }
+}
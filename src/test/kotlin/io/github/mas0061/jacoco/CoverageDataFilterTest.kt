@@ -116,4 +116,13 @@ class CoverageDataFilterTest {
 
         assertEquals(0, result.size)
     }
+
+    @Test
+    fun testFilterWithSuffixPattern() {
+        val targetClasses = listOf("*Service")
+        val result = filter.filterCoverageData(sampleData, targetClasses, false)
+
+        assertEquals(1, result.size)
+        assertEquals("UserService", result[0].className)
+    }
 }
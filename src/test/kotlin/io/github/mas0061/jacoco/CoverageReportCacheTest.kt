@@ -0,0 +1,127 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class CoverageReportCacheTest {
+    @Rule
+    @JvmField
+    val tempFolder = TemporaryFolder()
+
+    companion object {
+        private const val REPORT_CONTENT = """<?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+<report name="test-project">
+    <package name="com/example">
+        <class name="com/example/UserService" sourcefilename="UserService.java">
+            <counter type="INSTRUCTION" missed="5" covered="45"/>
+            <counter type="BRANCH" missed="2" covered="8"/>
+            <counter type="CUSTOM" missed="1" covered="1"/>
+        </class>
+        <class name="com/example/User">
+            <counter type="INSTRUCTION" missed="5" covered="45"/>
+        </class>
+        <counter type="INSTRUCTION" missed="10" covered="90"/>
+        <counter type="BRANCH" missed="2" covered="8"/>
+    </package>
+    <package name="">
+        <class name="RootClass" sourcefilename="RootClass.java">
+            <counter type="INSTRUCTION" missed="20" covered="80"/>
+        </class>
+        <counter type="INSTRUCTION" missed="20" covered="80"/>
+    </package>
+    <counter type="INSTRUCTION" missed="30" covered="170"/>
+    <counter type="BRANCH" missed="2" covered="8"/>
+</report>
+"""
+    }
+
+    @Test
+    fun testSnapshotRoundTripGivesSameReport() {
+        val xmlFile = createReportFile(REPORT_CONTENT)
+        val cache = CoverageReportCache(tempFolder.newFolder("cache"))
+        val expected = XmlReportParser().parse(xmlFile)
+
+        val first = cache.load(xmlFile) { XmlReportParser().parse(it) }
+        val second = cache.load(xmlFile) { throw AssertionError("Report should be loaded from the snapshot") }
+
+        assertEquals(expected, first)
+        assertEquals(expected, second)
+    }
+
+    @Test
+    fun testChangedReportIsParsedAgain() {
+        val xmlFile = createReportFile(REPORT_CONTENT)
+        val cache = CoverageReportCache(tempFolder.newFolder("cache"))
+        cache.load(xmlFile) { XmlReportParser().parse(it) }
+
+        xmlFile.writeText(REPORT_CONTENT.replace("missed=\"30\" covered=\"170\"", "missed=\"130\" covered=\"70\""))
+        xmlFile.setLastModified(xmlFile.lastModified() + 2000)
+        var parseCount = 0
+        val result =
+            cache.load(xmlFile) {
+                parseCount++
+                XmlReportParser().parse(it)
+            }
+
+        assertEquals(1, parseCount)
+        assertEquals(35.0, result.instructionCoverage, 0.01)
+    }
+
+    @Test
+    fun testTouchedReportWithSameContentUsesSnapshot() {
+        val xmlFile = createReportFile(REPORT_CONTENT)
+        val cache = CoverageReportCache(tempFolder.newFolder("cache"))
+        val expected = cache.load(xmlFile) { XmlReportParser().parse(it) }
+
+        xmlFile.setLastModified(xmlFile.lastModified() + 2000)
+        val result = cache.load(xmlFile) { throw AssertionError("Report content did not change") }
+
+        assertEquals(expected, result)
+    }
+
+    @Test
+    fun testIsCurrentOnlyForUnchangedReport() {
+        val xmlFile = createReportFile(REPORT_CONTENT)
+        val cache = CoverageReportCache(tempFolder.newFolder("cache"))
+        assertFalse(cache.isCurrent(xmlFile))
+
+        cache.load(xmlFile) { XmlReportParser().parse(it) }
+        assertTrue(cache.isCurrent(xmlFile))
+
+        xmlFile.setLastModified(xmlFile.lastModified() + 2000)
+        assertFalse(cache.isCurrent(xmlFile))
+        assertFalse(cache.isCurrent(File(tempFolder.root, "missing.xml")))
+    }
+
+    @Test
+    fun testCorruptSnapshotIsReplaced() {
+        val xmlFile = createReportFile(REPORT_CONTENT)
+        val cacheDirectory = tempFolder.newFolder("cache")
+        val cache = CoverageReportCache(cacheDirectory)
+        cache.load(xmlFile) { XmlReportParser().parse(it) }
+
+        val snapshotFile = cacheDirectory.listFiles()!!.single()
+        snapshotFile.writeBytes(snapshotFile.readBytes().copyOf(snapshotFile.length().toInt() / 2))
+        var parseCount = 0
+        val result =
+            cache.load(xmlFile) {
+                parseCount++
+                XmlReportParser().parse(it)
+            }
+
+        assertEquals(1, parseCount)
+        assertEquals(XmlReportParser().parse(xmlFile), result)
+        assertEquals(result, cache.load(xmlFile) { throw AssertionError("Snapshot should have been rewritten") })
+    }
+
+    private fun createReportFile(content: String): File {
+        val xmlFile = tempFolder.newFile("report.xml")
+        xmlFile.writeText(content)
+        return xmlFile
+    }
+}
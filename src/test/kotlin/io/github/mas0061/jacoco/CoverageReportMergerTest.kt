@@ -0,0 +1,96 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.PrintStream
+
+class CoverageReportMergerTest {
+    @Test
+    fun testMergesSplitPackages() {
+        val first = report("first", pkg("com/shared", "A", missed = 10, covered = 90), pkg("com/first", "F", 5, 5))
+        val second = report("second", pkg("com/shared", "B", missed = 30, covered = 70))
+
+        val merged = CoverageReportMerger.merge("aggregate", listOf(first, second))
+
+        assertEquals(listOf("com/shared", "com/first"), merged.packages.map { it.name })
+        val shared = merged.packages[0]
+        assertEquals(listOf("com/shared/A", "com/shared/B"), shared.classes.map { it.name })
+        assertEquals(CoverageCounter("INSTRUCTION", 40, 160), shared.counters["INSTRUCTION"])
+        assertEquals(80.0, shared.instructionCoverage, 0.001)
+    }
+
+    @Test
+    fun testKeepsPackagesOfSingleModule() {
+        val only = pkg("com/first", "F", missed = 5, covered = 5)
+        val other = pkg("com/second", "S", missed = 0, covered = 10)
+
+        val merged = CoverageReportMerger.merge("aggregate", listOf(report("first", only), report("second", other)))
+
+        assertSame(only, merged.packages[0])
+        assertSame(other, merged.packages[1])
+    }
+
+    @Test
+    fun testSumsReportCounters() {
+        val first = report("first", pkg("com/first", "F", missed = 25, covered = 75))
+        val second = report("second", pkg("com/second", "S", missed = 15, covered = 85))
+
+        val merged = CoverageReportMerger.merge("aggregate", listOf(first, second))
+
+        assertEquals("aggregate", merged.name)
+        assertEquals(CoverageCounter("INSTRUCTION", 40, 160), merged.counters["INSTRUCTION"])
+        assertEquals(80.0, merged.instructionCoverage, 0.001)
+    }
+
+    @Test
+    fun testMergeOverlappingKeepsMostCoveredCounters() {
+        val unit = report("unit", pkg("com/shared", "A", missed = 80, covered = 20), pkg("com/unit", "U", 0, 10))
+        val integration = report("integration", pkg("com/shared", "A", missed = 30, covered = 70))
+
+        val merged = CoverageReportMerger.mergeOverlapping("merged", listOf(unit, integration))
+
+        assertEquals(listOf("com/shared", "com/unit"), merged.packages.map { it.name })
+        assertEquals(listOf("com/shared/A"), merged.packages[0].classes.map { it.name })
+        assertEquals(CoverageCounter("INSTRUCTION", 30, 70), merged.packages[0].classes[0].counters["INSTRUCTION"])
+        assertEquals(CoverageCounter("INSTRUCTION", 30, 70), merged.packages[0].counters["INSTRUCTION"])
+        assertEquals(CoverageCounter("INSTRUCTION", 30, 80), merged.counters["INSTRUCTION"])
+    }
+
+    @Test
+    fun testRenderModuleSummary() {
+        val first = report("first", pkg("com/first", "F", missed = 25, covered = 75))
+        val second = report("second", pkg("com/second", "S", missed = 0, covered = 100))
+        val merged = CoverageReportMerger.merge("aggregate", listOf(first, second))
+
+        val outputStream = ByteArrayOutputStream()
+        XmlCoverageReportRenderer().renderModuleSummary(
+            listOf(":second" to second, ":first" to first),
+            merged,
+            PrintStream(outputStream),
+        )
+
+        val lines = outputStream.toString().lines()
+        assert(lines.contains("Aggregated from 2 module reports"))
+        val totalIndex = lines.indexOfFirst { it.startsWith("PROJECT TOTAL") }
+        assert(lines[totalIndex].contains("87.50"))
+        assert(lines[totalIndex + 1].startsWith(":first (module)"))
+        assert(lines[totalIndex + 2].startsWith(":second (module)"))
+    }
+
+    private fun report(
+        name: String,
+        vararg packages: CoveragePackage,
+    ): CoverageReport = CoverageReport(name, packages.toList(), CoverageCounter.aggregate(packages.map { it.counters }))
+
+    private fun pkg(
+        name: String,
+        className: String,
+        missed: Int,
+        covered: Int,
+    ): CoveragePackage {
+        val counters = mapOf("INSTRUCTION" to CoverageCounter("INSTRUCTION", missed, covered))
+        return CoveragePackage(name, listOf(CoverageClass("$name/$className", null, counters)), counters)
+    }
+}
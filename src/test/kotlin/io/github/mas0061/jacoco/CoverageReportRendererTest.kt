@@ -1,10 +1,12 @@
 package io.github.mas0061.jacoco
 
 import org.junit.After
+import org.junit.Assert.assertEquals
 import org.junit.Before
 import org.junit.Test
 import java.io.ByteArrayOutputStream
 import java.io.PrintStream
+import java.util.Locale
 
 class CoverageReportRendererTest {
     private val renderer = CoverageReportRenderer()
@@ -84,4 +86,38 @@ class CoverageReportRendererTest {
         assert(output.contains("JaCoCo Coverage Report"))
         assert(output.contains("Class/Package"))
     }
+
+    @Test
+    fun testRowLayoutAndRounding() {
+        val testData =
+            listOf(
+                CoverageRow(
+                    group = "test-project",
+                    packageName = "com.example",
+                    className = "Rounding",
+                    instructionMissed = 159,
+                    instructionCovered = 1,
+                    branchMissed = 1,
+                    branchCovered = 2,
+                    lineMissed = 0,
+                    lineCovered = 0,
+                    complexityMissed = 0,
+                    complexityCovered = 0,
+                    methodMissed = 0,
+                    methodCovered = 0,
+                ),
+            )
+
+        renderer.renderCoverageTable(testData)
+
+        val lines = outputStream.toString().lines()
+
+        // 0.625% は四捨五入で 0.63、2/3 は 66.67 となり、列幅は %-50s %15s %15s と同じ
+        assertEquals(
+            String.format(Locale.US, "%-50s %15s %15s", "Class/Package", "Instruction (%)", "Branch (%)"),
+            lines[5],
+        )
+        assertEquals(String.format(Locale.US, "%-50s %15s %15s", "com.example.Rounding", "0.63", "66.67"), lines[7])
+        assertEquals("-".repeat(82), lines[8])
+    }
 }
@@ -2,6 +2,7 @@ package io.github.mas0061.jacoco
 
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
 import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
@@ -16,6 +17,12 @@ class CsvReportParserTest {
     private lateinit var parser: CsvReportParser
     private lateinit var csvFile: File
 
+    companion object {
+        private const val HEADER =
+            "GROUP,PACKAGE,CLASS,INSTRUCTION_MISSED,INSTRUCTION_COVERED,BRANCH_MISSED,BRANCH_COVERED," +
+                "LINE_MISSED,LINE_COVERED,COMPLEXITY_MISSED,COMPLEXITY_COVERED,METHOD_MISSED,METHOD_COVERED"
+    }
+
     @Before
     fun setUp() {
         parser = CsvReportParser()
@@ -149,4 +156,118 @@ class CsvReportParserTest {
         assertEquals("TestClass", result[0].className)
         assertEquals("Total", result[1].className)
     }
+
+    @Test
+    fun testErrorReportsPhysicalLineNumber() {
+        csvFile = tempFolder.newFile("test-invalid-number.csv")
+        csvFile.writeText(
+            HEADER + "\n" +
+                "\n" +
+                "test-project,com.example,TestClass,10,90,5,15,3,17,2,8,1,4\n" +
+                "\n" +
+                "test-project,com.example,BrokenClass,10,x,5,15,3,17,2,8,1,4\n",
+        )
+
+        try {
+            parser.parse(csvFile)
+            fail("Expected IllegalArgumentException")
+        } catch (e: IllegalArgumentException) {
+            assertEquals(
+                "Failed to parse line 5 in test-invalid-number.csv: Invalid integer value for INSTRUCTION_COVERED: 'x'",
+                e.message,
+            )
+        }
+    }
+
+    @Test
+    fun testParseQuotedFieldsAndCrLfLineEndings() {
+        csvFile = tempFolder.newFile("test-quoted.csv")
+        csvFile.writeText(
+            HEADER + "\r\n" +
+                "\"test, project\",com.example,\"Outer\"\"Inner\"\"\", 10 ,\"90\",5,15,3,17,2,8,1,4\r\n" +
+                "test-project,com.example,Other,0,1,0,0,0,1,0,1,0,1",
+        )
+
+        val result = parser.parse(csvFile)
+
+        assertEquals(2, result.size)
+        assertEquals("test, project", result[0].group)
+        assertEquals("Outer\"Inner\"", result[0].className)
+        assertEquals(10, result[0].instructionMissed)
+        assertEquals(90, result[0].instructionCovered)
+        assertEquals("Other", result[1].className)
+    }
+
+    @Test
+    fun testForEachRowStreamsRowsInFileOrder() {
+        csvFile = tempFolder.newFile("test-many-rows.csv")
+        csvFile.bufferedWriter().use { writer ->
+            writer.write(HEADER)
+            writer.newLine()
+            for (index in 0 until 10_000) {
+                writer.write("test-project,com.example.p${index / 100},C$index,$index,1,0,0,0,1,0,1,0,1")
+                writer.newLine()
+            }
+        }
+
+        var count = 0
+        parser.forEachRow(csvFile) { row ->
+            assertEquals("C$count", row.className)
+            assertEquals(count, row.instructionMissed)
+            count++
+        }
+
+        assertEquals(10_000, count)
+    }
+
+    @Test
+    fun testParallelModeKeepsFileOrder() {
+        csvFile = createLargeCsvFile("test-parallel.csv", brokenRow = -1)
+
+        val expected = CsvReportParser().parse(csvFile)
+        for (parallelism in 2..4) {
+            assertEquals("parallelism $parallelism", expected, CsvReportParser(parallelism).parse(csvFile))
+        }
+    }
+
+    @Test
+    fun testParallelModeReportsPhysicalLineNumber() {
+        csvFile = createLargeCsvFile("test-parallel-invalid.csv", brokenRow = 60_000)
+
+        // ヘッダーと100行ごとの空行を含めた物理的な行番号
+        val expectedMessage =
+            "Failed to parse line 60603 in test-parallel-invalid.csv: " +
+                "Invalid integer value for BRANCH_MISSED: 'broken'"
+        for (parser in listOf(CsvReportParser(), CsvReportParser(4))) {
+            try {
+                parser.parse(csvFile)
+                fail("Expected IllegalArgumentException")
+            } catch (e: IllegalArgumentException) {
+                assertEquals(expectedMessage, e.message)
+            }
+        }
+    }
+
+    /**
+     * 並列モードが使われる大きさ (4 MiB 以上) のCSVファイルを作成する
+     */
+    private fun createLargeCsvFile(
+        fileName: String,
+        brokenRow: Int,
+    ): File {
+        val file = tempFolder.newFile(fileName)
+        file.bufferedWriter().use { writer ->
+            writer.write(HEADER)
+            writer.write("\r\n")
+            for (index in 0 until 80_000) {
+                if (index % 100 == 0) {
+                    writer.write("\r\n")
+                }
+                val branchMissed = if (index == brokenRow) "broken" else "${index % 7}"
+                writer.write("test-project,com.example.p${index / 100},\"Class$index\",$index,1,$branchMissed,0,0,1,0,1,0,1")
+                writer.write("\r\n")
+            }
+        }
+        return file
+    }
 }
@@ -178,6 +178,51 @@ class JacocoCoverageConsolePluginTest {
         assertEquals(TaskOutcome.SUCCESS, result.task(":jacocoCoverageConsole")?.outcome)
     }
 
+    @Test
+    fun testJacocoCoverageTaskWithLineCoverage() {
+        buildFile.writeText(
+            """
+            plugins {
+                id 'io.github.mas0061.jacoco-coverage-console'
+            }
+            """.trimIndent(),
+        )
+        File(tempFolder.root, "build/reports/jacoco/test/jacocoTestReport.xml").writeText(
+            TEST_XML_CONTENT.replace(
+                "    </package>\n    \n    <package name=\"com.example.service\">",
+                """        <sourcefile name="TestClass.java">
+            <line nr="3" mi="0" ci="4" mb="0" cb="0"/>
+            <line nr="4" mi="0" ci="2" mb="1" cb="1"/>
+            <line nr="5" mi="3" ci="0" mb="0" cb="0"/>
+        </sourcefile>
+    </package>
+    <package name="com.example.service">""",
+            ),
+        )
+
+        val result =
+            GradleRunner.create()
+                .withProjectDir(tempFolder.root)
+                .withArguments("jacocoCoverageConsole", "--lines", "--line-storage=mapped")
+                .withPluginClasspath()
+                .build()
+
+        assertTrue(result.output.contains("Lines: 3 in 1 source files (1 fully covered, 1 partly covered, 1 missed)"))
+        assertTrue(result.output.contains("off-heap in memory-mapped temporary file"))
+        assertEquals(TaskOutcome.SUCCESS, result.task(":jacocoCoverageConsole")?.outcome)
+
+        val missedLines =
+            GradleRunner.create()
+                .withProjectDir(tempFolder.root)
+                .withArguments("jacocoCoverageConsole", "--missed-lines", "--classes=com.example.TestClass")
+                .withPluginClasspath()
+                .build()
+
+        assertTrue(missedLines.output.contains("com/example/TestClass.java"))
+        assertTrue(missedLines.output.contains("  Missed:         5"))
+        assertTrue(missedLines.output.contains("  Partly covered: 4"))
+    }
+
     @Test
     fun testJacocoCoverageTaskWithCommandLineOptions() {
         buildFile.writeText(
@@ -201,6 +246,151 @@ class JacocoCoverageConsolePluginTest {
         assertEquals(TaskOutcome.SUCCESS, result.task(":jacocoCoverageConsole")?.outcome)
     }
 
+    @Test
+    fun testUpToDateTaskReplaysRecordedSummary() {
+        buildFile.writeText(
+            """
+            plugins {
+                id 'io.github.mas0061.jacoco-coverage-console'
+            }
+            """.trimIndent(),
+        )
+
+        val runner =
+            GradleRunner.create()
+                .withProjectDir(tempFolder.root)
+                .withArguments("jacocoCoverageConsole")
+                .withPluginClasspath()
+        val first = runner.build()
+        val second = runner.build()
+
+        assertEquals(TaskOutcome.SUCCESS, first.task(":jacocoCoverageConsole")?.outcome)
+        assertEquals(TaskOutcome.UP_TO_DATE, second.task(":jacocoCoverageConsole")?.outcome)
+        assertTrue(second.output.contains("JaCoCo Coverage Report"))
+        assertTrue(second.output.contains("85.00")) // instruction coverage
+
+        // 表示に関わるオプションが変わった場合は再実行する
+        val third = runner.withArguments("jacocoCoverageConsole", "--classes=com.example.service.UserService").build()
+        assertEquals(TaskOutcome.SUCCESS, third.task(":jacocoCoverageConsole")?.outcome)
+    }
+
+    @Test
+    fun testTaskIsCompatibleWithConfigurationCache() {
+        buildFile.writeText(
+            """
+            plugins {
+                id 'io.github.mas0061.jacoco-coverage-console'
+            }
+
+            jacocoCoverageConsole {
+                showPackageSummary = false
+                targetClasses = ['com.example.service.*']
+            }
+            """.trimIndent(),
+        )
+
+        val runner =
+            GradleRunner.create()
+                .withProjectDir(tempFolder.root)
+                .withArguments("jacocoCoverageConsole", "--configuration-cache", "--top=1")
+                .withPluginClasspath()
+        val first = runner.build()
+        val second = runner.build()
+
+        assertTrue(first.output.contains("Configuration cache entry stored"))
+        assertTrue(first.output.contains("com.example.service.UserService"))
+        assertTrue(second.output.contains("Configuration cache entry reused"))
+        assertEquals(TaskOutcome.UP_TO_DATE, second.task(":jacocoCoverageConsole")?.outcome)
+        assertTrue(second.output.contains("com.example.service.UserService"))
+    }
+
+    @Test
+    fun testTaskDisplaysEveryJacocoReportTaskOutput() {
+        buildFile.writeText(
+            """
+            plugins {
+                id 'java'
+                id 'jacoco'
+                id 'io.github.mas0061.jacoco-coverage-console'
+            }
+
+            jacocoTestReport {
+                reports.xml.required = true
+            }
+
+            tasks.register('jacocoIntegrationTestReport', JacocoReport) {
+                executionData.from(file('build/jacoco/integrationTest.exec'))
+                reports.xml.required = true
+            }
+
+            // HTML only: its XML report is never written, so it is not listed
+            tasks.register('jacocoHtmlReport', JacocoReport) {
+                executionData.from(file('build/jacoco/test.exec'))
+            }
+            """.trimIndent(),
+        )
+        createXmlReportFile(tempFolder.newFolder("build", "reports", "jacoco", "jacocoIntegrationTestReport"))
+        File(tempFolder.root, "build/reports/jacoco/jacocoIntegrationTestReport/jacocoTestReport.xml")
+            .renameTo(
+                File(
+                    tempFolder.root,
+                    "build/reports/jacoco/jacocoIntegrationTestReport/jacocoIntegrationTestReport.xml",
+                ),
+            )
+
+        val runner =
+            GradleRunner.create()
+                .withProjectDir(tempFolder.root)
+                .withArguments("jacocoCoverageConsole")
+                .withPluginClasspath()
+        val separate = runner.build()
+        val merged = runner.withArguments("jacocoCoverageConsole", "--merge").build()
+
+        assertTrue(separate.output.contains("Report: jacocoTestReport (jacocoTestReport.xml)"))
+        assertTrue(
+            separate.output.contains("Report: jacocoIntegrationTestReport (jacocoIntegrationTestReport.xml)"),
+        )
+        assertFalse(separate.output.contains("jacocoHtmlReport"))
+        assertTrue(merged.output.contains("Merged from 2 reports: jacocoTestReport, jacocoIntegrationTestReport"))
+        assertTrue(merged.output.contains("85.00")) // same classes, so the merged coverage is unchanged
+    }
+
+    @Test
+    fun testAggregateTaskCombinesSubprojectReports() {
+        settingsFile.writeText(
+            """
+            rootProject.name = 'test-project'
+            include 'app', 'lib', 'docs'
+            """.trimIndent(),
+        )
+        buildFile.writeText(
+            """
+            plugins {
+                id 'io.github.mas0061.jacoco-coverage-console'
+            }
+            """.trimIndent(),
+        )
+        // docs にはレポートがないため集約されない
+        for (module in listOf("app", "lib")) {
+            createXmlReportFile(tempFolder.newFolder(module, "build", "reports", "jacoco", "test"))
+        }
+        tempFolder.newFolder("docs")
+
+        val result =
+            GradleRunner.create()
+                .withProjectDir(tempFolder.root)
+                .withArguments("jacocoCoverageAggregate")
+                .withPluginClasspath()
+                .build()
+
+        assertTrue(result.output.contains("Aggregated from 2 module reports"))
+        assertTrue(result.output.contains(":app (module)"))
+        assertTrue(result.output.contains(":lib (module)"))
+        assertFalse(result.output.contains(":docs (module)"))
+        assertTrue(result.output.contains("85.00")) // combined instruction coverage
+        assertEquals(TaskOutcome.SUCCESS, result.task(":jacocoCoverageAggregate")?.outcome)
+    }
+
     @Test
     fun testJacocoCoverageTaskWithCustomCsvPath() {
         // カスタムパスにCSVファイルを作成
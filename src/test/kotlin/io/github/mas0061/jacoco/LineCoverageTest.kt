@@ -0,0 +1,121 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LineCoverageTest {
+    @Test
+    fun testBuilderCollapsesConsecutiveLinesIntoRuns() {
+        val lines = LineSet.of(3, 4, 5, 9, 10, 20)
+
+        assertEquals(listOf(3..5, 9..10, 20..20), lines.ranges())
+        assertEquals(3, lines.runCount)
+        assertEquals(6, lines.size)
+        assertEquals("[3-5, 9-10, 20]", lines.toString())
+        assertEquals("3-5, 9-10, 20", lines.format())
+        assertEquals("", LineSet.EMPTY.format())
+    }
+
+    @Test
+    fun testBuilderAcceptsLinesOutOfOrder() {
+        assertEquals(LineSet.of(1, 2, 3, 7, 8), LineSet.of(7, 2, 3, 1, 8, 2))
+    }
+
+    @Test
+    fun testContains() {
+        val lines = LineSet.of(3, 4, 5, 9)
+
+        assertTrue(3 in lines)
+        assertTrue(5 in lines)
+        assertTrue(9 in lines)
+        assertFalse(2 in lines)
+        assertFalse(6 in lines)
+        assertFalse(10 in lines)
+        assertFalse(1 in LineSet.EMPTY)
+    }
+
+    @Test
+    fun testUnionJoinsAdjacentRuns() {
+        val union = LineSet.range(1, 4) union LineSet.range(5, 8) union LineSet.of(10)
+
+        assertEquals(listOf(1..8, 10..10), union.ranges())
+    }
+
+    @Test
+    fun testIntersect() {
+        val intersection = LineSet.range(1, 10) intersect (LineSet.range(5, 12) union LineSet.of(2))
+
+        assertEquals(listOf(2..2, 5..10), intersection.ranges())
+        assertTrue((LineSet.range(1, 3) intersect LineSet.range(4, 6)).isEmpty())
+    }
+
+    @Test
+    fun testMinus() {
+        val difference = LineSet.range(1, 10) - LineSet.range(4, 6) - LineSet.of(10)
+
+        assertEquals(listOf(1..3, 7..9), difference.ranges())
+        assertEquals(LineSet.EMPTY, LineSet.range(1, 3) - LineSet.range(1, 3))
+    }
+
+    @Test
+    fun testLargeRangesStayCompact() {
+        val builder = LineSet.Builder()
+        for (line in 1..1_000_000) {
+            if (line % 100_000 != 0) {
+                builder.add(line)
+            }
+        }
+        val lines = builder.build()
+
+        assertEquals(10, lines.runCount)
+        assertEquals(999_990, lines.size)
+        assertEquals(LineSet.range(1, 99_999), lines intersect LineSet.range(0, 100_000))
+    }
+
+    @Test
+    fun testLineStatusFollowsJacoco() {
+        assertEquals(LineCoverage.EMPTY, LineCoverage.lineStatus(0, 0, 0, 0))
+        assertEquals(LineCoverage.NOT_COVERED, LineCoverage.lineStatus(3, 0, 2, 0))
+        assertEquals(LineCoverage.FULLY_COVERED, LineCoverage.lineStatus(0, 3, 0, 2))
+        assertEquals(LineCoverage.PARTLY_COVERED, LineCoverage.lineStatus(0, 3, 1, 1))
+        assertEquals(LineCoverage.PARTLY_COVERED, LineCoverage.lineStatus(0, 3, 2, 0))
+        assertEquals(LineCoverage.PARTLY_COVERED, LineCoverage.lineStatus(1, 2, 0, 0))
+    }
+
+    @Test
+    fun testMergeKeepsBestLineState() {
+        val unit = file(missed = LineSet.range(1, 6), partly = LineSet.of(7), full = LineSet.of(8))
+        val integration = file(missed = LineSet.range(5, 8), partly = LineSet.of(1, 2), full = LineSet.of(3))
+
+        val merged = unit.merge(integration)
+
+        assertEquals(LineSet.of(3, 8), merged.fullyCovered)
+        assertEquals(LineSet.of(1, 2, 7), merged.partlyCovered)
+        assertEquals(LineSet.of(4, 5, 6), merged.missed)
+        assertEquals(LineSet.of(1, 2, 3, 7, 8), merged.coveredLines)
+    }
+
+    @Test
+    fun testMergeReportsByPath() {
+        val shared = file(missed = LineSet.of(1), partly = LineSet.EMPTY, full = LineSet.EMPTY)
+        val other = SourceFileLines("", "Root.java", LineSet.EMPTY, LineSet.EMPTY, LineSet.of(1))
+        val first = LineCoverage(listOf(shared))
+        val second = LineCoverage(listOf(shared.copy(missed = LineSet.EMPTY, fullyCovered = LineSet.of(1)), other))
+
+        val merged = first.merge(second)
+
+        assertEquals(listOf("com/example/A.java", "Root.java"), merged.files.map { it.path })
+        assertEquals(LineSet.of(1), merged.file("com/example/A.java")?.fullyCovered)
+        assertTrue(merged.file("com/example/A.java")!!.missed.isEmpty())
+        assertNull(merged.file("com/example/B.java"))
+    }
+
+    private fun file(
+        missed: LineSet,
+        partly: LineSet,
+        full: LineSet,
+    ): SourceFileLines = SourceFileLines("com/example", "A.java", missed, partly, full)
+}
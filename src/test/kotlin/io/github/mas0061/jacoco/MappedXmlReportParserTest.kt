@@ -0,0 +1,144 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class MappedXmlReportParserTest {
+    @Rule
+    @JvmField
+    val tempFolder = TemporaryFolder()
+
+    companion object {
+        private const val REPORT_CONTENT = """<?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+<!DOCTYPE report PUBLIC "-//JACOCO//DTD Report 1.1//EN" "report.dtd">
+<report name="test &amp; project">
+    <sessioninfo id="session" start="1" dump="2"/>
+    <!-- <package name="commented/out"> -->
+    <group name="module">
+        <package name="com/example">
+            <class name="com/example/UserService" sourcefilename="UserService.java">
+                <method name="&lt;init&gt;" desc="()V" line="3">
+                    <counter type="INSTRUCTION" missed="1" covered="2"/>
+                </method>
+                <counter type="INSTRUCTION" missed="5" covered="45"/>
+                <counter type="BRANCH" missed="2" covered="8"/>
+            </class>
+            <class name="com/example/User">
+                <counter type="INSTRUCTION" missed="5" covered="45"/>
+            </class>
+            <sourcefile name="UserService.java">
+                <line nr="3" mi="0" ci="3" mb="0" cb="0"/>
+                <counter type="INSTRUCTION" missed="5" covered="45"/>
+            </sourcefile>
+            <counter type="INSTRUCTION" missed="10" covered="90"/>
+            <counter type="BRANCH" missed="2" covered="8"/>
+        </package>
+    </group>
+    <package name="">
+        <class name="RootClass" sourcefilename="RootClass.java">
+            <counter type="INSTRUCTION" missed="20" covered="80"/>
+        </class>
+        <counter type="INSTRUCTION" missed="20" covered="80"/>
+    </package>
+    <counter type="INSTRUCTION" missed="30" covered="170"/>
+    <counter type="BRANCH" missed="2" covered="8"/>
+</report>
+"""
+    }
+
+    @Test
+    fun testProducesSameReportAsStreamingParser() {
+        val xmlFile = createReportFile()
+
+        val expected = XmlReportParser().parse(xmlFile)
+        val result = MappedXmlReportParser().parse(xmlFile)
+
+        assertEquals(expected, result)
+        assertEquals("test & project", result.name)
+        assertEquals(3, result.getAllClasses().size)
+        assertEquals(2, result.packages[0].classes[0].counters.size)
+    }
+
+    @Test
+    fun testSmallMappingWindowsGiveSameResult() {
+        val xmlFile = createReportFile()
+        val expected = XmlReportParser().parse(xmlFile)
+
+        // Every window must still hold the XML declaration and DOCTYPE as a whole
+        for (windowSize in 160L..400L step 7) {
+            assertEquals("window size $windowSize", expected, MappedXmlReportParser(windowSize).parse(xmlFile))
+        }
+    }
+
+    @Test
+    fun testFilterIsAppliedWhileScanning() {
+        val xmlFile = createReportFile()
+        val matcher = TargetClassMatcher(listOf("com.example.User"))
+
+        val result = MappedXmlReportParser().parse(xmlFile, matcher)
+
+        assertEquals(XmlReportParser().parse(xmlFile, matcher), result)
+        assertEquals(1, result.getAllClasses().size)
+        assertEquals(5, result.counters["INSTRUCTION"]?.missed)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testParseXmlWithWrongRootElement() {
+        val xmlFile = tempFolder.newFile("wrong-root.xml")
+        xmlFile.writeText("<notareport name=\"test\"></notareport>")
+        MappedXmlReportParser().parse(xmlFile)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testParseXmlWithInvalidCounterValues() {
+        val xmlFile = tempFolder.newFile("invalid-counter.xml")
+        xmlFile.writeText("<report><counter type=\"INSTRUCTION\" missed=\"invalid\" covered=\"90\"/></report>")
+        MappedXmlReportParser().parse(xmlFile)
+    }
+
+    @Test
+    fun testMissingCounterAttributeIsNamedInMessage() {
+        val xmlFile = tempFolder.newFile("missing-covered.xml")
+        xmlFile.writeText("<report><counter type=\"INSTRUCTION\" missed=\"3\"/></report>")
+
+        val message =
+            try {
+                MappedXmlReportParser().parse(xmlFile)
+                null
+            } catch (e: IllegalArgumentException) {
+                e.message
+            }
+
+        assertEquals(
+            "Invalid covered value in counter: attribute is missing in <counter type=\"INSTRUCTION\" missed=\"3\"/>",
+            message,
+        )
+    }
+
+    @Test
+    fun testReportCanBeDeletedAfterParsing() {
+        val xmlFile = createReportFile()
+
+        MappedXmlReportParser(windowSize = 256).parse(xmlFile)
+
+        // The windows are unmapped when the scanner is closed, so the file is not locked on Windows
+        assertTrue(xmlFile.delete())
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testParseTruncatedXml() {
+        val xmlFile = tempFolder.newFile("truncated.xml")
+        xmlFile.writeText("<report name=\"test\"><package name=\"com/example\"><class name=\"A\">")
+        MappedXmlReportParser().parse(xmlFile)
+    }
+
+    private fun createReportFile(): File {
+        val xmlFile = tempFolder.newFile("report.xml")
+        xmlFile.writeText(REPORT_CONTENT)
+        return xmlFile
+    }
+}
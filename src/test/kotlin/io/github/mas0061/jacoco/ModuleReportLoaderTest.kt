@@ -0,0 +1,99 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.Collections
+
+class ModuleReportLoaderTest {
+    @Rule
+    @JvmField
+    val tempFolder = TemporaryFolder()
+
+    @Test
+    fun testOnlyChangedModuleIsParsedAgain() {
+        val reportFiles = listOf("app", "core", "util").map { createReportFile(it, 10) }
+        val cacheDirectory = tempFolder.newFolder("cache")
+        val firstLoader = loader(cacheDirectory, null, mutableListOf())
+        firstLoader.load(reportFiles)
+        assertEquals(3, firstLoader.parsedCount)
+
+        reportFiles[1].writeText(reportContent("core", 40))
+        reportFiles[1].setLastModified(reportFiles[1].lastModified() + 2000)
+        val parsedFiles = Collections.synchronizedList(mutableListOf<File>())
+        val loader = loader(cacheDirectory, null, parsedFiles)
+        val reports = loader.load(reportFiles)
+
+        assertEquals(listOf(reportFiles[1]), parsedFiles)
+        assertEquals(1, loader.parsedCount)
+        assertEquals(listOf("app", "core", "util"), reports.map { it.name })
+        assertEquals(60.0, reports[1].instructionCoverage, 0.01)
+        assertEquals(90.0, reports[0].instructionCoverage, 0.01)
+    }
+
+    @Test
+    fun testParsedReportIsReturnedWithoutReadingTheSnapshotBack() {
+        val reportFile = createReportFile("app", 10)
+        val cacheDirectory = tempFolder.newFolder("cache")
+        val parsed = XmlReportParser().parse(reportFile)
+        val loader = ModuleReportLoader(CoverageReportCache(cacheDirectory), null) { parsed }
+
+        assertSame(parsed, loader.load(listOf(reportFile)).single())
+    }
+
+    @Test
+    fun testReportsLoadedInTheSameBuildAreShared() {
+        val reportFiles = listOf("app", "core").map { createReportFile(it, 10) }
+        val cacheDirectory = tempFolder.newFolder("cache")
+        val sharedCache = ParsedReportCache(4)
+        val first = loader(cacheDirectory, sharedCache, mutableListOf()).load(reportFiles)
+
+        // Without the shared cache the snapshots would be read again
+        cacheDirectory.deleteRecursively()
+        val parsedFiles = mutableListOf<File>()
+        val second = loader(cacheDirectory, sharedCache, parsedFiles).load(reportFiles)
+
+        assertEquals(emptyList<File>(), parsedFiles)
+        first.zip(second).forEach { (expected, actual) -> assertSame(expected, actual) }
+    }
+
+    private fun loader(
+        cacheDirectory: File,
+        sharedCache: ParsedReportCache?,
+        parsedFiles: MutableList<File>,
+    ): ModuleReportLoader {
+        return ModuleReportLoader(CoverageReportCache(cacheDirectory), sharedCache) { file ->
+            parsedFiles.add(file)
+            XmlReportParser().parse(file)
+        }
+    }
+
+    private fun createReportFile(
+        module: String,
+        missed: Int,
+    ): File {
+        val xmlFile = File(tempFolder.newFolder(module), "jacocoTestReport.xml")
+        xmlFile.writeText(reportContent(module, missed))
+        return xmlFile
+    }
+
+    private fun reportContent(
+        module: String,
+        missed: Int,
+    ): String {
+        return """<?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+<report name="$module">
+    <package name="com/example/$module">
+        <class name="com/example/$module/Service" sourcefilename="Service.java">
+            <counter type="INSTRUCTION" missed="$missed" covered="${100 - missed}"/>
+        </class>
+        <counter type="INSTRUCTION" missed="$missed" covered="${100 - missed}"/>
+    </package>
+    <counter type="INSTRUCTION" missed="$missed" covered="${100 - missed}"/>
+</report>
+"""
+    }
+}
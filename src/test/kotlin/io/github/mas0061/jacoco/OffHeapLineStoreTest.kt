@@ -0,0 +1,194 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class OffHeapLineStoreTest {
+    @Rule
+    @JvmField
+    val tempFolder = TemporaryFolder()
+
+    @Test
+    fun testDirectStoreGivesSameLinesAsHeapModel() {
+        val xmlFile = createReportFile(fileCount = 3, linesPerFile = 40_000)
+
+        OffHeapLineStore.open(LineStorage.DIRECT, tempFolder.root).use { store ->
+            XmlReportParser().readLineRecords(xmlFile, null, store)
+
+            assertEquals(3, store.fileCount)
+            assertEquals(120_000L, store.lineCount)
+            assertEquals(XmlReportParser().parseLineCoverage(xmlFile).files, store.allLines())
+        }
+    }
+
+    @Test
+    fun testMappedStoreUsesTemporaryFile() {
+        val xmlFile = createReportFile(fileCount = 2, linesPerFile = 70_000)
+        val directory = tempFolder.newFolder("lines")
+
+        OffHeapLineStore.open(LineStorage.MAPPED, directory).use { store ->
+            XmlReportParser().readLineRecords(xmlFile, null, store)
+
+            assertEquals(1, directory.listFiles()!!.size)
+            assertEquals(XmlReportParser().parseLineCoverage(xmlFile).files, store.allLines())
+        }
+        assertTrue(directory.listFiles()!!.isEmpty())
+    }
+
+    @Test
+    fun testCountsMatchHeapModel() {
+        val xmlFile = createReportFile(fileCount = 2, linesPerFile = 70_000)
+
+        OffHeapLineStore.open(LineStorage.MAPPED, tempFolder.newFolder("lines")).use { store ->
+            XmlReportParser().readLineRecords(xmlFile, null, store)
+
+            val expected = XmlReportParser().parseLineCoverage(xmlFile).counts()
+            assertEquals(expected, store.counts())
+            assertEquals(LineCounts(2, 46_668, 46_666, 46_666), expected)
+        }
+    }
+
+    @Test
+    fun testCountMergedKeepsBestStatePerLine() {
+        val first = tempFolder.newFile("first.xml")
+        first.writeText(
+            linesReport(
+                "A.java" to "<line nr=\"1\" mi=\"2\" ci=\"0\" mb=\"0\" cb=\"0\"/>" +
+                    "<line nr=\"2\" mi=\"1\" ci=\"1\" mb=\"0\" cb=\"0\"/>",
+                "B.java" to "<line nr=\"1\" mi=\"2\" ci=\"0\" mb=\"0\" cb=\"0\"/>",
+            ),
+        )
+        val second = tempFolder.newFile("second.xml")
+        second.writeText(
+            linesReport(
+                "A.java" to "<line nr=\"1\" mi=\"0\" ci=\"2\" mb=\"0\" cb=\"0\"/>" +
+                    "<line nr=\"2\" mi=\"2\" ci=\"0\" mb=\"0\" cb=\"0\"/>",
+                "C.java" to "<line nr=\"5\" mi=\"0\" ci=\"1\" mb=\"0\" cb=\"0\"/>",
+            ),
+        )
+
+        OffHeapLineStore.open(LineStorage.DIRECT, tempFolder.root).use { firstStore ->
+            OffHeapLineStore.open(LineStorage.DIRECT, tempFolder.root).use { secondStore ->
+                XmlReportParser().readLineRecords(first, null, firstStore)
+                XmlReportParser().readLineRecords(second, null, secondStore)
+
+                val expected =
+                    XmlReportParser().parseLineCoverage(first).merge(XmlReportParser().parseLineCoverage(second))
+                assertEquals(expected.counts(), OffHeapLineStore.countMerged(listOf(firstStore, secondStore)))
+                assertEquals(LineCounts(3, 2, 1, 1), expected.counts())
+            }
+        }
+    }
+
+    @Test
+    fun testCloseDeletesMappedFile() {
+        val xmlFile = createReportFile(fileCount = 1, linesPerFile = 10)
+        val directory = tempFolder.newFolder("lines")
+        val store = OffHeapLineStore.open(LineStorage.MAPPED, directory)
+        XmlReportParser().readLineRecords(xmlFile, null, store)
+
+        store.close()
+        store.close()
+
+        assertEquals(0L, store.offHeapBytesReserved)
+        assertTrue(directory.listFiles()!!.isEmpty())
+    }
+
+    @Test
+    fun testReplayReturnsRecordsOfOneFile() {
+        val xmlFile = createReportFile(fileCount = 2, linesPerFile = 3)
+
+        OffHeapLineStore.open(LineStorage.DIRECT, tempFolder.root).use { store ->
+            XmlReportParser().readLineRecords(xmlFile, null, store)
+            val file = store.fileIndex("com/example/C1.java")
+            val records = mutableListOf<List<Int>>()
+            store.replay(
+                file,
+                object : LineRecordSink {
+                    override fun startFile(
+                        packageName: String,
+                        fileName: String,
+                    ) {
+                        assertEquals("C1.java", fileName)
+                    }
+
+                    override fun addLine(
+                        line: Int,
+                        missedInstructions: Int,
+                        coveredInstructions: Int,
+                        missedBranches: Int,
+                        coveredBranches: Int,
+                    ) {
+                        records.add(
+                            listOf(line, missedInstructions, coveredInstructions, missedBranches, coveredBranches),
+                        )
+                    }
+
+                    override fun endFile() {}
+                },
+            )
+
+            assertEquals(listOf(listOf(1, 0, 3, 0, 0), listOf(2, 2, 0, 0, 0), listOf(3, 0, 2, 1, 1)), records)
+            assertEquals(3, store.lineCount(file))
+            assertEquals(-1, store.fileIndex("com/example/Missing.java"))
+        }
+    }
+
+    @Test
+    fun testMemoryAccounting() {
+        val xmlFile = createReportFile(fileCount = 2, linesPerFile = 70_000)
+
+        OffHeapLineStore.open(LineStorage.DIRECT, tempFolder.root).use { store ->
+            XmlReportParser().readLineRecords(xmlFile, null, store)
+
+            assertEquals(140_000L * OffHeapLineStore.RECORD_BYTES, store.offHeapBytesUsed)
+            assertEquals(3L * OffHeapLineStore.CHUNK_BYTES, store.offHeapBytesReserved)
+            // The index holds a few entries per source file, independent of the number of lines
+            assertTrue(store.onHeapBytes < 4096)
+            assertTrue(store.memoryReport().startsWith("140000 lines of 2 source files: "))
+            assertFalse(store.memoryReport().contains("mapped"))
+        }
+    }
+
+    @Test
+    fun testFormatBytes() {
+        assertEquals("512 B", OffHeapLineStore.formatBytes(512))
+        assertEquals("1.5 KiB", OffHeapLineStore.formatBytes(1536))
+        assertEquals("38.1 MiB", OffHeapLineStore.formatBytes(40_000_000))
+    }
+
+    private fun OffHeapLineStore.allLines(): List<SourceFileLines> = (0 until fileCount).map { lines(it) }
+
+    private fun linesReport(vararg files: Pair<String, String>): String {
+        val sourceFiles = files.joinToString("") { (name, lines) -> "<sourcefile name=\"$name\">$lines</sourcefile>" }
+        return "<report name=\"lines\"><package name=\"com/example\">$sourceFiles</package></report>"
+    }
+
+    private fun createReportFile(
+        fileCount: Int,
+        linesPerFile: Int,
+    ): File {
+        val xmlFile = tempFolder.newFile("lines.xml")
+        xmlFile.bufferedWriter().use { writer ->
+            writer.write("<report name=\"lines\">\n<package name=\"com/example\">\n")
+            for (file in 0 until fileCount) {
+                writer.write("<sourcefile name=\"C$file.java\">\n")
+                for (line in 1..linesPerFile) {
+                    when (line % 3) {
+                        1 -> writer.write("<line nr=\"$line\" mi=\"0\" ci=\"3\" mb=\"0\" cb=\"0\"/>\n")
+                        2 -> writer.write("<line nr=\"$line\" mi=\"2\" ci=\"0\" mb=\"0\" cb=\"0\"/>\n")
+                        else -> writer.write("<line nr=\"$line\" mi=\"0\" ci=\"2\" mb=\"1\" cb=\"1\"/>\n")
+                    }
+                }
+                writer.write("</sourcefile>\n")
+            }
+            writer.write("</package>\n</report>\n")
+        }
+        return xmlFile
+    }
+}
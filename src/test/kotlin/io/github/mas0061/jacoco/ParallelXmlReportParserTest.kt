@@ -0,0 +1,85 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class ParallelXmlReportParserTest {
+    @Rule
+    @JvmField
+    val tempFolder = TemporaryFolder()
+
+    @Test
+    fun testProducesSameReportAsSequentialParser() {
+        val xmlFile = createGroupedReport(packageCount = 40)
+
+        val expected = XmlReportParser().parse(xmlFile)
+
+        for (parallelism in 1..4) {
+            assertEquals("parallelism $parallelism", expected, ParallelXmlReportParser(parallelism).parse(xmlFile))
+        }
+    }
+
+    @Test
+    fun testPackagesKeepDocumentOrder() {
+        val xmlFile = createGroupedReport(packageCount = 40)
+
+        val result = ParallelXmlReportParser(4, 512).parse(xmlFile)
+
+        assertEquals((0 until 40).map { "com/example/p$it" }, result.packages.map { it.name })
+        assertEquals(400, result.counters["INSTRUCTION"]?.missed)
+    }
+
+    @Test
+    fun testFilterIsAppliedPerPackage() {
+        val xmlFile = createGroupedReport(packageCount = 40)
+        val matcher = TargetClassMatcher(listOf("com.example.p3*"))
+
+        val result = ParallelXmlReportParser(4).parse(xmlFile, matcher)
+
+        assertEquals(XmlReportParser().parse(xmlFile, matcher), result)
+        val expectedPackages = listOf("com/example/p3") + (30 until 40).map { "com/example/p$it" }
+        assertEquals(expectedPackages, result.packages.map { it.name })
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testParseTruncatedXml() {
+        val xmlFile = tempFolder.newFile("truncated.xml")
+        xmlFile.writeText("<report name=\"test\"><package name=\"com/example\"><class name=\"A\">")
+        ParallelXmlReportParser(2).parse(xmlFile)
+    }
+
+    /**
+     * Creates a report whose packages are spread over two groups
+     */
+    private fun createGroupedReport(packageCount: Int): File {
+        val xmlFile = tempFolder.newFile("grouped-report.xml")
+        val content = StringBuilder()
+        content.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<report name=\"parallel\">\n")
+        for (packageIndex in 0 until packageCount) {
+            if (packageIndex % (packageCount / 2) == 0) {
+                if (packageIndex > 0) content.append("  </group>\n")
+                content.append("  <group name=\"g$packageIndex\">\n")
+            }
+            content.append("    <package name=\"com/example/p$packageIndex\">\n")
+            for (classIndex in 0 until 5) {
+                content.append("      <class name=\"com/example/p$packageIndex/C$classIndex\">\n")
+                content.append("        <method name=\"run\" desc=\"()V\">\n")
+                content.append("          <counter type=\"INSTRUCTION\" missed=\"1\" covered=\"1\"/>\n")
+                content.append("        </method>\n")
+                content.append("        <counter type=\"INSTRUCTION\" missed=\"2\" covered=\"$classIndex\"/>\n")
+                content.append("      </class>\n")
+            }
+            content.append("      <counter type=\"INSTRUCTION\" missed=\"10\" covered=\"10\"/>\n")
+            content.append("    </package>\n")
+        }
+        content.append("    <counter type=\"INSTRUCTION\" missed=\"200\" covered=\"200\"/>\n")
+        content.append("  </group>\n")
+        content.append("  <counter type=\"INSTRUCTION\" missed=\"400\" covered=\"400\"/>\n")
+        content.append("</report>\n")
+        xmlFile.writeText(content.toString())
+        return xmlFile
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.fail
+import org.junit.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class ParsedReportCacheTest {
+    @Test
+    fun testGetOrLoadLoadsOncePerKey() {
+        val cache = ParsedReportCache(4)
+        val key = key("/reports/a.xml", 100, 1)
+        var loadCount = 0
+
+        val first =
+            cache.getOrLoad(key) {
+                loadCount++
+                report("a")
+            }
+        val second = cache.getOrLoad(key) { throw AssertionError("Report should be cached") }
+
+        assertEquals(1, loadCount)
+        assertSame(first, second)
+    }
+
+    @Test
+    fun testConcurrentCallersShareOneLoad() {
+        val cache = ParsedReportCache(4)
+        val key = key("/reports/a.xml", 100, 1)
+        val loadCount = AtomicInteger()
+        val loadStarted = CountDownLatch(1)
+        val releaseLoad = CountDownLatch(1)
+        val pool = Executors.newFixedThreadPool(4)
+
+        try {
+            val first =
+                pool.submit(
+                    Callable {
+                        cache.getOrLoad(key) {
+                            loadCount.incrementAndGet()
+                            loadStarted.countDown()
+                            releaseLoad.await()
+                            report("a")
+                        }
+                    },
+                )
+            loadStarted.await()
+            val others =
+                (1..3).map {
+                    pool.submit(Callable { cache.getOrLoad(key) { report("a").also { loadCount.incrementAndGet() } } })
+                }
+            releaseLoad.countDown()
+
+            val reports = listOf(first.get()) + others.map { it.get() }
+            assertEquals(1, loadCount.get())
+            reports.forEach { assertSame(reports[0], it) }
+        } finally {
+            pool.shutdownNow()
+        }
+    }
+
+    @Test
+    fun testFailedLoadIsNotCached() {
+        val cache = ParsedReportCache(4)
+        val key = key("/reports/a.xml", 100, 1)
+
+        try {
+            cache.getOrLoad(key) { throw IllegalArgumentException("Invalid XML") }
+            fail("The load failure should be rethrown")
+        } catch (expected: IllegalArgumentException) {
+            assertEquals("Invalid XML", expected.message)
+        }
+
+        assertEquals("a", cache.getOrLoad(key) { report("a") }.name)
+    }
+
+    @Test
+    fun testTargetClassesArePartOfTheKey() {
+        val cache = ParsedReportCache(4)
+        val fingerprint = ReportFingerprint("/reports/a.xml", 100, 1)
+        cache.put(ParsedReportKey(fingerprint), report("complete"))
+
+        assertNull(cache.get(ParsedReportKey(fingerprint, listOf("com.example.*"))))
+        assertEquals("complete", cache.get(ParsedReportKey(fingerprint, emptyList()))?.name)
+    }
+
+    @Test
+    fun testChangedFingerprintIsNotServedFromCache() {
+        val cache = ParsedReportCache(4)
+        cache.put(key("/reports/a.xml", 100, 1), report("old"))
+
+        assertNull(cache.get(key("/reports/a.xml", 100, 2)))
+        assertNull(cache.get(key("/reports/a.xml", 120, 1)))
+    }
+
+    @Test
+    fun testLeastRecentlyUsedReportIsEvicted() {
+        val cache = ParsedReportCache(2)
+        val a = key("/reports/a.xml", 1, 1)
+        val b = key("/reports/b.xml", 1, 1)
+        val c = key("/reports/c.xml", 1, 1)
+        cache.put(a, report("a"))
+        cache.put(b, report("b"))
+        cache.get(a)
+
+        cache.put(c, report("c"))
+
+        assertEquals(2, cache.size)
+        assertEquals("a", cache.get(a)?.name)
+        assertNull(cache.get(b))
+        assertEquals("c", cache.get(c)?.name)
+    }
+
+    @Test
+    fun testClearReleasesAllReports() {
+        val cache = ParsedReportCache(2)
+        cache.put(key("/reports/a.xml", 1, 1), report("a"))
+
+        cache.clear()
+
+        assertEquals(0, cache.size)
+    }
+
+    private fun key(
+        path: String,
+        size: Long,
+        lastModified: Long,
+    ): ParsedReportKey = ParsedReportKey(ReportFingerprint(path, size, lastModified))
+
+    private fun report(name: String): CoverageReport {
+        return CoverageReport(name, emptyList(), mapOf("INSTRUCTION" to CoverageCounter("INSTRUCTION", 1, 1)))
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.mas0061.jacoco
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.PrintStream
+
+class PipelinedReportRendererTest {
+    @Rule
+    @JvmField
+    val tempFolder = TemporaryFolder()
+
+    private val originalOut = System.out
+    private val outputStream = ByteArrayOutputStream()
+
+    @Before
+    fun setUp() {
+        System.setOut(PrintStream(outputStream))
+    }
+
+    @After
+    fun tearDown() {
+        System.setOut(originalOut)
+    }
+
+    @Test
+    fun testClassesArePrintedInDocumentOrderBeforeTotals() {
+        val xmlFile = createReport(packageCount = 3, classesPerPackage = 4)
+
+        PipelinedReportRenderer().render(xmlFile, null, showTotal = true, showPackageSummary = true)
+
+        val lines = outputStream.toString().lines()
+        val classLines = lines.filter { it.startsWith("  com.example.") }
+        val expectedOrder = (0 until 3).flatMap { p -> (3 downTo 0).map { c -> "  com.example.p$p.Class$c" } }
+        assertEquals(expectedOrder, classLines.map { "  " + it.trim().substringBefore(' ') })
+
+        val totalIndex = lines.indexOfFirst { it.startsWith("PROJECT TOTAL") }
+        assertTrue(totalIndex > lines.indexOf(classLines.last()))
+        assertEquals(3, lines.count { it.contains("(package)") })
+    }
+
+    @Test
+    fun testOutputMatchesRegularRendererRows() {
+        val xmlFile = createReport(packageCount = 5, classesPerPackage = 20)
+
+        PipelinedReportRenderer(queueCapacity = 1).render(xmlFile, null, showTotal = true, showPackageSummary = true)
+        val streamed = outputStream.toString().lines().filter { it.isNotBlank() && !it.startsWith("=") }
+        outputStream.reset()
+        XmlCoverageReportRenderer().renderCoverageReport(XmlReportParser().parse(xmlFile))
+        val regular = outputStream.toString().lines().filter { it.isNotBlank() && !it.startsWith("=") }
+
+        // Same rows, only the order of the sections and of the classes differs
+        assertEquals(
+            regular.filterNot { it.startsWith("-") }.sorted(),
+            streamed.filterNot { it.startsWith("-") }.sorted(),
+        )
+    }
+
+    @Test
+    fun testTotalsAreRecalculatedForTargetClasses() {
+        val xmlFile = createReport(packageCount = 2, classesPerPackage = 3)
+        val matcher = TargetClassMatcher(listOf("com.example.p1.*"))
+
+        PipelinedReportRenderer().render(xmlFile, matcher, showTotal = true, showPackageSummary = true)
+        val streamed = outputStream.toString().lines().first { it.startsWith("PROJECT TOTAL") }
+        outputStream.reset()
+        XmlCoverageReportRenderer().renderCoverageReport(XmlReportParser().parse(xmlFile, matcher))
+        val regular = outputStream.toString().lines().first { it.startsWith("PROJECT TOTAL") }
+
+        assertEquals(regular, streamed)
+        assertEquals(3, outputStream.toString().lines().count { it.startsWith("  com.example.p1.") })
+    }
+
+    @Test
+    fun testNoSelectedClassesPrintsSameMessageAsRegularPath() {
+        val xmlFile = createReport(packageCount = 2, classesPerPackage = 3)
+
+        PipelinedReportRenderer().render(xmlFile, TargetClassMatcher(listOf("com.other.*")), true, true)
+        PipelinedReportRenderer().render(createReport(packageCount = 0, classesPerPackage = 0), null, true, true)
+
+        assertEquals(
+            listOf(
+                "No coverage data found for the specified criteria.",
+                "No coverage data found in the XML report.",
+            ),
+            outputStream.toString().lines().filter { it.isNotEmpty() },
+        )
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testParseErrorIsRethrown() {
+        val xmlFile = tempFolder.newFile("invalid.xml")
+        xmlFile.writeText(
+            """
+            <report name="test">
+              <package name="com/example">
+                <class name="com/example/Broken"><counter type="INSTRUCTION" missed="x" covered="1"/></class>
+              </package>
+            </report>
+            """.trimIndent(),
+        )
+
+        PipelinedReportRenderer().render(xmlFile, null, showTotal = true, showPackageSummary = true)
+    }
+
+    private fun createReport(
+        packageCount: Int,
+        classesPerPackage: Int,
+    ): File {
+        val xml = StringBuilder("<report name=\"test\">\n")
+        var reportMissed = 0
+        var reportCovered = 0
+        for (p in 0 until packageCount) {
+            xml.append("  <package name=\"com/example/p$p\">\n")
+            var packageMissed = 0
+            var packageCovered = 0
+            // Classes are listed in reverse name order to tell document order from sorted order
+            for (c in classesPerPackage - 1 downTo 0) {
+                val missed = (p * 7 + c * 3) % 11
+                val covered = 20 - missed
+                packageMissed += missed
+                packageCovered += covered
+                xml.append("    <class name=\"com/example/p$p/Class$c\" sourcefilename=\"Class$c.java\">")
+                xml.append("<counter type=\"INSTRUCTION\" missed=\"$missed\" covered=\"$covered\"/>")
+                xml.append("<counter type=\"BRANCH\" missed=\"${c % 2}\" covered=\"1\"/></class>\n")
+            }
+            xml.append("    <counter type=\"INSTRUCTION\" missed=\"$packageMissed\" covered=\"$packageCovered\"/>\n")
+            xml.append("  </package>\n")
+            reportMissed += packageMissed
+            reportCovered += packageCovered
+        }
+        xml.append("  <counter type=\"INSTRUCTION\" missed=\"$reportMissed\" covered=\"$reportCovered\"/>\n")
+        xml.append("</report>\n")
+
+        val xmlFile = tempFolder.newFile("report-$packageCount-$classesPerPackage.xml")
+        xmlFile.writeText(xml.toString())
+        return xmlFile
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+class ReportSummariesTest {
+    private val report =
+        CoverageReport(
+            name = "test",
+            packages =
+                listOf(
+                    pkg(
+                        "com/example",
+                        coverageClass("com/example/Good", 1, 99),
+                        coverageClass("com/example/Bad", 90, 10),
+                    ),
+                    pkg("com/other", coverageClass("com/other/Worst", 100, 0)),
+                ),
+            counters = mapOf("INSTRUCTION" to CoverageCounter("INSTRUCTION", 191, 109)),
+        )
+
+    @Test
+    fun testFullDetailsKeepReport() {
+        assertSame(report, ReportSummaries.summarize(report, true, 0, CoverageSortOrder.INSTRUCTION))
+    }
+
+    @Test
+    fun testTopModeKeepsOnlySelectedClasses() {
+        val summary = ReportSummaries.summarize(report, true, 2, CoverageSortOrder.INSTRUCTION)!!
+
+        assertEquals(listOf("com/example", "com/other"), summary.packages.map { it.name })
+        assertEquals(listOf("com/example/Bad"), summary.packages[0].classes.map { it.name })
+        assertEquals(listOf("com/other/Worst"), summary.packages[1].classes.map { it.name })
+        assertEquals(report.packages[0].counters, summary.packages[0].counters)
+        assertEquals(report.counters, summary.counters)
+    }
+
+    @Test
+    fun testWithoutClassDetailsKeepsOnlyCounters() {
+        val summary = ReportSummaries.summarize(report, false, 0, CoverageSortOrder.INSTRUCTION)!!
+
+        assertTrue(summary.packages.all { it.classes.isEmpty() })
+        assertEquals(report.packages.map { it.counters }, summary.packages.map { it.counters })
+    }
+
+    @Test
+    fun testReportWithoutClassesGivesNoSummary() {
+        val empty = CoverageReport("empty", emptyList(), emptyMap())
+
+        assertNull(ReportSummaries.summarize(empty, true, 0, CoverageSortOrder.INSTRUCTION))
+    }
+
+    @Test
+    fun testSummaryRoundTrip() {
+        val summary = ReportSummaries.summarize(report, true, 1, CoverageSortOrder.INSTRUCTION)
+
+        assertEquals(summary, roundTrip(summary))
+        assertNull(roundTrip(null))
+    }
+
+    private fun roundTrip(summary: CoverageReport?): CoverageReport? {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { ReportSummaries.write(summary, it) }
+        return DataInputStream(ByteArrayInputStream(bytes.toByteArray())).use { ReportSummaries.read(it) }
+    }
+
+    private fun pkg(
+        name: String,
+        vararg classes: CoverageClass,
+    ): CoveragePackage = CoveragePackage(name, classes.toList(), CoverageCounter.aggregate(classes.map { it.counters }))
+
+    private fun coverageClass(
+        name: String,
+        missed: Int,
+        covered: Int,
+    ): CoverageClass {
+        return CoverageClass(name, null, mapOf("INSTRUCTION" to CoverageCounter("INSTRUCTION", missed, covered)))
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class SourceFileIndexTest {
+    @Rule
+    @JvmField
+    val tempFolder = TemporaryFolder()
+
+    companion object {
+        private const val REPORT_CONTENT = """<?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+<!DOCTYPE report PUBLIC "-//JACOCO//DTD Report 1.1//EN" "report.dtd">
+<report name="test-project">
+    <group name="module">
+        <package name="com/acme">
+            <class name="com/acme/Foo" sourcefilename="Foo.java">
+                <method name="run" desc="()V" line="12"><counter type="INSTRUCTION" missed="9" covered="3"/></method>
+                <counter type="INSTRUCTION" missed="9" covered="3"/>
+            </class>
+            <class name="com/acme/Foo${'$'}Inner" sourcefilename="Foo.java">
+                <counter type="INSTRUCTION" missed="0" covered="2"/>
+            </class>
+            <class name="com/acme/Bar" sourcefilename="Bar.java">
+                <counter type="INSTRUCTION" missed="0" covered="4"/>
+            </class>
+            <sourcefile name="Foo.java">
+                <line nr="12" mi="3" ci="0" mb="0" cb="0"/>
+                <line nr="13" mi="3" ci="0" mb="0" cb="0"/>
+                <line nr="14" mi="0" ci="2" mb="1" cb="1"/>
+                <line nr="40" mi="3" ci="0" mb="0" cb="0"/>
+                <line nr="41" mi="0" ci="3" mb="0" cb="0"/>
+                <counter type="INSTRUCTION" missed="9" covered="5"/>
+            </sourcefile>
+            <sourcefile name="Bar.java">
+                <line nr="3" mi="0" ci="4" mb="0" cb="0"/>
+                <counter type="INSTRUCTION" missed="0" covered="4"/>
+            </sourcefile>
+            <counter type="INSTRUCTION" missed="9" covered="9"/>
+        </package>
+    </group>
+    <package name="">
+        <class name="Root" sourcefilename="Root.java">
+            <counter type="INSTRUCTION" missed="1" covered="0"/>
+        </class>
+        <sourcefile name="Root.java">
+            <line nr="1" mi="1" ci="0" mb="0" cb="0"/>
+        </sourcefile>
+    </package>
+    <counter type="INSTRUCTION" missed="10" covered="9"/>
+</report>
+"""
+    }
+
+    @Test
+    fun testIndexPointsAtSourceFileElements() {
+        val xmlFile = createReportFile()
+        val content = xmlFile.readText()
+
+        val index = SourceFileIndex.build(xmlFile)
+
+        assertEquals(listOf("com/acme/Foo.java", "com/acme/Bar.java", "Root.java"), index.entries.map { it.path })
+        val foo = index.entries[0]
+        assertEquals(listOf("com/acme/Foo", "com/acme/Foo\$Inner"), foo.classNames)
+        val element = content.substring(foo.startOffset.toInt(), foo.endOffset.toInt())
+        assertTrue(element.startsWith("<sourcefile name=\"Foo.java\">"))
+        assertTrue(element.endsWith("</sourcefile>"))
+    }
+
+    @Test
+    fun testSelectedLinesMatchFullParse() {
+        val xmlFile = createReportFile()
+        val index = SourceFileIndex.build(xmlFile)
+        val matcher = TargetClassMatcher(listOf("com.acme.Foo"))
+
+        val lines = index.readLines(xmlFile, index.select(matcher))
+
+        assertEquals(XmlReportParser().parseLineCoverage(xmlFile, matcher), lines)
+        val foo = lines.files.single()
+        assertEquals("12-13, 40", foo.missed.format())
+        assertEquals("14", foo.partlyCovered.format())
+    }
+
+    @Test
+    fun testSelectWithPatterns() {
+        val index = SourceFileIndex.build(createReportFile())
+
+        assertEquals(3, index.select(null).size)
+        assertEquals(listOf("Root.java"), index.select(TargetClassMatcher(listOf("Root"))).map { it.path })
+        assertEquals(
+            listOf("com/acme/Bar.java"),
+            index.select(TargetClassMatcher(listOf("com.acme.*", "!com.acme.Foo*"))).map { it.path },
+        )
+    }
+
+    @Test
+    fun testMatchingSidecarIsServedWithoutHashingTheReport() {
+        val xmlFile = createReportFile()
+        val cacheDirectory = tempFolder.newFolder("cache")
+        val first = SourceFileIndex.load(xmlFile, cacheDirectory)
+        assertEquals(1, cacheDirectory.listFiles()!!.size)
+
+        val reused =
+            SourceFileIndex.load(xmlFile, cacheDirectory) {
+                throw AssertionError("An unchanged report should not be read")
+            }
+
+        assertEquals(first.entries.map { it.path }, reused.entries.map { it.path })
+        assertEquals(first.entries.map { it.startOffset }, reused.entries.map { it.startOffset })
+    }
+
+    @Test
+    fun testTouchedReportWithSameContentKeepsItsIndex() {
+        val xmlFile = createReportFile()
+        val cacheDirectory = tempFolder.newFolder("cache")
+        val first = SourceFileIndex.load(xmlFile, cacheDirectory)
+
+        xmlFile.setLastModified(xmlFile.lastModified() + 2000)
+        var hashCount = 0
+        val hash = { file: File ->
+            hashCount++
+            ReportFingerprint.contentHash(file)
+        }
+        val reused = SourceFileIndex.load(xmlFile, cacheDirectory, hash)
+        assertEquals(first.entries.map { it.path }, reused.entries.map { it.path })
+        assertEquals(1, hashCount)
+
+        // The sidecar was rewritten with the new modification time
+        SourceFileIndex.load(xmlFile, cacheDirectory, hash)
+        assertEquals(1, hashCount)
+    }
+
+    @Test
+    fun testChangedReportIsIndexedAgain() {
+        val xmlFile = createReportFile()
+        val cacheDirectory = tempFolder.newFolder("cache")
+        SourceFileIndex.load(xmlFile, cacheDirectory)
+
+        val lastModified = xmlFile.lastModified()
+        xmlFile.writeText(REPORT_CONTENT.replace("Root.java", "Rxxx.java"))
+        xmlFile.setLastModified(lastModified + 2000)
+
+        assertEquals("Rxxx.java", SourceFileIndex.load(xmlFile, cacheDirectory).entries.last().path)
+        assertEquals("Rxxx.java", SourceFileIndex.load(xmlFile, cacheDirectory).entries.last().path)
+    }
+
+    private fun createReportFile(): File {
+        val xmlFile = tempFolder.newFile("report.xml")
+        xmlFile.writeText(REPORT_CONTENT)
+        return xmlFile
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TargetClassMatcherTest {
+    @Test
+    fun testExactMatch() {
+        val matcher = TargetClassMatcher(listOf("com.example.service.UserService"))
+
+        assertTrue(matcher.matches("com.example.service.UserService", "com.example.service"))
+        assertFalse(matcher.matches("com.example.service.UserServiceImpl", "com.example.service"))
+    }
+
+    @Test
+    fun testPackageNameMatchesAllClassesInPackage() {
+        val matcher = TargetClassMatcher(listOf("com.example.service"))
+
+        assertTrue(matcher.matches("com.example.service.UserService", "com.example.service"))
+        assertFalse(matcher.matches("com.example.model.User", "com.example.model"))
+    }
+
+    @Test
+    fun testWildcardPatterns() {
+        val matcher = TargetClassMatcher(listOf("com.example.service.*", "*Controller", "com.example*Dto"))
+
+        assertTrue(matcher.matches("com.example.service.UserService", "com.example.service"))
+        assertTrue(matcher.matches("com.example.web.UserController", "com.example.web"))
+        assertTrue(matcher.matches("com.example.api.UserDto", "com.example.api"))
+        assertFalse(matcher.matches("com.example.model.User", "com.example.model"))
+    }
+
+    @Test
+    fun testMayMatchPackage() {
+        val matcher = TargetClassMatcher(listOf("com.example.service.*", "com.example.model.User"))
+
+        assertTrue(matcher.mayMatchPackage("com.example.service"))
+        assertTrue(matcher.mayMatchPackage("com.example.service.impl"))
+        assertTrue(matcher.mayMatchPackage("com.example.model"))
+        assertFalse(matcher.mayMatchPackage("com.example.web"))
+        assertFalse(matcher.mayMatchPackage("com.example.model.dto"))
+    }
+
+    @Test
+    fun testSuffixPatternMayMatchAnyPackage() {
+        val matcher = TargetClassMatcher(listOf("*Service"))
+
+        assertTrue(matcher.mayMatchPackage("com.example.web"))
+        assertTrue(matcher.mayMatchPackage("(default package)"))
+    }
+
+    @Test
+    fun testManyPatternsShareOneTrie() {
+        val patterns = (0 until 500).map { "com.example.module$it.*" } + listOf("*Controller", "org.sample*Dto")
+        val matcher = TargetClassMatcher(patterns)
+
+        assertTrue(matcher.matches("com.example.module499.Service", "com.example.module499"))
+        assertTrue(matcher.matches("com.example.module4.Service", "com.example.module4"))
+        assertTrue(matcher.matches("net.other.UserController", "net.other"))
+        assertTrue(matcher.matches("org.sample.api.UserDto", "org.sample.api"))
+        assertFalse(matcher.matches("com.example.module500.Service", "com.example.module500"))
+        assertFalse(matcher.matches("org.sample.api.UserDao", "org.sample.api"))
+        assertTrue(matcher.mayMatchPackage("com.example.module42"))
+        assertTrue(matcher.mayMatchPackage("com.example"))
+    }
+
+    @Test
+    fun testMultipleWildcardsAndQuestionMark() {
+        val matcher = TargetClassMatcher(listOf("com.*.service.*", "com.example.model.User?"))
+
+        assertTrue(matcher.matches("com.example.service.UserService", "com.example.service"))
+        assertTrue(matcher.matches("com.example.model.UserA", "com.example.model"))
+        assertFalse(matcher.matches("com.example.model.User", "com.example.model"))
+        assertFalse(matcher.matches("com.example.model.UserAB", "com.example.model"))
+    }
+
+    @Test
+    fun testDoubleStarMatchesWholePackageSegments() {
+        val matcher = TargetClassMatcher(listOf("com.acme.**.internal.*Impl"))
+
+        assertTrue(matcher.matches("com.acme.internal.FooImpl", "com.acme.internal"))
+        assertTrue(matcher.matches("com.acme.core.io.internal.FooImpl", "com.acme.core.io.internal"))
+        assertFalse(matcher.matches("com.acme.coreinternal.FooImpl", "com.acme.coreinternal"))
+        assertFalse(matcher.matches("com.acme.core.internal.Foo", "com.acme.core.internal"))
+        assertTrue(matcher.mayMatchPackage("com.acme.core"))
+        assertFalse(matcher.mayMatchPackage("org.acme"))
+    }
+
+    @Test
+    fun testExcludePatterns() {
+        val matcher = TargetClassMatcher(listOf("com.example.*", "!com.example.internal", "!*Test"))
+
+        assertTrue(matcher.matches("com.example.service.UserService", "com.example.service"))
+        assertFalse(matcher.matches("com.example.internal.Helper", "com.example.internal"))
+        assertFalse(matcher.matches("com.example.service.UserServiceTest", "com.example.service"))
+        assertFalse(matcher.mayMatchPackage("com.example.internal"))
+        assertTrue(matcher.mayMatchPackage("com.example.internal.impl"))
+    }
+
+    @Test
+    fun testOnlyExcludePatternsSelectEverythingElse() {
+        val matcher = TargetClassMatcher(listOf("!com.example.generated.*"))
+
+        assertTrue(matcher.matches("com.example.service.UserService", "com.example.service"))
+        assertFalse(matcher.matches("com.example.generated.Dto", "com.example.generated"))
+        assertFalse(matcher.mayMatchPackage("com.example.generated.api"))
+        assertTrue(matcher.mayMatchPackage("com.example.service"))
+    }
+
+    @Test
+    fun testThousandsOfPatterns() {
+        val patterns = (0 until 5000).map { "com.example.module$it.**.*Service" }
+        val matcher = TargetClassMatcher(patterns)
+
+        assertTrue(matcher.matches("com.example.module4999.api.v1.UserService", "com.example.module4999.api.v1"))
+        assertFalse(matcher.matches("com.example.module5000.api.UserService", "com.example.module5000.api"))
+        assertFalse(matcher.mayMatchPackage("org.example"))
+    }
+}
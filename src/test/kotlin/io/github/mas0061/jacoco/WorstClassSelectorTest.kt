@@ -0,0 +1,143 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.PrintStream
+
+class WorstClassSelectorTest {
+    @Test
+    fun testSelectsLowestInstructionCoverage() {
+        val classes =
+            listOf(
+                coverageClass("Full", instructionMissed = 0, instructionCovered = 10),
+                coverageClass("Half", instructionMissed = 5, instructionCovered = 5),
+                coverageClass("None", instructionMissed = 10, instructionCovered = 0),
+                coverageClass("Quarter", instructionMissed = 30, instructionCovered = 10),
+            )
+
+        val result = select(CoverageSortOrder.INSTRUCTION, 2, classes)
+
+        assertEquals(listOf("com/example/None", "com/example/Quarter"), result.map { it.name })
+    }
+
+    @Test
+    fun testBranchOrderSkipsClassesWithoutBranches() {
+        val classes =
+            listOf(
+                coverageClass("NoBranches", instructionMissed = 10, instructionCovered = 0),
+                coverageClass("Partly", branchMissed = 1, branchCovered = 3),
+                coverageClass("Mostly", branchMissed = 1, branchCovered = 9),
+            )
+
+        val result = select(CoverageSortOrder.BRANCH, 5, classes)
+
+        assertEquals(listOf("com/example/Partly", "com/example/Mostly"), result.map { it.name })
+    }
+
+    @Test
+    fun testMissedOrderRanksByMissedInstructions() {
+        val classes =
+            listOf(
+                coverageClass("Small", instructionMissed = 5, instructionCovered = 0),
+                coverageClass("Large", instructionMissed = 50, instructionCovered = 950),
+                coverageClass("Covered", instructionMissed = 0, instructionCovered = 20),
+            )
+
+        val result = select(CoverageSortOrder.MISSED, 5, classes)
+
+        assertEquals(listOf("com/example/Large", "com/example/Small"), result.map { it.name })
+    }
+
+    @Test
+    fun testTiesAreBrokenByName() {
+        val classes = (9 downTo 0).map { coverageClass("Same$it", instructionMissed = 1, instructionCovered = 1) }
+
+        val result = select(CoverageSortOrder.INSTRUCTION, 3, classes)
+
+        assertEquals(listOf("com/example/Same0", "com/example/Same1", "com/example/Same2"), result.map { it.name })
+    }
+
+    @Test
+    fun testSelectionMatchesFullSort() {
+        val classes =
+            (0 until 1000).map {
+                coverageClass("Generated$it", instructionMissed = (it * 37) % 101, instructionCovered = (it * 13) % 97)
+            }
+
+        val expected =
+            classes
+                .filter { CoverageSortOrder.INSTRUCTION.isRanked(it.counters) }
+                .sortedWith { a, b -> CoverageSortOrder.INSTRUCTION.compareWorseFirst(a, b) }
+                .take(25)
+
+        assertEquals(expected, select(CoverageSortOrder.INSTRUCTION, 25, classes))
+    }
+
+    @Test
+    fun testRendererPrintsOnlyTopClasses() {
+        val report =
+            CoverageReport(
+                name = "test",
+                packages =
+                    listOf(
+                        CoveragePackage(
+                            name = "com/example",
+                            classes =
+                                listOf(
+                                    coverageClass("Good", instructionMissed = 1, instructionCovered = 99),
+                                    coverageClass("Bad", instructionMissed = 90, instructionCovered = 10),
+                                ),
+                            counters = emptyMap(),
+                        ),
+                    ),
+                counters = emptyMap(),
+            )
+        val originalOut = System.out
+        val outputStream = ByteArrayOutputStream()
+        System.setOut(PrintStream(outputStream))
+        try {
+            XmlCoverageReportRenderer().renderCoverageReport(report, topClasses = 1)
+        } finally {
+            System.setOut(originalOut)
+        }
+
+        val output = outputStream.toString()
+        assert(output.contains("Top 1 classes by lowest instruction coverage"))
+        assert(output.contains("com.example.Bad"))
+        assert(!output.contains("com.example.Good"))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testUnknownSortOrder() {
+        CoverageSortOrder.fromOptionValue("random")
+    }
+
+    private fun select(
+        order: CoverageSortOrder,
+        limit: Int,
+        classes: List<CoverageClass>,
+    ): List<CoverageClass> {
+        val selector = WorstClassSelector(order, limit)
+        classes.forEach { selector.offer(it) }
+        return selector.result()
+    }
+
+    private fun coverageClass(
+        simpleName: String,
+        instructionMissed: Int = 0,
+        instructionCovered: Int = 0,
+        branchMissed: Int = 0,
+        branchCovered: Int = 0,
+    ): CoverageClass {
+        return CoverageClass(
+            name = "com/example/$simpleName",
+            sourceFilename = "$simpleName.java",
+            counters =
+                mapOf(
+                    "INSTRUCTION" to CoverageCounter("INSTRUCTION", instructionMissed, instructionCovered),
+                    "BRANCH" to CoverageCounter("BRANCH", branchMissed, branchCovered),
+                ),
+        )
+    }
+}
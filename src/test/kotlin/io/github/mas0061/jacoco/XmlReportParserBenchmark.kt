@@ -0,0 +1,256 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.w3c.dom.Element
+import java.io.File
+import java.util.Locale
+import javax.xml.parsers.DocumentBuilderFactory
+
+/**
+ * Throughput comparison of the XML parser backends on synthetic reports
+ *
+ * Excluded from the regular test task; run with `./gradlew benchmark`.
+ * The DOM reference only runs on the 100 MB report because it cannot hold the 1 GB document in memory.
+ */
+class XmlReportParserBenchmark {
+    @Rule
+    @JvmField
+    val tempFolder = TemporaryFolder()
+
+    companion object {
+        private const val MEGABYTE = 1024L * 1024
+    }
+
+    @Test
+    fun benchmark100MbReport() {
+        val xmlFile = createSyntheticReport("report-100mb.xml", 100 * MEGABYTE)
+
+        measure("DOM (reference)", xmlFile) { countClassesWithDom(it) }
+        measure("streaming", xmlFile) { XmlReportParser().parse(it).getAllClasses().size }
+        measure("mapped", xmlFile) { MappedXmlReportParser().parse(it).getAllClasses().size }
+        measure("parallel", xmlFile) { ParallelXmlReportParser().parse(it).getAllClasses().size }
+    }
+
+    @Test
+    fun benchmark1GbReport() {
+        val xmlFile = createSyntheticReport("report-1gb.xml", 1024 * MEGABYTE)
+
+        measure("streaming", xmlFile) { XmlReportParser().parse(it).getAllClasses().size }
+        measure("mapped", xmlFile) { MappedXmlReportParser().parse(it).getAllClasses().size }
+        measure("parallel", xmlFile) { ParallelXmlReportParser().parse(it).getAllClasses().size }
+    }
+
+    @Test
+    fun streamingParseTimePerClass() {
+        val mediumReport = createGeneratedReport("scaling-10k.xml", classCount = 10_000)
+        val largeReport = createGeneratedReport("scaling-100k.xml", classCount = 100_000)
+
+        // Warm up the JIT so that the measured runs compare steady-state throughput
+        repeat(3) { XmlReportParser().parse(mediumReport) }
+        val mediumNanosPerClass = measureParseNanos(mediumReport) / 10_000.0
+        val largeNanosPerClass = measureParseNanos(largeReport) / 100_000.0
+
+        println(String.format(Locale.US, "%-16s %10d classes %8.0f ns/class", "streaming", 10_000, mediumNanosPerClass))
+        println(String.format(Locale.US, "%-16s %10d classes %8.0f ns/class", "streaming", 100_000, largeNanosPerClass))
+        // A quadratic counter lookup would make the per-class cost grow tenfold here
+        check(largeNanosPerClass < mediumNanosPerClass * 4) {
+            "Per-class parse time grew from $mediumNanosPerClass ns to $largeNanosPerClass ns"
+        }
+    }
+
+    @Test
+    fun retainedHeapPerClass() {
+        val xmlFile = createSyntheticReport("report-heap.xml", 100 * MEGABYTE)
+
+        val baseline = usedHeap()
+        var columnar: CoverageReport? = MappedXmlReportParser().parse(xmlFile)
+        val columnarBytes = usedHeap() - baseline
+        val classCount = columnar!!.getAllClasses().size
+
+        // The former model: a map and one counter object per counter type for every class and package
+        val mapBased = toMapBasedReport(columnar)
+        columnar = null
+        val mapBasedBytes = usedHeap() - baseline
+
+        printHeapUsage("map-based", classCount, mapBasedBytes)
+        printHeapUsage("columnar", classCount, columnarBytes)
+        check(mapBased.packages.isNotEmpty())
+    }
+
+    private fun printHeapUsage(
+        label: String,
+        classCount: Int,
+        bytes: Long,
+    ) {
+        println(String.format(Locale.US, "%-16s %10d classes %8d bytes/class", label, classCount, bytes / classCount))
+    }
+
+    private fun toMapBasedReport(report: CoverageReport): CoverageReport {
+        return CoverageReport(
+            name = report.name,
+            packages =
+                report.packages.map { pkg ->
+                    CoveragePackage(
+                        name = pkg.name,
+                        classes =
+                            pkg.classes.map { CoverageClass(it.name, it.sourceFilename, LinkedHashMap(it.counters)) },
+                        counters = LinkedHashMap(pkg.counters),
+                    )
+                },
+            counters = LinkedHashMap(report.counters),
+        )
+    }
+
+    private fun usedHeap(): Long {
+        val runtime = Runtime.getRuntime()
+        repeat(3) {
+            System.gc()
+            Thread.sleep(100)
+        }
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+
+    private fun measure(
+        label: String,
+        xmlFile: File,
+        parse: (File) -> Int,
+    ) {
+        parse(xmlFile) // warm-up
+        System.gc()
+        val start = System.nanoTime()
+        val classCount = parse(xmlFile)
+        val seconds = (System.nanoTime() - start) / 1_000_000_000.0
+        val megabytes = xmlFile.length().toDouble() / MEGABYTE
+        println(
+            String.format(
+                Locale.US,
+                "%-16s %8.0f MB %10d classes %8.2f s %8.1f MB/s",
+                label,
+                megabytes,
+                classCount,
+                seconds,
+                megabytes / seconds,
+            ),
+        )
+    }
+
+    private fun measureParseNanos(xmlFile: File): Long {
+        val start = System.nanoTime()
+        XmlReportParser().parse(xmlFile)
+        return System.nanoTime() - start
+    }
+
+    /**
+     * Equivalent of the former DOM based parser: builds the document and collects the class counters
+     */
+    private fun countClassesWithDom(xmlFile: File): Int {
+        val factory = DocumentBuilderFactory.newInstance()
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false)
+        val document = factory.newDocumentBuilder().parse(xmlFile)
+        val classElements = document.documentElement.getElementsByTagName("class")
+        val classes =
+            (0 until classElements.length).map { i ->
+                val classElement = classElements.item(i) as Element
+                val counterElements = classElement.getElementsByTagName("counter")
+                val counters =
+                    (0 until counterElements.length)
+                        .map { counterElements.item(it) as Element }
+                        .filter { it.parentNode == classElement }
+                        .associate {
+                            it.getAttribute("type") to
+                                CoverageCounter(
+                                    it.getAttribute("type"),
+                                    it.getAttribute("missed").toInt(),
+                                    it.getAttribute("covered").toInt(),
+                                )
+                        }
+                CoverageClass(classElement.getAttribute("name"), classElement.getAttribute("sourcefilename"), counters)
+            }
+        return classes.size
+    }
+
+    private fun createSyntheticReport(
+        fileName: String,
+        targetSize: Long,
+    ): File {
+        val xmlFile = tempFolder.newFile(fileName)
+        xmlFile.bufferedWriter().use { writer ->
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+            writer.write("<!DOCTYPE report PUBLIC \"-//JACOCO//DTD Report 1.1//EN\" \"report.dtd\">\n")
+            writer.write("<report name=\"benchmark\">\n")
+            var packageIndex = 0
+            while (xmlFile.length() < targetSize) {
+                writeSyntheticPackage(writer, packageIndex++)
+                writer.flush()
+            }
+            writeCounters(writer, "    ", 1)
+            writer.write("</report>\n")
+        }
+        return xmlFile
+    }
+
+    /**
+     * Report with ten classes per package and one method per class
+     */
+    private fun createGeneratedReport(
+        fileName: String,
+        classCount: Int,
+    ): File {
+        val xmlFile = tempFolder.newFile(fileName)
+        xmlFile.bufferedWriter().use { writer ->
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<report name=\"generated\">\n")
+            for (packageIndex in 0 until classCount / 10) {
+                writer.write("<package name=\"com/example/p$packageIndex\">\n")
+                for (classIndex in 0 until 10) {
+                    writer.write("<class name=\"com/example/p$packageIndex/C$classIndex\" ")
+                    writer.write("sourcefilename=\"C$classIndex.java\">")
+                    writer.write("<method name=\"run\" desc=\"()V\" line=\"3\">")
+                    writer.write("<counter type=\"INSTRUCTION\" missed=\"1\" covered=\"2\"/></method>")
+                    writer.write("<counter type=\"INSTRUCTION\" missed=\"1\" covered=\"2\"/>")
+                    writer.write("<counter type=\"BRANCH\" missed=\"0\" covered=\"2\"/></class>\n")
+                }
+                writer.write("<counter type=\"INSTRUCTION\" missed=\"10\" covered=\"20\"/>\n</package>\n")
+            }
+            writer.write("<counter type=\"INSTRUCTION\" missed=\"$classCount\" covered=\"${classCount * 2}\"/>\n")
+            writer.write("</report>\n")
+        }
+        return xmlFile
+    }
+
+    private fun writeSyntheticPackage(
+        writer: java.io.Writer,
+        packageIndex: Int,
+    ) {
+        writer.write("  <package name=\"com/example/p$packageIndex\">\n")
+        for (classIndex in 0 until 50) {
+            writer.write("    <class name=\"com/example/p$packageIndex/C$classIndex\" ")
+            writer.write("sourcefilename=\"C$classIndex.java\">\n")
+            for (methodIndex in 0 until 3) {
+                writer.write("      <method name=\"m$methodIndex\" desc=\"()V\" line=\"${methodIndex * 10}\">\n")
+                writeCounters(writer, "        ", methodIndex)
+                writer.write("      </method>\n")
+            }
+            writeCounters(writer, "      ", classIndex)
+            writer.write("    </class>\n")
+        }
+        writer.write("    <sourcefile name=\"C0.java\">\n")
+        for (line in 1..20) {
+            writer.write("      <line nr=\"$line\" mi=\"${line % 3}\" ci=\"${line % 5}\" mb=\"0\" cb=\"0\"/>\n")
+        }
+        writer.write("    </sourcefile>\n")
+        writeCounters(writer, "    ", packageIndex)
+        writer.write("  </package>\n")
+    }
+
+    private fun writeCounters(
+        writer: java.io.Writer,
+        indent: String,
+        seed: Int,
+    ) {
+        for (type in listOf("INSTRUCTION", "BRANCH", "LINE", "COMPLEXITY", "METHOD", "CLASS")) {
+            writer.write("$indent<counter type=\"$type\" missed=\"${seed % 7}\" covered=\"${seed % 11 + 1}\"/>\n")
+        }
+    }
+}
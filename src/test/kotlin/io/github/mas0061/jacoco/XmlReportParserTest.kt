@@ -278,6 +278,182 @@ class XmlReportParserTest {
         assertEquals(40, testClass.counters["INSTRUCTION"]?.covered)
     }
 
+    @Test
+    fun testParseXmlWithDoctypeAndGroups() {
+        val xmlFile = tempFolder.newFile("grouped-report.xml")
+        xmlFile.writeText(
+            """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <!DOCTYPE report PUBLIC "-//JACOCO//DTD Report 1.1//EN" "report.dtd">
+            <report name="grouped-project">
+                <sessioninfo id="session" start="1" dump="2"/>
+                <group name="module-a">
+                    <package name="com/example/a">
+                        <class name="com/example/a/A" sourcefilename="A.java">
+                            <counter type="INSTRUCTION" missed="10" covered="40"/>
+                        </class>
+                        <sourcefile name="A.java">
+                            <line nr="3" mi="0" ci="3" mb="0" cb="0"/>
+                            <counter type="INSTRUCTION" missed="10" covered="40"/>
+                        </sourcefile>
+                        <counter type="INSTRUCTION" missed="10" covered="40"/>
+                    </package>
+                    <counter type="INSTRUCTION" missed="10" covered="40"/>
+                </group>
+                <counter type="INSTRUCTION" missed="10" covered="40"/>
+            </report>
+            """.trimIndent(),
+        )
+
+        val result = xmlReportParser.parse(xmlFile)
+
+        assertEquals("grouped-project", result.name)
+        assertEquals(1, result.packages.size)
+        assertEquals("com.example.a", result.packages[0].displayName)
+        assertEquals(1, result.packages[0].classes.size)
+        assertEquals(1, result.packages[0].counters.size)
+        assertEquals(80.0, result.instructionCoverage, 0.01)
+    }
+
+    @Test
+    fun testParseWithTargetClassMatcherSkipsNonMatchingClasses() {
+        val xmlFile = createValidJacocoXmlFile()
+
+        val result = xmlReportParser.parse(xmlFile, TargetClassMatcher(listOf("com.example.User")))
+
+        assertEquals(1, result.packages.size)
+        assertEquals(1, result.getAllClasses().size)
+        assertEquals("com.example.User", result.getAllClasses()[0].fullName)
+        // Package and report counters are recalculated from the kept class
+        assertEquals(5, result.packages[0].counters["INSTRUCTION"]?.missed)
+        assertEquals(45, result.counters["INSTRUCTION"]?.covered)
+        assertEquals(66.67, result.branchCoverage, 0.01)
+    }
+
+    @Test
+    fun testParseWithTargetClassMatcherWithoutMatches() {
+        val xmlFile = createValidJacocoXmlFile()
+
+        val result = xmlReportParser.parse(xmlFile, TargetClassMatcher(listOf("org.other.*")))
+
+        assertTrue(result.packages.isEmpty())
+        assertTrue(result.counters.isEmpty())
+    }
+
+    @Test
+    fun testParseLineCoverage() {
+        val xmlFile = createLineXmlFile()
+
+        val result = xmlReportParser.parseLineCoverage(xmlFile)
+
+        assertEquals(listOf("com/example/UserService.java", "com/example/User.java"), result.files.map { it.path })
+        val service = result.file("com/example/UserService.java")!!
+        assertEquals(LineSet.of(3, 4, 5, 10), service.fullyCovered)
+        assertEquals(LineSet.of(6), service.partlyCovered)
+        assertEquals(LineSet.of(7, 8), service.missed)
+        assertEquals(LineSet.of(2), result.file("com/example/User.java")?.missed)
+    }
+
+    @Test
+    fun testParseLineCoverageWithTargetClassMatcher() {
+        val xmlFile = createLineXmlFile()
+
+        val result = xmlReportParser.parseLineCoverage(xmlFile, TargetClassMatcher(listOf("*Service")))
+
+        assertEquals(listOf("com/example/UserService.java"), result.files.map { it.path })
+        assertTrue(xmlReportParser.parseLineCoverage(xmlFile, TargetClassMatcher(listOf("org.*"))).files.isEmpty())
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testParseLineCoverageWithInvalidLineValue() {
+        val xmlFile = tempFolder.newFile("invalid-line.xml")
+        xmlFile.writeText(
+            """
+            <report name="invalid">
+                <package name="com/example">
+                    <sourcefile name="A.java"><line nr="x" mi="0" ci="1" mb="0" cb="0"/></sourcefile>
+                </package>
+            </report>
+            """.trimIndent(),
+        )
+
+        xmlReportParser.parseLineCoverage(xmlFile)
+    }
+
+    @Test
+    fun testParseGeneratedReportAssignsCountersToOwners() {
+        val xmlFile = createGeneratedXmlFile("generated-1k.xml", classCount = 1_000)
+
+        val result = xmlReportParser.parse(xmlFile)
+
+        assertEquals(1_000, result.getAllClasses().size)
+        assertEquals(100, result.packages.size)
+        assertEquals(10, result.packages[0].counters["INSTRUCTION"]?.missed)
+        assertEquals(2, result.packages[0].classes[0].counters.size)
+        assertEquals(1_000, result.counters["INSTRUCTION"]?.missed)
+    }
+
+    private fun createGeneratedXmlFile(
+        fileName: String,
+        classCount: Int,
+    ): File {
+        val xmlFile = tempFolder.newFile(fileName)
+        xmlFile.bufferedWriter().use { writer ->
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<report name=\"generated\">\n")
+            for (packageIndex in 0 until classCount / 10) {
+                writer.write("<package name=\"com/example/p$packageIndex\">\n")
+                for (classIndex in 0 until 10) {
+                    writer.write("<class name=\"com/example/p$packageIndex/C$classIndex\" ")
+                    writer.write("sourcefilename=\"C$classIndex.java\">")
+                    writer.write("<method name=\"run\" desc=\"()V\" line=\"3\">")
+                    writer.write("<counter type=\"INSTRUCTION\" missed=\"1\" covered=\"2\"/></method>")
+                    writer.write("<counter type=\"INSTRUCTION\" missed=\"1\" covered=\"2\"/>")
+                    writer.write("<counter type=\"BRANCH\" missed=\"0\" covered=\"2\"/></class>\n")
+                }
+                writer.write("<counter type=\"INSTRUCTION\" missed=\"10\" covered=\"20\"/>\n</package>\n")
+            }
+            writer.write("<counter type=\"INSTRUCTION\" missed=\"$classCount\" covered=\"${classCount * 2}\"/>\n")
+            writer.write("</report>\n")
+        }
+        return xmlFile
+    }
+
+    private fun createLineXmlFile(): File {
+        val xmlFile = tempFolder.newFile("line-report.xml")
+        xmlFile.writeText(
+            """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report name="lines">
+                <package name="com/example">
+                    <class name="com/example/UserService" sourcefilename="UserService.java">
+                        <counter type="INSTRUCTION" missed="6" covered="20"/>
+                    </class>
+                    <class name="com/example/User" sourcefilename="User.java">
+                        <counter type="INSTRUCTION" missed="3" covered="0"/>
+                    </class>
+                    <sourcefile name="UserService.java">
+                        <line nr="3" mi="0" ci="4" mb="0" cb="0"/>
+                        <line nr="4" mi="0" ci="2" mb="0" cb="0"/>
+                        <line nr="5" mi="0" ci="5" mb="0" cb="2"/>
+                        <line nr="6" mi="0" ci="3" mb="1" cb="1"/>
+                        <line nr="7" mi="4" ci="0" mb="0" cb="0"/>
+                        <line nr="8" mi="2" ci="0" mb="0" cb="0"/>
+                        <line nr="10" mi="0" ci="6" mb="0" cb="0"/>
+                        <counter type="INSTRUCTION" missed="6" covered="20"/>
+                    </sourcefile>
+                    <sourcefile name="User.java">
+                        <line nr="2" mi="3" ci="0" mb="0" cb="0"/>
+                        <counter type="INSTRUCTION" missed="3" covered="0"/>
+                    </sourcefile>
+                    <counter type="INSTRUCTION" missed="9" covered="20"/>
+                </package>
+                <counter type="INSTRUCTION" missed="9" covered="20"/>
+            </report>
+            """.trimIndent(),
+        )
+        return xmlFile
+    }
+
     private fun createValidJacocoXmlFile(): File {
         val xmlFile = tempFolder.newFile("jacoco-report.xml")
         xmlFile.writeText(createSampleXmlContent())
@@ -0,0 +1,90 @@
+package io.github.mas0061.jacoco
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class XmlReportTotalsReaderTest {
+    @Rule
+    @JvmField
+    val tempFolder = TemporaryFolder()
+
+    @Test
+    fun testReadTrailingReportCounters() {
+        val xmlFile = tempFolder.newFile("report.xml")
+        xmlFile.writeText(
+            """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <!DOCTYPE report PUBLIC "-//JACOCO//DTD Report 1.1//EN" "report.dtd">
+            <report name="test-project">
+                <sessioninfo id="session" start="1" dump="2"/>
+                <package name="com/example">
+                    <class name="com/example/A">
+                        <counter type="INSTRUCTION" missed="10" covered="40"/>
+                    </class>
+                    <counter type="INSTRUCTION" missed="10" covered="40"/>
+                </package>
+                <counter type="INSTRUCTION" missed="30" covered="170"/>
+                <counter type="BRANCH" missed="10" covered="30"/>
+            </report>
+            """.trimIndent() + "\n",
+        )
+
+        val result = XmlReportTotalsReader().read(xmlFile)
+
+        assertEquals("test-project", result?.name)
+        assertTrue(result!!.packages.isEmpty())
+        assertEquals(2, result.counters.size)
+        assertEquals(85.0, result.instructionCoverage, 0.01)
+        assertEquals(75.0, result.branchCoverage, 0.01)
+    }
+
+    @Test
+    fun testReturnsNullWhenReportHasNoTrailingCounters() {
+        val xmlFile = tempFolder.newFile("no-counters.xml")
+        xmlFile.writeText(
+            """
+            <report name="test-project">
+                <package name="com/example">
+                    <counter type="INSTRUCTION" missed="10" covered="40"/>
+                </package>
+            </report>
+            """.trimIndent(),
+        )
+
+        assertNull(XmlReportTotalsReader().read(xmlFile))
+    }
+
+    @Test
+    fun testReturnsNullWhenReportIsTruncated() {
+        val xmlFile = tempFolder.newFile("truncated.xml")
+        xmlFile.writeText(
+            """
+            <report name="test-project">
+                <counter type="INSTRUCTION" missed="30" covered="170"/>
+            """.trimIndent(),
+        )
+
+        assertNull(XmlReportTotalsReader().read(xmlFile))
+    }
+
+    @Test
+    fun testParseTotalsFallsBackToFullParse() {
+        val xmlFile = tempFolder.newFile("fallback.xml")
+        xmlFile.writeText(
+            """
+            <report name="test-project">
+                <counter type="INSTRUCTION" missed="30" covered="170"/>
+                <!-- trailing comment -->
+            </report>
+            """.trimIndent(),
+        )
+
+        val result = XmlReportParser().parseTotals(xmlFile)
+
+        assertEquals(30, result.counters["INSTRUCTION"]?.missed)
+    }
+}